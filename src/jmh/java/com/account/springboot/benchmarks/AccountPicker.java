@@ -0,0 +1,52 @@
+package com.account.springboot.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Precomputed sequence of account indexes, either uniform or Zipf-skewed (a few hot accounts get most of the traffic).
+ * Indexes are drawn up front, so picking an account costs an array read and doesn't show up in the measurements.
+ */
+final class AccountPicker {
+
+    // power of two, so the cursor wraps with a mask
+    private static final int SEQUENCE_SIZE = 1 << 16;
+    // Zipf exponent, around what is seen for payment traffic (a handful of merchants receive most payments)
+    private static final double ZIPF_EXPONENT = 1.1;
+
+    private final int[] sequence = new int[SEQUENCE_SIZE];
+
+    AccountPicker(String distribution, int accounts, long seed) {
+        Random random = new Random(seed);
+        switch (distribution) {
+            case "uniform" -> {
+                for (int i = 0; i < SEQUENCE_SIZE; i++) {
+                    sequence[i] = random.nextInt(accounts);
+                }
+            }
+            case "zipf" -> {
+                // cumulative distribution of the ranks, sampled with a binary search
+                double[] cumulative = new double[accounts];
+                double total = 0;
+                for (int rank = 0; rank < accounts; rank++) {
+                    total += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+                    cumulative[rank] = total;
+                }
+                for (int i = 0; i < SEQUENCE_SIZE; i++) {
+                    double point = random.nextDouble() * total;
+                    int index = Arrays.binarySearch(cumulative, point);
+                    sequence[i] = Math.min(accounts - 1, index >= 0 ? index : -index - 1);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown distribution: " + distribution);
+        }
+    }
+
+    /**
+     * @param cursor - position in the sequence, any int
+     * @return index of the account
+     */
+    int pick(int cursor) {
+        return sequence[cursor & (SEQUENCE_SIZE - 1)];
+    }
+}
@@ -0,0 +1,107 @@
+package com.account.springboot.benchmarks;
+
+import com.account.springboot.dto.AccountResponseDto;
+import com.account.springboot.dto.DepositDto;
+import com.account.springboot.dto.SendDto;
+import com.account.springboot.dto.SwapDto;
+import com.account.springboot.dto.TransactionDto;
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.services.AccountService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the account service hot paths on a single thread.
+ * See {@link AccountServiceContendedBenchmark} for the same operations with several threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// every transaction is kept in memory, a fixed heap keeps the runs comparable
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class AccountServiceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Ledger {
+
+        @Param({"1000", "100000"})
+        public int accounts;
+
+        // uniform traffic, or a few hot accounts receiving most of it
+        @Param({"uniform", "zipf"})
+        public String distribution;
+
+        @Param({"locking"})
+        public String engine;
+
+        LedgerFixture fixture;
+        AccountService accountService;
+        AccountPicker picker;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            fixture = new LedgerFixture(engine, accounts);
+            accountService = fixture.getAccountService();
+            picker = new AccountPicker(distribution, accounts, 42);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            fixture.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int position;
+
+        @Setup(Level.Trial)
+        public void setup(ThreadParams threads) {
+            // threads start on different parts of the sequence
+            position = threads.getThreadIndex() * 7919;
+        }
+
+        int next() {
+            return position++;
+        }
+    }
+
+    @Benchmark
+    public TransactionDto deposit(Ledger ledger, Cursor cursor) {
+        String email = ledger.fixture.email(ledger.picker.pick(cursor.next()));
+        return ledger.accountService.deposit(new DepositDto(email, CurrencyEnum.USD, "1.25"));
+    }
+
+    @Benchmark
+    public TransactionDto send(Ledger ledger, Cursor cursor) {
+        String from = ledger.fixture.email(ledger.picker.pick(cursor.next()));
+        String to = ledger.fixture.email(ledger.picker.pick(cursor.next()));
+        return ledger.accountService.send(new SendDto(from, to, CurrencyEnum.USD, "0.10"));
+    }
+
+    @Benchmark
+    public TransactionDto swap(Ledger ledger, Cursor cursor) {
+        String email = ledger.fixture.email(ledger.picker.pick(cursor.next()));
+        return ledger.accountService.swap(new SwapDto(email, CurrencyEnum.USD, CurrencyEnum.CAD, "0.10"));
+    }
+
+    @Benchmark
+    public AccountResponseDto find(Ledger ledger, Cursor cursor) {
+        return ledger.accountService.find(ledger.fixture.email(ledger.picker.pick(cursor.next())));
+    }
+}
@@ -0,0 +1,11 @@
+package com.account.springboot.benchmarks;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Same operations as {@link AccountServiceBenchmark}, with 4 threads competing for the same accounts
+ * (other thread counts can be set with {@code -t}).
+ */
+@Threads(4)
+public class AccountServiceContendedBenchmark extends AccountServiceBenchmark {
+}
@@ -0,0 +1,108 @@
+package com.account.springboot.benchmarks;
+
+import com.account.springboot.controllers.AccountController;
+import com.account.springboot.dto.SendDto;
+import com.account.springboot.dto.TransactionDto;
+import com.account.springboot.exceptions.CustomException;
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.services.AccountService;
+import com.account.springboot.services.LedgerResult;
+import com.account.springboot.util.IdempotencyCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of sends when a share of them fail (not enough funds), like during a retry storm.
+ * Compares the result-based path ({@code trySend}, where the failure is returned from the balance up without
+ * throwing), throwing and catching the same error ({@code send}) and the servlet controller building the responses.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class FailingSendBenchmark {
+
+    // more than any balance holds
+    private static final String FAILING_AMOUNT = "1000000000000";
+
+    @State(Scope.Benchmark)
+    public static class Ledger {
+
+        @Param({"1000"})
+        public int accounts;
+
+        // percentage of the sends that fail
+        @Param({"50"})
+        public int failurePercentage;
+
+        LedgerFixture fixture;
+        AccountService accountService;
+        AccountController accountController;
+        SendDto[] sends;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            fixture = new LedgerFixture("locking", accounts);
+            accountService = fixture.getAccountService();
+            accountController = new AccountController(accountService, new ObjectMapper(), new IdempotencyCache(60_000, 1000, 1));
+            // spreading the failures evenly, so the branch predictor can't learn a pattern
+            sends = new SendDto[1024];
+            Random random = new Random(42);
+            for (int i = 0; i < sends.length; i++) {
+                boolean fails = random.nextInt(100) < failurePercentage;
+                sends[i] = new SendDto(fixture.email(random.nextInt(accounts)), fixture.email(random.nextInt(accounts)),
+                        CurrencyEnum.USD, fails ? FAILING_AMOUNT : "0.10");
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            fixture.close();
+        }
+
+        SendDto next(Cursor cursor) {
+            return sends[cursor.position++ & (sends.length - 1)];
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int position;
+    }
+
+    @Benchmark
+    public Object send(Ledger ledger, Cursor cursor) {
+        try {
+            return ledger.accountService.send(ledger.next(cursor));
+        } catch (CustomException exception) {
+            return exception.getCode();
+        }
+    }
+
+    @Benchmark
+    public LedgerResult<TransactionDto> trySend(Ledger ledger, Cursor cursor) {
+        return ledger.accountService.trySend(ledger.next(cursor));
+    }
+
+    @Benchmark
+    public ResponseEntity sendThroughController(Ledger ledger, Cursor cursor) {
+        return ledger.accountController.sendFunds(ledger.next(cursor), null);
+    }
+}
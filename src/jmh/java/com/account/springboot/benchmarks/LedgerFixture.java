@@ -0,0 +1,66 @@
+package com.account.springboot.benchmarks;
+
+import com.account.springboot.Application;
+import com.account.springboot.dto.AccountRequestDto;
+import com.account.springboot.dto.CreateBalanceDto;
+import com.account.springboot.dto.DepositDto;
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.services.AccountService;
+import com.account.springboot.services.InMemoryService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.Closeable;
+
+/**
+ * Boots the application (without the web server) with a given ledger engine (and storage) and fills it with funded accounts,
+ * so the benchmarks go through the same beans as the api.
+ */
+final class LedgerFixture implements Closeable {
+
+    // large enough for any benchmark run to never drain a balance
+    private static final String INITIAL_FUNDS = "1000000000";
+
+    private final ConfigurableApplicationContext context;
+    private final String[] emails;
+
+    LedgerFixture(String engine, int accounts) {
+        this(engine, "memory", accounts);
+    }
+
+    LedgerFixture(String engine, String storage, int accounts) {
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                // as arguments, default properties would be overridden by application.properties
+                .run("--ledger.engine=" + engine, "--ledger.storage=" + storage, "--logging.level.root=WARN",
+                        "--spring.main.banner-mode=off");
+        emails = new String[accounts];
+        AccountService accountService = getAccountService();
+        for (int i = 0; i < accounts; i++) {
+            emails[i] = "account-" + i + "@benchmark.com";
+            accountService.create(new AccountRequestDto(emails[i]));
+            for (CurrencyEnum currency : CurrencyEnum.values()) {
+                accountService.createBalance(new CreateBalanceDto(emails[i], currency));
+                accountService.deposit(new DepositDto(emails[i], currency, INITIAL_FUNDS));
+            }
+        }
+    }
+
+    AccountService getAccountService() {
+        return context.getBean(AccountService.class);
+    }
+
+    InMemoryService getInMemoryService() {
+        return context.getBean(InMemoryService.class);
+    }
+
+    String email(int index) {
+        return emails[index];
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
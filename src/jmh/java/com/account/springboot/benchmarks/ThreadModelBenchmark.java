@@ -0,0 +1,92 @@
+package com.account.springboot.benchmarks;
+
+import com.account.springboot.dto.DepositDto;
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.services.AccountService;
+import com.account.springboot.util.VirtualThreads;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Many concurrent requests that first wait on a slow dependency (e.g. the remote rates provider) and then change
+ * a few hot balances, run on a pool of platform threads (as Tomcat does by default) or on virtual threads.
+ * The virtual threads need Java 21 or later, the {@code virtual} runs fail on older JVMs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Djdk.tracePinnedThreads=short"})
+@State(Scope.Benchmark)
+public class ThreadModelBenchmark {
+
+    // Tomcat's default max threads
+    private static final int PLATFORM_THREADS = 200;
+    private static final int CONCURRENCY = 5_000;
+    // few accounts, so the requests compete for the balance locks
+    private static final int ACCOUNTS = 16;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    // time every request waits on the slow dependency before changing the ledger
+    @Param({"1"})
+    public int dependencyLatencyMillis;
+
+    private LedgerFixture fixture;
+    private AccountService accountService;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        fixture = new LedgerFixture("locking", ACCOUNTS);
+        accountService = fixture.getAccountService();
+        executor = threads.equals("virtual")
+                ? VirtualThreads.newThreadPerTaskExecutor("request-")
+                : Executors.newFixedThreadPool(PLATFORM_THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+        fixture.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENCY)
+    public void requests() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(CONCURRENCY);
+        long latency = TimeUnit.MILLISECONDS.toNanos(dependencyLatencyMillis);
+        for (int i = 0; i < CONCURRENCY; i++) {
+            executor.execute(() -> {
+                try {
+                    LockSupport.parkNanos(latency);
+                    String email = fixture.email(ThreadLocalRandom.current().nextInt(ACCOUNTS));
+                    accountService.deposit(new DepositDto(email, CurrencyEnum.USD, "1"));
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,72 @@
+package com.account.springboot.benchmarks;
+
+import com.account.springboot.dto.DepositDto;
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.models.Transaction;
+import com.account.springboot.services.InMemoryService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the transaction history of an account, as a whole and one page at a time, for different history sizes,
+ * with the transactions on the heap (memory) or in off-heap columns (offheap, rebuilt on every read)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class TransactionHistoryBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"100", "10000", "1000000"})
+    public int historySize;
+
+    @Param({"memory", "offheap"})
+    public String storage;
+
+    private LedgerFixture fixture;
+    private InMemoryService inMemoryService;
+    private String email;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        fixture = new LedgerFixture("locking", storage, 1);
+        inMemoryService = fixture.getInMemoryService();
+        email = fixture.email(0);
+        for (int i = 0; i < historySize; i++) {
+            fixture.getAccountService().deposit(new DepositDto(email, CurrencyEnum.USD, "1"));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public List<Transaction> getTransactions() {
+        return inMemoryService.getTransactions(email);
+    }
+
+    @Benchmark
+    public List<Transaction> getLastPage() {
+        return inMemoryService.getTransactions(email, Math.max(0, historySize - PAGE_SIZE), PAGE_SIZE);
+    }
+}
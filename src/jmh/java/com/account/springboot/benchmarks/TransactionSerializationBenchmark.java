@@ -0,0 +1,120 @@
+package com.account.springboot.benchmarks;
+
+import com.account.springboot.dto.SendDto;
+import com.account.springboot.dto.TransactionDto;
+import com.account.springboot.models.Account;
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.models.Transaction;
+import com.account.springboot.services.InMemoryService;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Serializing a transaction history to json, with the transactions referencing their accounts by email
+ * ({@code compact}) and in the format they used to have, with both accounts and all their balances embedded
+ * ({@code withAccounts}). The {@code bytes} counter is the size of the output per history.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class TransactionSerializationBenchmark {
+
+    // a transaction as it used to be serialized
+    public static class WithAccounts {
+        @JsonUnwrapped
+        @JsonIgnoreProperties({"fromEmail", "toEmail"})
+        public final TransactionDto transaction;
+        public final Account fromAccount;
+        public final Account toAccount;
+
+        WithAccounts(TransactionDto transaction, Account fromAccount, Account toAccount) {
+            this.transaction = transaction;
+            this.fromAccount = fromAccount;
+            this.toAccount = toAccount;
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Output extends OutputStream {
+        public long bytes;
+
+        // counting a single history (the ops take hundreds of microseconds, the per-invocation setup is negligible)
+        @Setup(Level.Invocation)
+        public void reset() {
+            bytes = 0;
+        }
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+
+    @Param({"1000"})
+    public int historySize;
+
+    private LedgerFixture fixture;
+    private ObjectMapper objectMapper;
+    private List<TransactionDto> compact;
+    private List<WithAccounts> withAccounts;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        fixture = new LedgerFixture("locking", 2);
+        InMemoryService inMemoryService = fixture.getInMemoryService();
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+        for (int i = 0; i < historySize; i++) {
+            fixture.getAccountService().send(new SendDto(fixture.email(0), fixture.email(1), CurrencyEnum.USD, "1"));
+        }
+        compact = fixture.getAccountService().getTransactions(fixture.email(0));
+        List<Transaction> transactions = inMemoryService.getTransactions(fixture.email(0));
+        withAccounts = IntStream.range(0, transactions.size())
+                .mapToObj(i -> new WithAccounts(compact.get(i), inMemoryService.getAccount(transactions.get(i).getFromAccountId()),
+                        inMemoryService.getAccount(transactions.get(i).getToAccountId())))
+                .toList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public void compact(Output output) throws Exception {
+        objectMapper.writeValue(output, compact);
+    }
+
+    @Benchmark
+    public void withAccounts(Output output) throws Exception {
+        objectMapper.writeValue(output, withAccounts);
+    }
+}
@@ -0,0 +1,43 @@
+package com.account.springboot.config;
+
+import com.account.springboot.util.VirtualThreads;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the http requests and the scheduled jobs on virtual threads, enabled with {@code spring.threads.virtual.enabled=true}
+ * (Java 21 or later). Requests waiting on something slow (e.g. the remote rates provider) then don't each hold
+ * a platform thread, so many more clients can wait at the same time. The ledger only uses j.u.c. locks, which
+ * don't pin the carrier threads.
+ */
+@Configuration(proxyBeanMethods = false)
+@Slf4j
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsConfiguration {
+
+    public VirtualThreadsConfiguration() {
+        if (!VirtualThreads.isSupported()) {
+            throw new IllegalStateException("spring.threads.virtual.enabled needs Java 21 or later, running on Java " + Runtime.version());
+        }
+        log.info("Running requests and jobs on virtual threads");
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("http-");
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    @Bean
+    public TaskScheduler taskScheduler() {
+        return new ConcurrentTaskScheduler(Executors.newSingleThreadScheduledExecutor(VirtualThreads.factory("scheduling-")));
+    }
+}
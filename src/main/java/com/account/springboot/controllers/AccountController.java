@@ -1,97 +1,144 @@
 package com.account.springboot.controllers;
 
 import com.account.springboot.dto.*;
-import com.account.springboot.models.Transaction;
+import com.account.springboot.models.CurrencyEnum;
 import com.account.springboot.services.AccountService;
+import com.account.springboot.services.LedgerResult;
 import com.account.springboot.util.ControllerExceptionsHandler;
+import com.account.springboot.util.IdempotencyCache;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Supplier;
 
 @RestController
 @Slf4j
 @RequestMapping("/accounts")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @AllArgsConstructor(onConstructor = @__(@Autowired))
 public class AccountController {
 
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    // number of streamed transactions written before flushing the response
+    private static final int STREAM_FLUSH_INTERVAL = 100;
+
     private final AccountService accountService;
 
+    private final ObjectMapper objectMapper;
+
+    private final IdempotencyCache idempotencyCache;
+
     @PostMapping("/create")
     public ResponseEntity createAccount(@RequestBody AccountRequestDto accountRequestDto) {
-        try {
-            AccountResponseDto out = accountService.create(accountRequestDto);
-            return ResponseEntity.status(HttpStatus.CREATED).body(out);
-        } catch (Exception exception) {
-            return ControllerExceptionsHandler.setResponseEntity(exception);
-        }
-
+        AccountResponseDto out = accountService.create(accountRequestDto);
+        return ResponseEntity.status(HttpStatus.CREATED).body(out);
     }
 
     @PostMapping("/create-balance")
     public ResponseEntity createBalance(@RequestBody CreateBalanceDto createBalanceDTO) {
-        try {
-            AccountResponseDto out = accountService.createBalance(createBalanceDTO);
-            return ResponseEntity.status(HttpStatus.CREATED).body(out);
-        } catch (Exception exception) {
-            return ControllerExceptionsHandler.setResponseEntity(exception);
-        }
+        AccountResponseDto out = accountService.createBalance(createBalanceDTO);
+        return ResponseEntity.status(HttpStatus.CREATED).body(out);
     }
 
     @PostMapping("/deposit")
-    public ResponseEntity deposit(@RequestBody DepositDto depositDto) {
-        try {
-            Transaction out = accountService.deposit(depositDto);
-            return ResponseEntity.ok(out);
-        } catch (Exception exception) {
-            return ControllerExceptionsHandler.setResponseEntity(exception);
-        }
+    public ResponseEntity deposit(@RequestBody DepositDto depositDto,
+                                  @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        return toResponseEntity(once(idempotencyKey, depositDto, () -> accountService.tryDeposit(depositDto)));
     }
 
     @PostMapping("/send")
-    public ResponseEntity sendFunds(@RequestBody SendDto sendDTO) {
-        try {
-            Transaction out = accountService.send(sendDTO);
-            return ResponseEntity.ok(out);
-        } catch (Exception exception) {
-            return ControllerExceptionsHandler.setResponseEntity(exception);
-        }
+    public ResponseEntity sendFunds(@RequestBody SendDto sendDTO,
+                                    @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        return toResponseEntity(once(idempotencyKey, sendDTO, () -> accountService.trySend(sendDTO)));
     }
 
     @PostMapping("/swap")
-    public ResponseEntity swapFunds(@RequestBody SwapDto swapDTO) {
-        try {
-            Transaction out = accountService.swap(swapDTO);
-            return ResponseEntity.ok(out);
-        } catch (Exception exception) {
-            return ControllerExceptionsHandler.setResponseEntity(exception);
-        }
+    public ResponseEntity swapFunds(@RequestBody SwapDto swapDTO,
+                                    @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        return toResponseEntity(once(idempotencyKey, swapDTO, () -> accountService.trySwap(swapDTO)));
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity batch(@RequestBody BatchRequestDto batchRequestDto) {
+        BatchResponseDto out = accountService.batch(batchRequestDto);
+        return ResponseEntity.ok(out);
     }
 
     @GetMapping("/{email}")
     @ResponseBody
     public ResponseEntity getAccount(@PathVariable String email) {
-        try {
-            AccountResponseDto out = accountService.find(email);
-            return ResponseEntity.ok(out);
-        } catch (Exception exception) {
-            return ControllerExceptionsHandler.setResponseEntity(exception);
-        }
+        AccountResponseDto out = accountService.find(email);
+        return ResponseEntity.ok(out);
     }
 
     @GetMapping("/{email}/transactions")
     @ResponseBody
     public ResponseEntity getAccountTransactions(@PathVariable String email) {
-        try {
-            List<Transaction> out = accountService.getTransactions(email);
-            return ResponseEntity.ok(out);
-        } catch (Exception exception) {
-            return ControllerExceptionsHandler.setResponseEntity(exception);
-        }
+        List<TransactionDto> out = accountService.getTransactions(email);
+        return ResponseEntity.ok(out);
+    }
+
+    @GetMapping(value = "/{email}/transactions", params = "limit")
+    @ResponseBody
+    public ResponseEntity getAccountTransactionsPage(@PathVariable String email,
+                                                     @RequestParam int limit,
+                                                     @RequestParam(required = false) String cursor) {
+        TransactionPageDto out = accountService.getTransactions(email, cursor, limit);
+        return ResponseEntity.ok(out);
+    }
+
+    @GetMapping("/{email}/statement")
+    @ResponseBody
+    public ResponseEntity getAccountStatement(@PathVariable String email, @RequestParam CurrencyEnum currency) {
+        List<TransactionDto> out = accountService.getStatement(email, currency);
+        return ResponseEntity.ok(out);
+    }
+
+    @GetMapping(value = "/{email}/transactions", produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAccountTransactions(@PathVariable String email) {
+        // resolving the iterator first, so an unknown account still gets a proper error response (from the advice)
+        Iterator<TransactionDto> transactions = accountService.streamTransactions(email);
+        StreamingResponseBody body = outputStream -> {
+            // one json document per line, written while iterating over the history
+            JsonGenerator generator = objectMapper.createGenerator(outputStream);
+            // the lines are the separators, not the default space between root values
+            generator.setRootValueSeparator(null);
+            int written = 0;
+            while (transactions.hasNext()) {
+                generator.writeObject(transactions.next());
+                generator.writeRaw('\n');
+                if (++written % STREAM_FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                }
+            }
+            generator.flush();
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    // retries of a request sent with an idempotency key get the result of the first one
+    private LedgerResult<TransactionDto> once(String idempotencyKey, Object request, Supplier<LedgerResult<TransactionDto>> operation) {
+        return idempotencyKey == null ? operation.get() : idempotencyCache.execute(idempotencyKey, request, operation);
+    }
+
+    // failures are normal outcomes (e.g. not enough funds), answered without throwing anything
+    private static ResponseEntity toResponseEntity(LedgerResult<TransactionDto> result) {
+        return result.isSuccess() ? ResponseEntity.ok(result.getValue()) : ControllerExceptionsHandler.setResponseEntity(result.getError());
     }
 
 }
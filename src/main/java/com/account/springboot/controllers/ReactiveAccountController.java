@@ -0,0 +1,89 @@
+package com.account.springboot.controllers;
+
+import com.account.springboot.dto.*;
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.services.ReactiveAccountService;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Same api as the {@link AccountController}, on WebFlux, enabled with {@code spring.main.web-application-type=reactive}.
+ * Nothing here holds a thread while waiting, e.g. for the rates of a swap, so a few event loop threads serve
+ * every connection. Errors (the history's included, failing before its first transaction) are mapped by the
+ * {@link com.account.springboot.util.ControllerExceptionsHandler}, the same as for the servlet api.
+ */
+@RestController
+@Slf4j
+@RequestMapping("/accounts")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class ReactiveAccountController {
+
+    private final ReactiveAccountService reactiveAccountService;
+
+    @PostMapping("/create")
+    public Mono<ResponseEntity<AccountResponseDto>> createAccount(@RequestBody AccountRequestDto accountRequestDto) {
+        return reactiveAccountService.create(accountRequestDto)
+                .map(out -> ResponseEntity.status(HttpStatus.CREATED).body(out));
+    }
+
+    @PostMapping("/create-balance")
+    public Mono<ResponseEntity<AccountResponseDto>> createBalance(@RequestBody CreateBalanceDto createBalanceDTO) {
+        return reactiveAccountService.createBalance(createBalanceDTO)
+                .map(out -> ResponseEntity.status(HttpStatus.CREATED).body(out));
+    }
+
+    @PostMapping("/deposit")
+    public Mono<ResponseEntity<TransactionDto>> deposit(@RequestBody DepositDto depositDto) {
+        return reactiveAccountService.deposit(depositDto).map(ResponseEntity::ok);
+    }
+
+    @PostMapping("/send")
+    public Mono<ResponseEntity<TransactionDto>> sendFunds(@RequestBody SendDto sendDTO) {
+        return reactiveAccountService.send(sendDTO).map(ResponseEntity::ok);
+    }
+
+    @PostMapping("/swap")
+    public Mono<ResponseEntity<TransactionDto>> swapFunds(@RequestBody SwapDto swapDTO) {
+        return reactiveAccountService.swap(swapDTO).map(ResponseEntity::ok);
+    }
+
+    @PostMapping("/batch")
+    public Mono<ResponseEntity<BatchResponseDto>> batch(@RequestBody BatchRequestDto batchRequestDto) {
+        return reactiveAccountService.batch(batchRequestDto).map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/{email}")
+    public Mono<ResponseEntity<AccountResponseDto>> getAccount(@PathVariable String email) {
+        return reactiveAccountService.find(email).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Whole history, as a json array or, with {@code Accept: application/x-ndjson}, one transaction per line.
+     * Transactions are written as the client reads them (backpressure), never all held in memory.
+     */
+    @GetMapping("/{email}/transactions")
+    public Flux<TransactionDto> getAccountTransactions(@PathVariable String email) {
+        return reactiveAccountService.getTransactions(email);
+    }
+
+    @GetMapping(value = "/{email}/transactions", params = "limit")
+    public Mono<ResponseEntity<TransactionPageDto>> getAccountTransactionsPage(@PathVariable String email,
+                                                                               @RequestParam int limit,
+                                                                               @RequestParam(required = false) String cursor) {
+        return reactiveAccountService.getTransactions(email, cursor, limit).map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/{email}/statement")
+    public Flux<TransactionDto> getAccountStatement(@PathVariable String email, @RequestParam CurrencyEnum currency) {
+        return reactiveAccountService.getStatement(email, currency);
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.account.springboot.dto;
+
+import lombok.*;
+
+/**
+ * One operation of a batch, exactly one of deposit, send or swap must be set
+ */
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchOperationDto {
+
+    private DepositDto deposit;
+
+    private SendDto send;
+
+    private SwapDto swap;
+
+    public static BatchOperationDto deposit(DepositDto deposit) {
+        return new BatchOperationDto(deposit, null, null);
+    }
+
+    public static BatchOperationDto send(SendDto send) {
+        return new BatchOperationDto(null, send, null);
+    }
+
+    public static BatchOperationDto swap(SwapDto swap) {
+        return new BatchOperationDto(null, null, swap);
+    }
+}
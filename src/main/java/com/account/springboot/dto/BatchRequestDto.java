@@ -0,0 +1,21 @@
+package com.account.springboot.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchRequestDto {
+
+    // all-or-nothing: if any operation fails, none of them is applied
+    private boolean atomic;
+
+    @NotEmpty
+    private List<BatchOperationDto> operations;
+
+}
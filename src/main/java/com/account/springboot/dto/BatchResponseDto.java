@@ -0,0 +1,22 @@
+package com.account.springboot.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.List;
+
+@ToString
+@Builder
+@Getter
+@Setter
+public class BatchResponseDto {
+
+    private boolean atomic;
+    private int succeeded;
+    private int failed;
+    // one result per operation, in the same order as the request
+    private List<BatchResultDto> results;
+
+}
@@ -0,0 +1,22 @@
+package com.account.springboot.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+@ToString
+@Builder
+@Getter
+@Setter
+public class BatchResultDto {
+
+    // position of the operation in the batch request
+    private int index;
+    private boolean success;
+    private TransactionDto transaction;
+    // set when the operation failed
+    private Integer errorCode;
+    private String error;
+
+}
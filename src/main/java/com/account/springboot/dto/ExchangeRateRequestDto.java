@@ -4,6 +4,8 @@ import com.account.springboot.models.CurrencyEnum;
 import jakarta.validation.constraints.NotEmpty;
 import lombok.*;
 
+import java.time.LocalDate;
+
 @ToString
 @Builder
 @Getter
@@ -17,5 +19,12 @@ public class ExchangeRateRequestDto {
     @NotEmpty
     private CurrencyEnum targetCurrency;
 
+    // rate as of this date (the latest rate on or before it), today's rate when not set
+    private LocalDate date;
+
+    public ExchangeRateRequestDto(CurrencyEnum sourceCurrency, CurrencyEnum targetCurrency) {
+        this(sourceCurrency, targetCurrency, null);
+    }
+
 
 }
\ No newline at end of file
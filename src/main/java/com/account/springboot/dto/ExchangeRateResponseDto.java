@@ -19,4 +19,7 @@ public class ExchangeRateResponseDto {
 
     @JsonFormat(pattern = "yyyy-MM-dd")
     private LocalDate date;
+
+    // version of the rates snapshot the rate comes from
+    private long rateVersion;
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+package com.account.springboot.dto;
+
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.models.TransactionTypeEnum;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@ToString
+@Builder
+@Getter
+@Setter
+public class TransactionDto {
+
+    private String fromEmail;
+    private String toEmail;
+    private CurrencyEnum fromCurrency;
+    private BigDecimal fromAmount;
+    private CurrencyEnum toCurrency;
+    private BigDecimal toAmount;
+    private CurrencyEnum serviceCurrency;
+    private BigDecimal serviceFeeAmount;
+    private TransactionTypeEnum type;
+    // version of the exchange rates used by a swap (null for other transactions)
+    private Long rateVersion;
+    private LocalDate createdAt;
+    // amounts re-priced in the currency of a statement at the rates of the day of the transaction (null outside statements)
+    private CurrencyEnum statementCurrency;
+    private BigDecimal statementFromAmount;
+    private BigDecimal statementToAmount;
+
+}
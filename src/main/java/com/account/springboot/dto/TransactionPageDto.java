@@ -0,0 +1,21 @@
+package com.account.springboot.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.List;
+
+@ToString
+@Builder
+@Getter
+@Setter
+public class TransactionPageDto {
+
+    private List<TransactionDto> transactions;
+
+    // opaque cursor to be sent back to get the next page, null when there are no more transactions
+    private String nextCursor;
+
+}
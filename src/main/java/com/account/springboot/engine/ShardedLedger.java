@@ -0,0 +1,188 @@
+package com.account.springboot.engine;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs ledger commands on N single-threaded shards. Every account belongs to exactly one shard (by its id),
+ * so the balances of an account are only ever changed by the thread of its shard and never contended.
+ * <p>
+ * Commands are handed over through a bounded {@link MpscRingBuffer} per shard. A shard thread spins for a while
+ * when it runs out of commands and then parks until a producer wakes it up. Producers block (spinning and then
+ * parking briefly) while the ring of a shard is full, which is the backpressure of the engine.
+ */
+@Slf4j
+public class ShardedLedger implements Closeable {
+
+    // number of empty polls a shard spins through before parking
+    private static final int SPINS_BEFORE_PARKING = 1000;
+    // how long a producer parks when the ring of a shard is full
+    private static final long FULL_RING_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * A single-threaded partition of the ledger
+     */
+    public static class Shard {
+        private final int index;
+        private final MpscRingBuffer<Runnable> commands;
+        private final Thread thread;
+        private volatile boolean running = true;
+        // set by the shard thread right before parking, so producers only unpark it when needed
+        private volatile boolean sleeping;
+
+        private Shard(int index, int ringCapacity) {
+            this.index = index;
+            this.commands = new MpscRingBuffer<>(ringCapacity);
+            this.thread = new Thread(this::run, "ledger-shard-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Runs the command on the shard thread and waits for it
+         * @param command - command changing the balances owned by this shard
+         */
+        public void execute(Runnable command) {
+            try {
+                submit(command).join();
+            } catch (CompletionException exception) {
+                // rethrowing the original exception (e.g. a CustomException) to the caller
+                if (exception.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw exception;
+            }
+        }
+
+        /**
+         * Queues the command on the shard
+         * @param command - command changing the balances owned by this shard
+         * @return completed once the command ran
+         */
+        public CompletableFuture<Void> submit(Runnable command) {
+            CompletableFuture<Void> completion = new CompletableFuture<>();
+            Runnable task = () -> {
+                try {
+                    command.run();
+                    completion.complete(null);
+                } catch (Throwable exception) {
+                    completion.completeExceptionally(exception);
+                }
+            };
+            while (!commands.offer(task)) {
+                if (!running) {
+                    throw new IllegalStateException("Ledger shard is stopped");
+                }
+                wakeUp();
+                LockSupport.parkNanos(FULL_RING_PARK_NANOS);
+            }
+            wakeUp();
+            return completion;
+        }
+
+        private void wakeUp() {
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void run() {
+            int idle = 0;
+            while (running) {
+                Runnable command = commands.poll();
+                if (command != null) {
+                    command.run();
+                    idle = 0;
+                    continue;
+                }
+                if (++idle < SPINS_BEFORE_PARKING) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                sleeping = true;
+                // checking again after announcing it, a producer that missed the flag already published its command
+                if (commands.isEmpty() && running) {
+                    LockSupport.park(this);
+                }
+                sleeping = false;
+                idle = 0;
+            }
+            // running whatever was queued before stopping, so no caller waits forever
+            for (Runnable command = commands.poll(); command != null; command = commands.poll()) {
+                command.run();
+            }
+        }
+    }
+
+    private final Shard[] shards;
+
+    public ShardedLedger(int shardCount, int ringCapacity) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Invalid number of shards: " + shardCount);
+        }
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, ringCapacity);
+            shards[i].thread.start();
+        }
+        log.info("Started the sharded ledger with {} shards", shardCount);
+    }
+
+    /**
+     * @param accountId - id of the account (ids are dense, so accounts are spread evenly over the shards)
+     * @return the shard owning the account
+     */
+    public Shard shardOf(int accountId) {
+        return shards[Math.floorMod(accountId, shards.length)];
+    }
+
+    /**
+     * Runs a command changing balances owned by several shards. Every shard but the last one is held idle
+     * while the last one runs the command, so its thread is the only one touching those balances meanwhile.
+     * @param involved - shards owning the balances changed by the command
+     * @param command - command changing the balances
+     */
+    public void execute(Collection<Shard> involved, Runnable command) {
+        Shard[] ordered = involved.stream().distinct().sorted(Comparator.comparingInt(shard -> shard.index)).toArray(Shard[]::new);
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        try {
+            // holding the shards in index order, so two commands can't each wait for a shard the other one holds
+            for (int i = 0; i < ordered.length - 1; i++) {
+                CompletableFuture<Void> held = new CompletableFuture<>();
+                ordered[i].submit(() -> {
+                    held.complete(null);
+                    release.join();
+                });
+                held.join();
+            }
+            ordered[ordered.length - 1].execute(command);
+        } finally {
+            release.complete(null);
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            shard.running = false;
+            LockSupport.unpark(shard.thread);
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -3,21 +3,50 @@ package com.account.springboot.exceptions;
 
 import lombok.Getter;
 
+/**
+ * Domain error of the ledger (unknown account, not enough funds, ...).
+ * <p>
+ * These are normal outcomes rather than bugs, so they don't capture a stack trace (nor suppressed exceptions),
+ * and the ones with the default details of their code are preallocated, see {@link #of(ErrorCode)}.
+ */
 @Getter
-//@ResponseStatus(code = HttpStatus.NOT_FOUND, reason = "video not found")
 public class CustomException extends RuntimeException {
+    private static final CustomException[] PREALLOCATED = new CustomException[ErrorCode.values().length];
+
+    static {
+        for (ErrorCode code : ErrorCode.values()) {
+            PREALLOCATED[code.ordinal()] = new CustomException(code);
+        }
+    }
+
     private final ErrorCode code;
     private final String details;
 
     public CustomException(ErrorCode code, String details) {
-        super(code.name());
+        super(code.name(), null, false, false);
         this.code = code;
         this.details = details;
     }
 
     public CustomException(ErrorCode code) {
-        super(code.name());
-        this.code = code;
-        this.details = code.getMsg();
+        this(code, code.getMsg());
+    }
+
+    /**
+     * @param code - error code
+     * @return the shared, immutable, exception of the code (with its default details)
+     */
+    public static CustomException of(ErrorCode code) {
+        return PREALLOCATED[code.ordinal()];
+    }
+
+    /**
+     * Throws the error returned by a result-based operation (e.g. Account.tryTransfer), if any
+     * @param code - error code, null if the operation succeeded
+     */
+    public static void throwIfFailed(ErrorCode code) {
+        if (code != null) {
+            throw of(code);
+        }
     }
-}
\ No newline at end of file
+}
@@ -10,7 +10,15 @@ public enum ErrorCode {
     NO_SUCH_ACCOUNT(1002, Constants.NO_SUCH_ACCOUNT_MSG),
     INSUFFICIENT_AMOUNT(1003, Constants.INSUFFICIENT_AMOUNT_MSG),
     ACCOUNT_ALREADY_EXISTS(1004, Constants.ACCOUNT_ALREADY_EXISTS_MSG),
-    BALANCE_ALREADY_EXISTS(1005, Constants.BALANCE_ALREADY_EXISTS_MSG);
+    BALANCE_ALREADY_EXISTS(1005, Constants.BALANCE_ALREADY_EXISTS_MSG),
+    INVALID_CURSOR(1006, Constants.INVALID_CURSOR_MSG),
+    INVALID_AMOUNT(1007, Constants.INVALID_AMOUNT_MSG),
+    INVALID_BATCH_OPERATION(1008, Constants.INVALID_BATCH_OPERATION_MSG),
+    BATCH_TOO_LARGE(1009, Constants.BATCH_TOO_LARGE_MSG),
+    BATCH_ABORTED(1010, Constants.BATCH_ABORTED_MSG),
+    RATE_NOT_FOUND(1011, Constants.RATE_NOT_FOUND_MSG),
+    RATES_UNAVAILABLE(1012, Constants.RATES_UNAVAILABLE_MSG),
+    IDEMPOTENCY_KEY_REUSED(1013, Constants.IDEMPOTENCY_KEY_REUSED_MSG);
 
     private final int code;
     private final String msg;
@@ -22,5 +30,13 @@ public enum ErrorCode {
 
         public final static String ACCOUNT_ALREADY_EXISTS_MSG = "An Account with this email already exists";
         public final static String BALANCE_ALREADY_EXISTS_MSG = "The Account has already a balance open for this currency";
+        public final static String INVALID_CURSOR_MSG = "The pagination cursor is invalid";
+        public final static String INVALID_AMOUNT_MSG = "Amount is invalid or out of range for the currency";
+        public final static String INVALID_BATCH_OPERATION_MSG = "A batch operation must have exactly one of deposit, send or swap";
+        public final static String BATCH_TOO_LARGE_MSG = "The batch has too many operations";
+        public final static String BATCH_ABORTED_MSG = "Not applied because another operation of the atomic batch failed";
+        public final static String RATE_NOT_FOUND_MSG = "There is no exchange rate for this date";
+        public final static String RATES_UNAVAILABLE_MSG = "Exchange rates are temporarily unavailable";
+        public final static String IDEMPOTENCY_KEY_REUSED_MSG = "The idempotency key was already used for a different request";
     }
 }
\ No newline at end of file
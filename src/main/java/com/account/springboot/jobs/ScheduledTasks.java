@@ -1,60 +1,212 @@
 package com.account.springboot.jobs;
 
 import com.account.springboot.models.Account;
-import com.account.springboot.models.Transaction;
+import com.account.springboot.models.Balance;
+import com.account.springboot.models.CurrencyEnum;
 import com.account.springboot.models.TransactionTypeEnum;
+import com.account.springboot.services.AccountService;
 import com.account.springboot.services.InMemoryService;
+import com.account.springboot.services.LedgerCommit;
+import com.account.springboot.util.InterestPayoutKernel;
 import com.account.springboot.util.InterestRateCalculator;
+import com.account.springboot.util.LedgerClock;
+import com.account.springboot.util.LedgerMetrics;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.math.BigDecimal;
-import java.math.MathContext;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
 
 @Component
 @Slf4j
 public class ScheduledTasks {
 
+    // partitions per worker thread, so a slow partition doesn't leave the other threads idle
+    private static final int PARTITIONS_PER_THREAD = 4;
+    // balances whose payouts are computed together
+    private static final int CHUNK_SIZE = 4096;
+
+    /**
+     * Outcome of an interest payout run
+     */
+    @Getter
+    @Builder
+    @ToString
+    public static class PayoutReport {
+        private final YearMonth month;
+        private final long accounts;
+        private final long balances;
+        private final long payouts;
+        private final Duration elapsed;
+
+        public long getBalancesPerSecond() {
+            return elapsed.isZero() ? balances : balances * TimeUnit.SECONDS.toNanos(1) / elapsed.toNanos();
+        }
+    }
+
     @Autowired
     private InMemoryService inMemoryService;
 
+    // credits the payouts, so they go through the same engine as deposits (e.g. the shard owning the account)
+    @Autowired
+    private AccountService accountService;
+
     @Autowired
     private InterestRateCalculator interestRateCalculator;
 
+    // threads paying interest (0 = one per core), on a pool of their own so requests and other jobs aren't affected
+    @Value("${jobs.interest.parallelism:0}")
+    private int parallelism;
+
+    // report of the last run
+    @Getter
+    private volatile PayoutReport lastReport;
+
     @Scheduled(cron = "0 0 0 1 * *") // Run at midnight on the first day of each month
     public void payoutInterestRates() {
-        Map<String, Account> accounts  = inMemoryService.getAllAccounts();
+        Collection<Account> accounts  = inMemoryService.getAllAccounts();
         log.debug("Running interest rates job");
-        accounts.forEach((email, account) -> {
-            account.getBalances().forEach((currency, balance) -> {
-                // calculates the monthly interest rate to be paid considering
-                // if the account was created for more than a 1 month (full interest) or less (proportional to the days that were open over that month)
-                BigDecimal monthlyInterestRate = interestRateCalculator.getMonthlyInterest(balance.getCreatedAt(), balance.getYearlyInterestRate());
-                BigDecimal monthlyPayout = balance.getAmount().multiply(monthlyInterestRate, MathContext.DECIMAL32);
-
-                if (monthlyPayout.compareTo(BigDecimal.ZERO) > 0) {
-                    account.updateBalance(currency, monthlyPayout);
-                    Transaction newTransaction = Transaction.builder()
-                            .fromAccount(account)
-                            .toAccount(account)
-                            .fromCurrency(currency)
-                            .toCurrency(currency)
-                            .serviceCurrency(currency)
-                            .fromAmount(monthlyPayout)
-                            .toAmount(monthlyPayout)
-                            .serviceFeeAmount(new BigDecimal("0"))
-                            .type(TransactionTypeEnum.INTEREST_PAYOUT)
-                            .createdAt(LocalDate.now())
-                            .build();
-                    inMemoryService.upsertAccount(email, account);
-                    inMemoryService.addTransaction(newTransaction);
-                }
-            });
-        });
+        long start = System.nanoTime();
+        LocalDate today = LedgerClock.today();
+        YearMonth month = YearMonth.from(today);
+        List<Account> snapshot = new ArrayList<>(accounts);
+        AtomicLong processedAccounts = new AtomicLong();
+        AtomicLong processedBalances = new AtomicLong();
+        AtomicLong payouts = new AtomicLong();
+
+        if (!snapshot.isEmpty()) {
+            // dates and monthly rates are worked out once for the whole run
+            InterestPayoutKernel kernel = interestRateCalculator.newPayoutKernel(today);
+            int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+            int partitions = Math.min(snapshot.size(), threads * PARTITIONS_PER_THREAD);
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                pool.submit(() -> IntStream.range(0, partitions).parallel().forEach(partition -> {
+                    // every partition takes every n-th account, pays them and journals its payouts a chunk at a time
+                    PayoutChunk chunk = new PayoutChunk(Math.min(CHUNK_SIZE, snapshot.size() / partitions + 1));
+                    // counted by the partition and added to the totals once, the threads don't share a counter per balance
+                    long partitionAccounts = 0;
+                    long partitionBalances = 0;
+                    long partitionPayouts = 0;
+                    for (int i = partition; i < snapshot.size(); i += partitions) {
+                        Account account = snapshot.get(i);
+                        for (Map.Entry<CurrencyEnum, Balance> entry : account.getBalances().entrySet()) {
+                            partitionBalances++;
+                            Balance balance = entry.getValue();
+                            if (month.equals(balance.getLastInterestPayout())) {
+                                continue;
+                            }
+                            // interest is paid on the average end-of-day amount held since the last payout,
+                            // the period is only closed when the payout is credited (see Account.payInterest)
+                            long averageAmount = account.interestPeriodAverage(entry.getKey(), month, today);
+                            if (averageAmount < 0) {
+                                continue;
+                            }
+                            chunk.add(account, entry.getKey(), averageAmount,
+                                    kernel.daysFromOpening(balance.getCreatedAt()), kernel.rateIndex(balance.getYearlyInterestRate()));
+                            if (chunk.isFull()) {
+                                partitionPayouts += payChunk(chunk, kernel, month, today);
+                            }
+                        }
+                        partitionAccounts++;
+                    }
+                    partitionPayouts += payChunk(chunk, kernel, month, today);
+                    processedAccounts.addAndGet(partitionAccounts);
+                    processedBalances.addAndGet(partitionBalances);
+                    payouts.addAndGet(partitionPayouts);
+                    log.debug("Interest payout progress: {}/{} accounts", processedAccounts.get(), snapshot.size());
+                })).join();
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        lastReport = PayoutReport.builder()
+                .month(month)
+                .accounts(processedAccounts.get())
+                .balances(processedBalances.get())
+                .payouts(payouts.get())
+                .elapsed(Duration.ofNanos(System.nanoTime() - start))
+                .build();
+        if (!snapshot.isEmpty()) {
+            LedgerMetrics.recordInterestPayout(lastReport.getElapsed());
+            log.info("Paid {} interest payouts for {} over {} balances in {} ms ({} balances/s)",
+                    lastReport.getPayouts(), month, lastReport.getBalances(), lastReport.getElapsed().toMillis(),
+                    lastReport.getBalancesPerSecond());
+        }
+    }
+
+    // credits the payouts of a chunk, they are all committed as one record and the chunk waits once for it to be
+    // durable, returns the number of payouts
+    private int payChunk(PayoutChunk chunk, InterestPayoutKernel kernel, YearMonth month, LocalDate today) {
+        LedgerCommit commit = new LedgerCommit(inMemoryService);
+        int paid = chunk.pay(kernel, accountService, month, today, commit);
+        commit.awaitDurable();
+        if (paid > 0) {
+            LedgerMetrics.recordTransactions(TransactionTypeEnum.INTEREST_PAYOUT, paid);
+        }
+        return paid;
+    }
+
+    /**
+     * Columns of the balances whose payouts are computed together
+     */
+    private static class PayoutChunk {
+        private final Account[] accounts;
+        private final CurrencyEnum[] currencies;
+        private final long[] amounts;
+        private final int[] daysFromOpening;
+        private final int[] rateIndexes;
+        private final long[] payouts;
+        private int size;
+
+        PayoutChunk(int capacity) {
+            accounts = new Account[capacity];
+            currencies = new CurrencyEnum[capacity];
+            amounts = new long[capacity];
+            daysFromOpening = new int[capacity];
+            rateIndexes = new int[capacity];
+            payouts = new long[capacity];
+        }
+
+        void add(Account account, CurrencyEnum currency, long amount, int days, int rateIndex) {
+            accounts[size] = account;
+            currencies[size] = currency;
+            amounts[size] = amount;
+            daysFromOpening[size] = days;
+            rateIndexes[size] = rateIndex;
+            size++;
+        }
+
+        boolean isFull() {
+            return size == accounts.length;
+        }
 
+        // credits the payouts of the chunk (closing the period of every balance, even without a payout) and empties it,
+        // returns the number of payouts
+        int pay(InterestPayoutKernel kernel, AccountService accountService, YearMonth month, LocalDate today, LedgerCommit commit) {
+            kernel.computePayouts(amounts, daysFromOpening, rateIndexes, payouts, size);
+            // balances whose month was paid meanwhile (e.g. by another run) are skipped
+            int paid = accountService.payInterest(accounts, currencies, payouts, size, month, today, commit);
+            Arrays.fill(accounts, 0, size, null);
+            size = 0;
+            return paid;
+        }
     }
 }
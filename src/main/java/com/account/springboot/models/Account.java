@@ -4,12 +4,20 @@ import com.account.springboot.dto.AccountRequestDto;
 import com.account.springboot.dto.AccountResponseDto;
 import com.account.springboot.exceptions.CustomException;
 import com.account.springboot.exceptions.ErrorCode;
+import com.account.springboot.util.AccountIds;
+import com.account.springboot.util.LedgerClock;
+import com.account.springboot.util.LedgerMetrics;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -19,6 +27,21 @@ import java.util.stream.Collectors;
 @EqualsAndHashCode
 @ToString
 public class Account {
+
+    /**
+     * Receives the new state of the balances changed by an operation while the operation still holds their locks,
+     * before anyone else can see (or build on) the change. The change is only made if the journal returns normally.
+     */
+    @FunctionalInterface
+    public interface Journal {
+        // for changes that don't need to be journaled
+        Journal NONE = changes -> { };
+
+        void record(List<BalanceChange> changes);
+    }
+
+    // dense id given when the account is added to the ledger (see AccountIds), used instead of the email inside it
+    private int id;
     private String email;
     private ConcurrentMap<CurrencyEnum, Balance> balances;
     private LocalDate createdAt;
@@ -26,6 +49,7 @@ public class Account {
 
     public Account(AccountRequestDto dto) {
         this.balances = new ConcurrentHashMap<>();
+        this.id = AccountIds.NONE;
         this.email = dto.getEmail();
         LocalDate now = LocalDate.now();
         this.createdAt = now;
@@ -46,33 +70,321 @@ public class Account {
     }
 
     public void addBalance(CurrencyEnum currency, BigDecimal yearlyInterestRate) {
+        addBalance(currency, yearlyInterestRate, Journal.NONE);
+    }
+
+    /**
+     * Adds a new empty balance, journaled before anyone can change it
+     * @param currency - currency of the balance
+     * @param yearlyInterestRate - yearly interest rate of the balance
+     * @param journal - receives the new balance
+     * @return false if the account already has a balance in that currency, in which case nothing changed
+     */
+    public boolean addBalance(CurrencyEnum currency, BigDecimal yearlyInterestRate, Journal journal) {
         LocalDate now = LocalDate.now();
-        balances.put(currency, Balance.builder()
+        Balance balance = Balance.builder()
                 .currency(currency)
-                .amount(new BigDecimal("0"))
+                .amountMinor(0)
                 .yearlyInterestRate(yearlyInterestRate) // considering the interest is 1.5% per year
                 .createdAt(now)
                 .updatedAt(now)
-                .build());
+                .accrualStartDay(now.toEpochDay())
+                .accruedToDay(now.toEpochDay())
+                .build();
+        // locked before it is visible, so nobody changes it until it was journaled
+        balance.getLock().lock();
+        try {
+            if (balances.putIfAbsent(currency, balance) != null) {
+                return false;
+            }
+            try {
+                journal.record(List.of(new BalanceChange(id, updatedAt, balance.copy())));
+            } catch (RuntimeException exception) {
+                balances.remove(currency, balance);
+                throw exception;
+            }
+            return true;
+        } finally {
+            balance.getLock().unlock();
+        }
     }
 
-    public void updateBalance(CurrencyEnum currency, BigDecimal amount) {
+    /**
+     * Moves funds between two balances atomically: either both balances change or none of them do.
+     * Both balances are locked in a global order (account id, then currency), so two transfers going in
+     * opposite directions can never deadlock.
+     * @param from - account being debited
+     * @param fromCurrency - currency of the balance being debited
+     * @param debit - amount taken from the "from" balance, in minor units
+     * @param to - account being credited (can be the same account, e.g. swaps)
+     * @param toCurrency - currency of the balance being credited
+     * @param credit - amount added to the "to" balance, in minor units
+     */
+    public static void transfer(Account from, CurrencyEnum fromCurrency, long debit,
+                                Account to, CurrencyEnum toCurrency, long credit) {
+        transfer(from, fromCurrency, debit, to, toCurrency, credit, Journal.NONE);
+    }
+
+    /**
+     * Same as {@link #transfer(Account, CurrencyEnum, long, Account, CurrencyEnum, long)}, the new state of both
+     * balances is journaled before they change
+     * @param journal - receives the new state of the balances, while they are locked
+     */
+    public static void transfer(Account from, CurrencyEnum fromCurrency, long debit,
+                                Account to, CurrencyEnum toCurrency, long credit, Journal journal) {
+        CustomException.throwIfFailed(tryTransfer(from, fromCurrency, debit, to, toCurrency, credit, journal));
+    }
+
+    /**
+     * Same as {@link #transfer(Account, CurrencyEnum, long, Account, CurrencyEnum, long, Journal)}, returning the
+     * error instead of throwing it, so an expected failure (e.g. not enough funds) doesn't throw anything
+     * @return null if the funds were moved, or the reason nothing changed
+     */
+    public static ErrorCode tryTransfer(Account from, CurrencyEnum fromCurrency, long debit,
+                                        Account to, CurrencyEnum toCurrency, long credit, Journal journal) {
+        Balance source = from.balances.get(fromCurrency);
+        Balance target = to.balances.get(toCurrency);
+        if (source == null || target == null) {
+            return ErrorCode.NO_SUCH_CURRENCY;
+        }
+        long waitStart = System.nanoTime();
+        if (source == target) {
+            // sending funds to the same balance, only needs to check there is enough to send
+            source.getLock().lock();
+            try {
+                LedgerMetrics.recordLockWait(System.nanoTime() - waitStart);
+                if (source.getAmountMinor() < debit) {
+                    return ErrorCode.INSUFFICIENT_AMOUNT;
+                }
+                long newAmount = Money.tryAdd(source.getAmountMinor() - debit, credit);
+                if (newAmount == Money.INVALID) {
+                    return ErrorCode.INVALID_AMOUNT;
+                }
+                LocalDate now = LedgerClock.today();
+                Balance newSource = changed(source, newAmount, now);
+                journal.record(List.of(new BalanceChange(from.id, now, newSource)));
+                source.update(newSource);
+                from.updatedAt = now;
+                return null;
+            } finally {
+                source.getLock().unlock();
+            }
+        }
+        boolean sourceFirst = compareLockOrder(from, fromCurrency, to, toCurrency) < 0;
+        Balance first = sourceFirst ? source : target;
+        Balance second = sourceFirst ? target : source;
+        first.getLock().lock();
+        second.getLock().lock();
+        try {
+            LedgerMetrics.recordLockWait(System.nanoTime() - waitStart);
+            // checking both sides before changing any of them
+            long newSourceAmount = Money.trySubtract(source.getAmountMinor(), debit);
+            long newTargetAmount = Money.tryAdd(target.getAmountMinor(), credit);
+            if (newSourceAmount == Money.INVALID || newTargetAmount == Money.INVALID) {
+                return ErrorCode.INVALID_AMOUNT;
+            }
+            if (newSourceAmount < 0 || newTargetAmount < 0) {
+                return ErrorCode.INSUFFICIENT_AMOUNT;
+            }
+            LocalDate now = LedgerClock.today();
+            Balance newSource = changed(source, newSourceAmount, now);
+            Balance newTarget = changed(target, newTargetAmount, now);
+            journal.record(List.of(new BalanceChange(from.id, now, newSource), new BalanceChange(to.id, now, newTarget)));
+            source.update(newSource);
+            target.update(newTarget);
+            from.updatedAt = now;
+            to.updatedAt = now;
+            return null;
+        } finally {
+            second.getLock().unlock();
+            first.getLock().unlock();
+        }
+    }
+
+    /**
+     * Runs an action while holding the locks of several balances, taken in the same global order as
+     * {@link #transfer}, so no other thread can change (or see half of) what the action does to them.
+     * @param balances - currencies of the balances to lock, by account (an identity map, the equality of an account
+     *                 covers its balances)
+     * @param action - runs while every balance is locked, can call transfer/updateBalance on them
+     */
+    public static void runLocked(Map<Account, ? extends Collection<CurrencyEnum>> balances, Runnable action) {
+        List<Balance> ordered = new ArrayList<>();
+        balances.entrySet().stream()
+                .flatMap(entry -> entry.getValue().stream().distinct().map(currency -> Map.entry(entry.getKey(), currency)))
+                .sorted((first, second) -> compareLockOrder(first.getKey(), first.getValue(), second.getKey(), second.getValue()))
+                // resolving every balance before locking any of them
+                .forEach(entry -> ordered.add(entry.getKey().getBalance(entry.getValue())));
+        int locked = 0;
+        try {
+            for (Balance balance : ordered) {
+                balance.getLock().lock();
+                locked++;
+            }
+            action.run();
+        } finally {
+            // releasing in the reverse order, only the locks that were actually taken
+            for (int i = locked - 1; i >= 0; i--) {
+                ordered.get(i).getLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * State of a balance, to be journaled by an action run with {@link #runLocked}.
+     * Must be called while holding the balance lock.
+     * @param currency - currency of the balance
+     * @return BalanceChange
+     */
+    public BalanceChange balanceChange(CurrencyEnum currency) {
+        return new BalanceChange(id, updatedAt, getBalance(currency).copy());
+    }
+
+    /**
+     * Puts back a state of a balance taken with {@link #balanceChange}, e.g. to undo a change whose commit failed.
+     * Must be called while holding the balance lock.
+     * @param state - state of the balance and of the account at the time
+     */
+    public void restore(BalanceChange state) {
+        getBalance(state.getBalance().getCurrency()).update(state.getBalance());
+        updatedAt = state.getAccountUpdatedAt();
+    }
+
+    /**
+     * Adds (or takes, when negative) an amount to a balance
+     * @param currency - currency of the balance
+     * @param amount - amount in minor units of the currency
+     */
+    public void updateBalance(CurrencyEnum currency, long amount) {
+        updateBalance(currency, amount, Journal.NONE);
+    }
+
+    /**
+     * Same as {@link #updateBalance(CurrencyEnum, long)}, the new state of the balance is journaled before it changes
+     * @param journal - receives the new state of the balance, while it is locked
+     */
+    public void updateBalance(CurrencyEnum currency, long amount, Journal journal) {
+        CustomException.throwIfFailed(tryUpdateBalance(currency, amount, journal));
+    }
+
+    /**
+     * Same as {@link #updateBalance(CurrencyEnum, long, Journal)}, returning the error instead of throwing it
+     * @return null if the balance changed, or the reason it didn't
+     */
+    public ErrorCode tryUpdateBalance(CurrencyEnum currency, long amount, Journal journal) {
         Balance balance = balances.get(currency);
         if (balance == null) {
-            throw new CustomException(ErrorCode.NO_SUCH_CURRENCY);
+            return ErrorCode.NO_SUCH_CURRENCY;
         }
+        long waitStart = System.nanoTime();
+        balance.getLock().lock();
+        try {
+            LedgerMetrics.recordLockWait(System.nanoTime() - waitStart);
+            long newAmount = Money.tryAdd(balance.getAmountMinor(), amount);
+            if (newAmount == Money.INVALID) {
+                return ErrorCode.INVALID_AMOUNT;
+            }
+            if (newAmount < 0) {
+                return ErrorCode.INSUFFICIENT_AMOUNT;
+            }
+            LocalDate now = LedgerClock.today();
+            Balance newBalance = changed(balance, newAmount, now);
+            journal.record(List.of(new BalanceChange(id, now, newBalance)));
+            balance.update(newBalance);
+            updatedAt = now;
+            return null;
+        } finally {
+            balance.getLock().unlock();
+        }
+    }
+
+    /**
+     * Average amount of a balance since its last payout, to work out the payout of the month
+     * @param currency - currency of the balance
+     * @param month - month being paid
+     * @param today - day of the payout
+     * @return average end-of-day amount since the last payout in minor units, or -1 if the month was already paid
+     */
+    public long interestPeriodAverage(CurrencyEnum currency, YearMonth month, LocalDate today) {
+        Balance balance = getBalance(currency);
+        balance.getLock().lock();
+        try {
+            return month.equals(balance.getLastInterestPayout()) ? -1 : balance.averageAmount(today);
+        } finally {
+            balance.getLock().unlock();
+        }
+    }
 
-        synchronized (balance) {
-            BigDecimal currentAmount = balance.getAmount();
-            BigDecimal newAmount = currentAmount.add(amount);
+    /**
+     * Credits the interest payout of a balance and closes its interest period in one step, so nobody
+     * (e.g. a snapshot of the account) ever sees the period closed without the payout credited
+     * @param currency - currency of the balance
+     * @param month - month being paid, a balance is paid at most once per month
+     * @param today - day of the payout, the same one the average was worked out for
+     * @param payout - payout in minor units of the currency, can be 0
+     * @return false if the month was already paid, in which case nothing changed
+     */
+    public boolean payInterest(CurrencyEnum currency, YearMonth month, LocalDate today, long payout) {
+        return payInterest(currency, month, today, payout, Journal.NONE);
+    }
 
-            if (newAmount.compareTo(BigDecimal.ZERO) >= 0) {
-                balance.setAmount(newAmount);
-            } else {
-                throw new CustomException(ErrorCode.INSUFFICIENT_AMOUNT);
+    /**
+     * Same as {@link #payInterest(CurrencyEnum, YearMonth, LocalDate, long)}, the new state of the balance
+     * (even without a payout, its period is closed) is journaled before it changes
+     * @param journal - receives the new state of the balance, while it is locked
+     */
+    public boolean payInterest(CurrencyEnum currency, YearMonth month, LocalDate today, long payout, Journal journal) {
+        Balance balance = getBalance(currency);
+        balance.getLock().lock();
+        try {
+            if (month.equals(balance.getLastInterestPayout())) {
+                return false;
+            }
+            long newAmount = Money.add(balance.getAmountMinor(), payout);
+            Balance newBalance = balance.copy();
+            newBalance.closeAccrualPeriod(today);
+            newBalance.setLastInterestPayout(month);
+            LocalDate newUpdatedAt = updatedAt;
+            if (payout != 0) {
+                newBalance.changeAmount(newAmount, today);
+                newUpdatedAt = today;
             }
-            updatedAt = LocalDate.now();
+            journal.record(List.of(new BalanceChange(id, newUpdatedAt, newBalance)));
+            balance.update(newBalance);
+            updatedAt = newUpdatedAt;
+            return true;
+        } finally {
+            balance.getLock().unlock();
+        }
+    }
+
+    /**
+     * Same as {@link #updateBalance(CurrencyEnum, long)}, the amount can't have more decimals than the currency
+     */
+    public void updateBalance(CurrencyEnum currency, BigDecimal amount) {
+        updateBalance(currency, Money.fromBigDecimal(amount, currency, RoundingMode.UNNECESSARY));
+    }
+
+    // copy of a balance with a new amount, the balance itself doesn't change
+    private static Balance changed(Balance balance, long newAmountMinor, LocalDate today) {
+        Balance newBalance = balance.copy();
+        newBalance.changeAmount(newAmountMinor, today);
+        return newBalance;
+    }
+
+    private Balance getBalance(CurrencyEnum currency) {
+        Balance balance = balances.get(currency);
+        if (balance == null) {
+            throw CustomException.of(ErrorCode.NO_SUCH_CURRENCY);
         }
+        return balance;
+    }
+
+    // global lock order of the balances: by account id and then by currency (ids are distinct once the accounts
+    // are in the ledger)
+    private static int compareLockOrder(Account first, CurrencyEnum firstCurrency, Account second, CurrencyEnum secondCurrency) {
+        int byId = Integer.compare(first.getId(), second.getId());
+        return byId != 0 ? byId : firstCurrency.compareTo(secondCurrency);
     }
 
-}
\ No newline at end of file
+}
@@ -1,21 +1,159 @@
 package com.account.springboot.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Setter;
 import lombok.ToString;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Builder
 @Data
 @EqualsAndHashCode
 @ToString
 public class Balance {
+    private static final BigInteger LOW_WORD = BigInteger.ONE.shiftLeft(Long.SIZE).subtract(BigInteger.ONE);
+
+    // guards every change of the balance, a j.u.c. lock rather than a monitor so a virtual thread
+    // waiting for a hot balance doesn't pin its carrier thread
+    @JsonIgnore
+    @Builder.Default
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final ReentrantLock lock = new ReentrantLock();
     private CurrencyEnum currency;
-    private BigDecimal amount;
+    // amount in minor units of the currency (see Money)
+    @JsonIgnore
+    private long amountMinor;
     private BigDecimal yearlyInterestRate;
     private LocalDate createdAt;
     private LocalDate updatedAt;
-}
\ No newline at end of file
+    // month of the last interest payout, so a balance is never paid twice in the same month
+    private YearMonth lastInterestPayout;
+    // time-weighted accumulator of the current interest period: sum of the end-of-day amounts (in minor units)
+    // from accrualStartDay up to, but not including, accruedToDay (both epoch days).
+    // The sum is a 128-bit integer split in two longs, so large amounts held for long periods never overflow it
+    @JsonIgnore
+    private long accrualStartDay;
+    @JsonIgnore
+    private long accruedToDay;
+    @JsonIgnore
+    private long accruedAmountDays;
+    @JsonIgnore
+    private long accruedAmountDaysHigh;
+
+    public BigDecimal getAmount() {
+        return Money.toBigDecimal(amountMinor, currency);
+    }
+
+    /**
+     * Detached copy of the balance, with a lock of its own.
+     * Must be called while holding the balance lock, so the copy is never half of a change.
+     * @return Balance
+     */
+    public Balance copy() {
+        return Balance.builder()
+                .currency(currency)
+                .amountMinor(amountMinor)
+                .yearlyInterestRate(yearlyInterestRate)
+                .createdAt(createdAt)
+                .updatedAt(updatedAt)
+                .lastInterestPayout(lastInterestPayout)
+                .accrualStartDay(accrualStartDay)
+                .accruedToDay(accruedToDay)
+                .accruedAmountDays(accruedAmountDays)
+                .accruedAmountDaysHigh(accruedAmountDaysHigh)
+                .build();
+    }
+
+    /**
+     * Takes every value of another balance of the same currency, e.g. a copy that was changed and journaled.
+     * Must be called while holding the balance lock.
+     * @param state - balance to take the values from
+     */
+    public void update(Balance state) {
+        amountMinor = state.amountMinor;
+        yearlyInterestRate = state.yearlyInterestRate;
+        createdAt = state.createdAt;
+        updatedAt = state.updatedAt;
+        lastInterestPayout = state.lastInterestPayout;
+        accrualStartDay = state.accrualStartDay;
+        accruedToDay = state.accruedToDay;
+        accruedAmountDays = state.accruedAmountDays;
+        accruedAmountDaysHigh = state.accruedAmountDaysHigh;
+    }
+
+    /**
+     * Changes the amount of the balance, accruing the previous amount for the days it was held.
+     * Must be called while holding the balance lock.
+     * @param newAmountMinor - new amount in minor units
+     * @param today - day of the change
+     */
+    public void changeAmount(long newAmountMinor, LocalDate today) {
+        accrueTo(today.toEpochDay());
+        amountMinor = newAmountMinor;
+    }
+
+    /**
+     * Average end-of-day amount of the current interest period, without closing it.
+     * Must be called while holding the balance lock.
+     * @param today - day the period would be closed on, it ends the day before
+     * @return average end-of-day amount of the period in minor units (rounded down),
+     * or the current amount if the period had no full day
+     */
+    public long averageAmount(LocalDate today) {
+        long day = today.toEpochDay();
+        accrueTo(day);
+        long days = day - accrualStartDay;
+        if (days <= 0) {
+            return amountMinor;
+        }
+        // the high word only carries the sign unless the sum outgrew a long
+        if (accruedAmountDaysHigh == accruedAmountDays >> (Long.SIZE - 1)) {
+            return accruedAmountDays / days;
+        }
+        // the average of long amounts always fits in a long, only the sum needs the exact (and slower) path
+        return BigInteger.valueOf(accruedAmountDaysHigh).shiftLeft(Long.SIZE)
+                .or(BigInteger.valueOf(accruedAmountDays).and(LOW_WORD))
+                .divide(BigInteger.valueOf(days))
+                .longValueExact();
+    }
+
+    /**
+     * Closes the current interest period and starts a new one on the given day.
+     * Must be called while holding the balance lock.
+     * @param today - first day of the new period, the closed one ends the day before
+     * @return average end-of-day amount of the closed period in minor units (rounded down),
+     * or the current amount if the period had no full day
+     */
+    public long closeAccrualPeriod(LocalDate today) {
+        long average = averageAmount(today);
+        accrualStartDay = today.toEpochDay();
+        accruedAmountDays = 0;
+        accruedAmountDaysHigh = 0;
+        return average;
+    }
+
+    // O(1) whatever the number of changes: the amount held since the last change counts once per elapsed day,
+    // added to the 128-bit sum without allocating anything
+    private void accrueTo(long day) {
+        if (day <= accruedToDay) {
+            return;
+        }
+        long days = day - accruedToDay;
+        long low = accruedAmountDays + amountMinor * days;
+        // carry of the (unsigned) addition of the low words
+        long carry = Long.compareUnsigned(low, accruedAmountDays) < 0 ? 1 : 0;
+        accruedAmountDaysHigh += Math.multiplyHigh(amountMinor, days) + carry;
+        accruedAmountDays = low;
+        accruedToDay = day;
+    }
+}
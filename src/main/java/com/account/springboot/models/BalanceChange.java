@@ -0,0 +1,27 @@
+package com.account.springboot.models;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDate;
+
+/**
+ * New state of a balance changed by an operation, copied while the operation held the balance lock,
+ * so it can be journaled after the lock is released without ever being half of a change
+ */
+@Getter
+@ToString
+public class BalanceChange {
+    // id of the account owning the balance
+    private final int accountId;
+    // last update of the account, including this change
+    private final LocalDate accountUpdatedAt;
+    // detached copy of the balance, never changed after it was taken
+    private final Balance balance;
+
+    public BalanceChange(int accountId, LocalDate accountUpdatedAt, Balance balance) {
+        this.accountId = accountId;
+        this.accountUpdatedAt = accountUpdatedAt;
+        this.balance = balance;
+    }
+}
@@ -1,7 +1,15 @@
 package com.account.springboot.models;
 
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
 public enum CurrencyEnum {
-    CAD,
-    USD,
-    EUR
+    CAD(2),
+    USD(2),
+    EUR(2);
+
+    // number of decimal places of the currency minor unit (e.g. 2 for cents)
+    private final int scale;
 }
@@ -0,0 +1,276 @@
+package com.account.springboot.models;
+
+import com.account.springboot.exceptions.CustomException;
+import com.account.springboot.exceptions.ErrorCode;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money arithmetic. Amounts are plain {@code long}s counting the minor units of their currency
+ * (e.g. cents, see {@link CurrencyEnum#getScale()}), so updating a balance doesn't allocate anything.
+ * <p>
+ * Every operation checks for overflow, and the ones that can produce fractions of a minor unit take an
+ * explicit {@link RoundingMode}. {@link BigDecimal}s are only used at the boundaries (json, configuration)
+ * and as a fallback when an intermediate product doesn't fit in a long.
+ */
+public final class Money {
+
+    /**
+     * Returned by {@link #tryParse} for an amount that can't be parsed, no parsed amount is ever equal to it
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * Decimal factor (rates, fees) kept as an unscaled long and a scale, parsed once and reused
+     */
+    @Getter
+    @EqualsAndHashCode
+    @ToString
+    public static final class Factor {
+        private final long unscaled;
+        private final int scale;
+
+        private Factor(long unscaled, int scale) {
+            this.unscaled = unscaled;
+            this.scale = scale;
+        }
+
+        public static Factor of(BigDecimal value) {
+            BigDecimal normalized = value.stripTrailingZeros();
+            if (normalized.scale() < 0) {
+                normalized = normalized.setScale(0);
+            }
+            if (normalized.unscaledValue().bitLength() > 62 || normalized.scale() >= POWERS_OF_TEN.length) {
+                throw new IllegalArgumentException("Factor is too precise: " + value);
+            }
+            return new Factor(normalized.unscaledValue().longValue(), normalized.scale());
+        }
+
+        public static Factor parse(String value) {
+            return of(new BigDecimal(value));
+        }
+
+        public BigDecimal toBigDecimal() {
+            return BigDecimal.valueOf(unscaled, scale);
+        }
+    }
+
+    private Money() {
+    }
+
+    /**
+     * Parses a decimal amount (e.g. "10.5") into minor units without allocating
+     * @param amount - decimal amount, with at most as many decimal places as the currency
+     * @param currency - currency of the amount
+     * @return amount in minor units
+     */
+    public static long parse(String amount, CurrencyEnum currency) {
+        long value = tryParse(amount, currency);
+        if (value == INVALID) {
+            throw CustomException.of(ErrorCode.INVALID_AMOUNT);
+        }
+        return value;
+    }
+
+    /**
+     * Same as {@link #parse}, returning {@link #INVALID} instead of throwing when the amount can't be parsed
+     * @param amount - decimal amount, with at most as many decimal places as the currency
+     * @param currency - currency of the amount
+     * @return amount in minor units, or INVALID
+     */
+    public static long tryParse(String amount, CurrencyEnum currency) {
+        if (amount == null || amount.isEmpty()) {
+            return INVALID;
+        }
+        int scale = currency.getScale();
+        int length = amount.length();
+        int index = 0;
+        boolean negative = false;
+        char first = amount.charAt(0);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            index++;
+        }
+        long value = 0;
+        int decimals = -1;
+        boolean hasDigits = false;
+        for (; index < length; index++) {
+            char c = amount.charAt(index);
+            if (c == '.') {
+                if (decimals >= 0) {
+                    return INVALID;
+                }
+                decimals = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                return INVALID;
+            }
+            hasDigits = true;
+            if (decimals == scale) {
+                // trailing zeros beyond the minor unit are fine, anything else can't be represented
+                if (c != '0') {
+                    return INVALID;
+                }
+                continue;
+            }
+            if (decimals >= 0) {
+                decimals++;
+            }
+            // checked before it overflows, the amount is never near Long.MIN_VALUE so INVALID can't be parsed
+            if (value > (Long.MAX_VALUE - (c - '0')) / 10) {
+                return INVALID;
+            }
+            value = value * 10 + (c - '0');
+        }
+        if (!hasDigits) {
+            return INVALID;
+        }
+        long power = POWERS_OF_TEN[scale - Math.max(decimals, 0)];
+        if (value > Long.MAX_VALUE / power) {
+            return INVALID;
+        }
+        value *= power;
+        return negative ? -value : value;
+    }
+
+    /**
+     * @return the amount in minor units as a decimal in the currency unit (e.g. 1050 USD -> 10.50)
+     */
+    public static BigDecimal toBigDecimal(long amount, CurrencyEnum currency) {
+        return BigDecimal.valueOf(amount, currency.getScale());
+    }
+
+    /**
+     * @return the decimal amount in minor units, rounded with the given mode
+     */
+    public static long fromBigDecimal(BigDecimal amount, CurrencyEnum currency, RoundingMode roundingMode) {
+        try {
+            return amount.setScale(currency.getScale(), roundingMode).unscaledValue().longValueExact();
+        } catch (ArithmeticException exception) {
+            throw CustomException.of(ErrorCode.INVALID_AMOUNT);
+        }
+    }
+
+    public static long add(long amount, long other) {
+        try {
+            return Math.addExact(amount, other);
+        } catch (ArithmeticException exception) {
+            throw CustomException.of(ErrorCode.INVALID_AMOUNT);
+        }
+    }
+
+    public static long subtract(long amount, long other) {
+        try {
+            return Math.subtractExact(amount, other);
+        } catch (ArithmeticException exception) {
+            throw CustomException.of(ErrorCode.INVALID_AMOUNT);
+        }
+    }
+
+    /**
+     * Same as {@link #add}, returning {@link #INVALID} instead of throwing when the sum overflows
+     */
+    public static long tryAdd(long amount, long other) {
+        long sum = amount + other;
+        // overflowed if both operands have the same sign and the sum has the other one
+        return ((amount ^ sum) & (other ^ sum)) < 0 ? INVALID : sum;
+    }
+
+    /**
+     * Same as {@link #subtract}, returning {@link #INVALID} instead of throwing when the difference overflows
+     */
+    public static long trySubtract(long amount, long other) {
+        long difference = amount - other;
+        // overflowed if the operands have different signs and the difference doesn't have the sign of the first one
+        return ((amount ^ other) & (amount ^ difference)) < 0 ? INVALID : difference;
+    }
+
+    /**
+     * Multiplies an amount by a factor (e.g. a fee percentage), keeping the currency of the amount
+     * @return amount * factor in minor units, rounded with the given mode
+     */
+    public static long multiply(long amount, Factor factor, RoundingMode roundingMode) {
+        return multiply(amount, factor.getUnscaled(), factor.getScale(), roundingMode);
+    }
+
+    /**
+     * Multiplies an amount by any decimal factor (e.g. a monthly interest rate)
+     * @return amount * factor in minor units, rounded with the given mode
+     */
+    public static long multiply(long amount, BigDecimal factor, RoundingMode roundingMode) {
+        if (factor.scale() >= 0 && factor.scale() < POWERS_OF_TEN.length && factor.unscaledValue().bitLength() < 63) {
+            return multiply(amount, factor.unscaledValue().longValue(), factor.scale(), roundingMode);
+        }
+        return exactMultiply(amount, factor, roundingMode);
+    }
+
+    /**
+     * Converts an amount to another currency using an exchange rate
+     * @return amount * rate in minor units of the target currency, rounded with the given mode
+     */
+    public static long convert(long amount, CurrencyEnum from, CurrencyEnum to, Factor rate, RoundingMode roundingMode) {
+        // e.g. converting cents to a currency with 3 decimal places means an extra multiplication by 10
+        return multiply(amount, rate.getUnscaled(), rate.getScale() + from.getScale() - to.getScale(), roundingMode);
+    }
+
+    private static long multiply(long amount, long unscaled, int scale, RoundingMode roundingMode) {
+        try {
+            long product = Math.multiplyExact(amount, unscaled);
+            if (scale <= 0) {
+                return Math.multiplyExact(product, POWERS_OF_TEN[-scale]);
+            }
+            if (scale < POWERS_OF_TEN.length) {
+                return divide(product, POWERS_OF_TEN[scale], roundingMode);
+            }
+        } catch (ArithmeticException | ArrayIndexOutOfBoundsException exception) {
+            // the product doesn't fit in a long, falling back to the exact (and slower) BigDecimal path
+        }
+        return exactMultiply(amount, BigDecimal.valueOf(unscaled, scale), roundingMode);
+    }
+
+    private static long exactMultiply(long amount, BigDecimal factor, RoundingMode roundingMode) {
+        try {
+            return BigDecimal.valueOf(amount).multiply(factor).setScale(0, roundingMode).longValueExact();
+        } catch (ArithmeticException exception) {
+            throw CustomException.of(ErrorCode.INVALID_AMOUNT);
+        }
+    }
+
+    // long division with the same rounding rules as BigDecimal, divisor must be positive
+    private static long divide(long dividend, long divisor, RoundingMode roundingMode) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        int sign = dividend < 0 ? -1 : 1;
+        boolean increment = switch (roundingMode) {
+            case DOWN -> false;
+            case UP -> true;
+            case FLOOR -> sign < 0;
+            case CEILING -> sign > 0;
+            case HALF_UP, HALF_DOWN, HALF_EVEN -> {
+                // remainder < divisor <= 10^18, so doubling it can't overflow
+                int comparison = Long.compare(Math.abs(remainder) * 2, divisor);
+                yield comparison > 0 || (comparison == 0 && (roundingMode == RoundingMode.HALF_UP
+                        || (roundingMode == RoundingMode.HALF_EVEN && (quotient & 1) != 0)));
+            }
+            case UNNECESSARY -> throw new ArithmeticException("Rounding necessary");
+        };
+        return increment ? quotient + sign : quotient;
+    }
+}
@@ -0,0 +1,72 @@
+package com.account.springboot.models;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Immutable set of exchange rates, parsed once and indexed by the ordinals of the source and target currencies,
+ * so looking a rate up is an array read. A new snapshot (with a new version) replaces the whole set on refresh.
+ */
+@Getter
+public class RateSnapshot {
+
+    private static final CurrencyEnum[] CURRENCIES = CurrencyEnum.values();
+
+    // increases on every refresh, recorded on the transactions that used these rates
+    private final long version;
+    private final LocalDate date;
+    @Getter(AccessLevel.NONE)
+    private final Money.Factor[] rates;
+    // the rates as quoted by the provider, returned as they are by the rates endpoint
+    @Getter(AccessLevel.NONE)
+    private final String[] quotes;
+
+    private RateSnapshot(long version, LocalDate date, Money.Factor[] rates, String[] quotes) {
+        this.version = version;
+        this.date = date;
+        this.rates = rates;
+        this.quotes = quotes;
+    }
+
+    /**
+     * @param version - version of the snapshot
+     * @param date - date the rates are for
+     * @param ratesByPair - rates by source and target codes, e.g. "USDCAD" -> "1.36"
+     * @return RateSnapshot
+     */
+    public static RateSnapshot of(long version, LocalDate date, Map<String, String> ratesByPair) {
+        Money.Factor[] rates = new Money.Factor[CURRENCIES.length * CURRENCIES.length];
+        String[] quotes = new String[rates.length];
+        for (CurrencyEnum source : CURRENCIES) {
+            for (CurrencyEnum target : CURRENCIES) {
+                String quote = ratesByPair.get(source.name() + target.name());
+                if (quote != null) {
+                    rates[index(source, target)] = Money.Factor.parse(quote);
+                    quotes[index(source, target)] = quote;
+                }
+            }
+        }
+        return new RateSnapshot(version, date, rates, quotes);
+    }
+
+    /**
+     * @return the rate converting source into target, or null if there is none
+     */
+    public Money.Factor getRate(CurrencyEnum source, CurrencyEnum target) {
+        return rates[index(source, target)];
+    }
+
+    /**
+     * @return the rate converting source into target as quoted by the provider, or null if there is none
+     */
+    public String getQuote(CurrencyEnum source, CurrencyEnum target) {
+        return quotes[index(source, target)];
+    }
+
+    private static int index(CurrencyEnum source, CurrencyEnum target) {
+        return source.ordinal() * CURRENCIES.length + target.ordinal();
+    }
+}
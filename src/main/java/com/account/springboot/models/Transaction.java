@@ -1,5 +1,8 @@
 package com.account.springboot.models;
 
+import com.account.springboot.dto.TransactionDto;
+import com.account.springboot.util.AccountIds;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -13,15 +16,62 @@ import java.time.LocalDate;
 @EqualsAndHashCode
 @ToString
 public class Transaction {
-    private Account fromAccount;
-    private Account toAccount;
+    // accounts are referenced by id (see AccountIds), so a transaction doesn't carry (or serialize) their balances,
+    // and the api shows their emails (see toDTO)
+    @JsonIgnore
+    @Builder.Default
+    private int fromAccountId = AccountIds.NONE;
+    @JsonIgnore
+    @Builder.Default
+    private int toAccountId = AccountIds.NONE;
     private CurrencyEnum fromCurrency;
-    private BigDecimal fromAmount;
+    // amounts are in minor units of their currencies (see Money), exposed as decimals by the getters below
+    @JsonIgnore
+    private long fromAmountMinor;
     private CurrencyEnum toCurrency;
-    private BigDecimal toAmount;
+    @JsonIgnore
+    private long toAmountMinor;
     private CurrencyEnum serviceCurrency;
-    private BigDecimal serviceFeeAmount;
+    @JsonIgnore
+    private long serviceFeeAmountMinor;
     private TransactionTypeEnum type;
+    // version of the exchange rates used by a swap (null for other transactions)
+    private Long rateVersion;
     private LocalDate createdAt;
 
-}
\ No newline at end of file
+    /**
+     * @param accountIds - ids of the ledger the transaction belongs to, to show its accounts by email
+     * @return TransactionDto
+     */
+    public TransactionDto toDTO(AccountIds accountIds) {
+        return TransactionDto.builder()
+                .fromEmail(accountIds.email(fromAccountId))
+                .toEmail(accountIds.email(toAccountId))
+                .fromCurrency(fromCurrency)
+                .fromAmount(getFromAmount())
+                .toCurrency(toCurrency)
+                .toAmount(getToAmount())
+                .serviceCurrency(serviceCurrency)
+                .serviceFeeAmount(getServiceFeeAmount())
+                .type(type)
+                .rateVersion(rateVersion)
+                .createdAt(createdAt)
+                .build();
+    }
+
+    public BigDecimal getFromAmount() {
+        return toBigDecimal(fromAmountMinor, fromCurrency);
+    }
+
+    public BigDecimal getToAmount() {
+        return toBigDecimal(toAmountMinor, toCurrency);
+    }
+
+    public BigDecimal getServiceFeeAmount() {
+        return toBigDecimal(serviceFeeAmountMinor, serviceCurrency);
+    }
+
+    private static BigDecimal toBigDecimal(long amount, CurrencyEnum currency) {
+        return currency == null ? null : Money.toBigDecimal(amount, currency);
+    }
+}
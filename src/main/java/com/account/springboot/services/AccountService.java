@@ -1,8 +1,13 @@
 package com.account.springboot.services;
 
 import com.account.springboot.dto.*;
-import com.account.springboot.models.Transaction;
+import com.account.springboot.models.Account;
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.models.RateSnapshot;
 
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Iterator;
 import java.util.List;
 
 public interface AccountService {
@@ -19,7 +24,7 @@ public interface AccountService {
      * @param depositDto - dto with deposit information
      * @return Account with all "zeroed" balances
      */
-    Transaction deposit(DepositDto depositDto);
+    TransactionDto deposit(DepositDto depositDto);
 
     /**
      * Creates a new currency balance for a customer
@@ -40,20 +45,97 @@ public interface AccountService {
      * @param sendDTO - DTO with the send transaction information
      * @return boolean
      */
-    Transaction send(SendDto sendDTO);
+    TransactionDto send(SendDto sendDTO);
 
     /**
      * send money to a customer through their email
      * @param swapDTO - DTO with the swap transaction information
      * @return boolean
      */
-    Transaction swap(SwapDto swapDTO);
+    TransactionDto swap(SwapDto swapDTO);
+
+    /**
+     * swaps funds at rates the caller already has, e.g. looked up without blocking
+     * @param swapDTO - DTO with the swap transaction information
+     * @param rates - rates the swap is priced with
+     * @return TransactionDto
+     */
+    TransactionDto swap(SwapDto swapDTO, RateSnapshot rates);
+
+    /**
+     * same as {@link #deposit(DepositDto)}, returning the error instead of throwing it
+     * @param depositDto - dto with deposit information
+     * @return LedgerResult<TransactionDto>
+     */
+    LedgerResult<TransactionDto> tryDeposit(DepositDto depositDto);
+
+    /**
+     * same as {@link #send(SendDto)}, returning the error instead of throwing it
+     * @param sendDTO - DTO with the send transaction information
+     * @return LedgerResult<TransactionDto>
+     */
+    LedgerResult<TransactionDto> trySend(SendDto sendDTO);
+
+    /**
+     * same as {@link #swap(SwapDto)}, returning the error instead of throwing it
+     * @param swapDTO - DTO with the swap transaction information
+     * @return LedgerResult<TransactionDto>
+     */
+    LedgerResult<TransactionDto> trySwap(SwapDto swapDTO);
+
+    /**
+     * applies many deposits, sends and swaps in one call
+     * @param batchRequestDto - operations of the batch, and whether they must be applied all-or-nothing
+     * @return BatchResponseDto with one result per operation
+     */
+    BatchResponseDto batch(BatchRequestDto batchRequestDto);
+
+    /**
+     * credits the interest payouts of many balances and closes their interest periods for the month, through the
+     * same engine as deposits. Every balance is locked at once, and all of them are committed with their
+     * INTEREST_PAYOUT transactions as a single record
+     * @param accounts - account owning every balance
+     * @param currencies - currency of every balance
+     * @param amountsMinor - payout of every balance in minor units of its currency, can be 0
+     * @param count - number of balances, the first ones of the arrays
+     * @param month - month being paid
+     * @param today - day of the payouts
+     * @param commit - commits the new state of the balances with the payout transactions
+     * @return number of payouts credited, balances whose month was already paid are skipped (and not journaled)
+     */
+    int payInterest(Account[] accounts, CurrencyEnum[] currencies, long[] amountsMinor, int count, YearMonth month,
+                    LocalDate today, LedgerCommit commit);
 
     /**
      * gets all transactions given a customer email
      * @param email - email of the customer that would like to see its transactions
-     * @return List<Transaction>
+     * @return List<TransactionDto>
+     */
+    List<TransactionDto> getTransactions(String email);
+
+    /**
+     * gets a page of transactions given a customer email
+     * @param email - email of the customer that would like to see its transactions
+     * @param cursor - opaque cursor returned with the previous page (null for the first page)
+     * @param limit - max number of transactions in the page
+     * @return TransactionPageDto
+     */
+    TransactionPageDto getTransactions(String email, String cursor, int limit);
+
+    /**
+     * iterates over all transactions given a customer email, without building the whole list in memory
+     * @param email - email of the customer that would like to see its transactions
+     * @return Iterator<TransactionDto>
+     */
+    Iterator<TransactionDto> streamTransactions(String email);
+
+    /**
+     * gets all transactions given a customer email, with their amounts re-priced in a single currency at the
+     * exchange rates of the day each transaction was made
+     * @param email - email of the customer that would like to see its statement
+     * @param currency - currency of the statement
+     * @return List<TransactionDto>
      */
-    List<Transaction> getTransactions(String email);
+    List<TransactionDto> getStatement(String email, CurrencyEnum currency);
 
 }
\ No newline at end of file
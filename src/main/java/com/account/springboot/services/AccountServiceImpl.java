@@ -4,21 +4,70 @@ import com.account.springboot.dto.*;
 import com.account.springboot.exceptions.CustomException;
 import com.account.springboot.exceptions.ErrorCode;
 import com.account.springboot.models.Account;
+import com.account.springboot.models.BalanceChange;
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.models.Money;
+import com.account.springboot.models.RateSnapshot;
 import com.account.springboot.models.Transaction;
 import com.account.springboot.models.TransactionTypeEnum;
+import com.account.springboot.util.AccountIds;
+import com.account.springboot.util.LedgerMetrics;
+import com.account.springboot.util.TransactionCursor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
-import java.util.List;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.function.Function;
 
 @Service
 @Slf4j
+@ConditionalOnProperty(name = "ledger.engine", havingValue = "locking", matchIfMissing = true)
 public class AccountServiceImpl implements AccountService {
 
+    /**
+     * Transaction that was built but not applied yet, with the accounts it changes
+     * (the transaction itself only references them by id), or the reason it couldn't be built
+     */
+    private static final class PreparedTransaction {
+        // one per error code, an operation failing its validation doesn't allocate anything
+        private static final PreparedTransaction[] FAILED = Arrays.stream(ErrorCode.values())
+                .map(code -> new PreparedTransaction(null, null, null, code))
+                .toArray(PreparedTransaction[]::new);
+
+        private final Account from;
+        private final Account to;
+        private final Transaction transaction;
+        private final ErrorCode error;
+
+        private PreparedTransaction(Account from, Account to, Transaction transaction, ErrorCode error) {
+            this.from = from;
+            this.to = to;
+            this.transaction = transaction;
+            this.error = error;
+        }
+
+        private static PreparedTransaction of(Account from, Account to, Transaction transaction) {
+            return new PreparedTransaction(from, to, transaction, null);
+        }
+
+        private static PreparedTransaction failed(ErrorCode error) {
+            return FAILED[error.ordinal()];
+        }
+    }
+
+    // Max number of transactions returned in a single page
+    private static final int MAX_PAGE_SIZE = 1000;
+    // Max number of operations in a batch, atomic batches lock all their balances at once so they are smaller
+    private static final int MAX_BATCH_SIZE = 10_000;
+    private static final int MAX_ATOMIC_BATCH_SIZE = 1_000;
+
     // this service would eventually be replaced by an actual exchange rates api/third party
     @Autowired
     private RatesService ratesService;
@@ -26,14 +75,22 @@ public class AccountServiceImpl implements AccountService {
     @Autowired
     private InMemoryService inMemoryService;
 
+    @Autowired
+    private AccountIds accountIds;
+
     // Service fee to be charged when the user is exchanging funds through its balances
-    @Value("${service.fee}")
-    private String SERVICE_FEE;
+    private Money.Factor SERVICE_FEE;
 
     // Yearly interested rates to be paid to the customer on all balances (for simplicity's sake we will consider always the same for all currencies)
     @Value("${yearly.interest}")
     private String YEARLY_INTEREST;
 
+    @Value("${service.fee}")
+    void setServiceFee(String serviceFee) {
+        // parsed once, so swaps only do long arithmetic
+        SERVICE_FEE = Money.Factor.parse(serviceFee);
+    }
+
     @Override
     public AccountResponseDto create(AccountRequestDto accountDto) {
         Account newAccount = new Account(accountDto);
@@ -43,36 +100,18 @@ public class AccountServiceImpl implements AccountService {
     }
 
     @Override
-    public Transaction deposit(DepositDto depositDto) {
-        Account account = inMemoryService.getAccount(depositDto.getEmail());
-        BigDecimal bgAmount = new BigDecimal(depositDto.getAmount());
-        account.updateBalance(depositDto.getCurrency(), bgAmount);
-        inMemoryService.upsertAccount(account.getEmail(), account);
-        // creating a transaction and persisting it to the "in-memory" storage
-        Transaction newTransaction = Transaction.builder()
-                .fromAccount(account)
-                .toAccount(account)
-                .fromCurrency(depositDto.getCurrency())
-                .toCurrency(depositDto.getCurrency())
-                .serviceCurrency(depositDto.getCurrency())
-                .fromAmount(bgAmount)
-                .toAmount(bgAmount)
-                .serviceFeeAmount(new BigDecimal("0")) // let's consider the fee is zero for transfers between users
-                .type(TransactionTypeEnum.DEPOSIT)
-                .createdAt(LocalDate.now())
-                .build();
-        inMemoryService.addTransaction(newTransaction);
-        return newTransaction;
+    public TransactionDto deposit(DepositDto depositDto) {
+        return tryDeposit(depositDto).orElseThrow();
     }
 
     @Override
     public AccountResponseDto createBalance(CreateBalanceDto createBalanceDTO) {
         Account account = inMemoryService.getAccount(createBalanceDTO.getEmail());
-        if (account.getBalances().containsKey(createBalanceDTO.getCurrency())) {
-            throw new CustomException(ErrorCode.BALANCE_ALREADY_EXISTS);
+        LedgerCommit commit = new LedgerCommit(inMemoryService);
+        if (!account.addBalance(createBalanceDTO.getCurrency(), new BigDecimal(YEARLY_INTEREST), commit.journal(List.of()))) {
+            throw CustomException.of(ErrorCode.BALANCE_ALREADY_EXISTS);
         }
-        account.addBalance(createBalanceDTO.getCurrency(), new BigDecimal(YEARLY_INTEREST));
-        inMemoryService.upsertAccount(account.getEmail(), account);
+        commit.awaitDurable();
         return account.toDTO();
     }
 
@@ -84,82 +123,482 @@ public class AccountServiceImpl implements AccountService {
     }
 
     @Override
-    public Transaction send(SendDto sendDTO) {
-        Account sendingAccount = inMemoryService.getAccount(sendDTO.getFromEmail());
-        Account receivingAccount = inMemoryService.getAccount(sendDTO.getToEmail());
-        BigDecimal bgAmount = new BigDecimal(sendDTO.getAmount());
-        // decrease balance from the customer that's sending the funds
-        sendingAccount.updateBalance(sendDTO.getCurrency(), bgAmount.multiply(new BigDecimal("-1")));
-        // increase balance from the customer that's receiving the funds
-        receivingAccount.updateBalance(sendDTO.getCurrency(), bgAmount);
-        // persisting changes to "in-memory" storage
-        inMemoryService.upsertAccount(sendDTO.getFromEmail(), sendingAccount);
-        inMemoryService.upsertAccount(sendDTO.getToEmail(), receivingAccount);
-        // creating a transaction and persisting it to the "in-memory" storage
-        Transaction newTransaction = Transaction.builder()
-                .fromAccount(sendingAccount)
-                .toAccount(receivingAccount)
+    public TransactionDto send(SendDto sendDTO) {
+        return trySend(sendDTO).orElseThrow();
+    }
+
+    @Override
+    public TransactionDto swap(SwapDto swapDTO) {
+        return trySwap(swapDTO).orElseThrow();
+    }
+
+    @Override
+    public TransactionDto swap(SwapDto swapDTO, RateSnapshot rates) {
+        return applyAndCommit(prepareSwap(swapDTO, inMemoryService::findAccount, rates)).orElseThrow();
+    }
+
+    // expected failures (unknown account, not enough funds...) are returned as error codes all the way up from the
+    // validation and the balances, nothing is thrown on this path
+    @Override
+    public LedgerResult<TransactionDto> tryDeposit(DepositDto depositDto) {
+        // persisting the balance and the transaction to the "in-memory" storage together, as the balance changes
+        return applyAndCommit(prepareDeposit(depositDto, inMemoryService::findAccount));
+    }
+
+    @Override
+    public LedgerResult<TransactionDto> trySend(SendDto sendDTO) {
+        // decrease balance from the customer that's sending the funds and increase the one from the customer
+        // that's receiving them, both at once so the funds are never missing from (or doubled on) both sides,
+        // persisting both balances and the transaction to "in-memory" storage together
+        return applyAndCommit(prepareSend(sendDTO, inMemoryService::findAccount));
+    }
+
+    @Override
+    public LedgerResult<TransactionDto> trySwap(SwapDto swapDTO) {
+        // decrease balance from the customer sourceCurrency and increase the targetCurrency one, both at once,
+        // persisting changes to "in-memory" storage together
+        return applyAndCommit(prepareSwap(swapDTO, inMemoryService::findAccount, ratesService.currentRates()));
+    }
+
+    // applies a single prepared transaction and waits for it to be durable
+    private LedgerResult<TransactionDto> applyAndCommit(PreparedTransaction prepared) {
+        if (prepared.error != null) {
+            return LedgerResult.failure(prepared.error);
+        }
+        LedgerCommit commit = new LedgerCommit(inMemoryService);
+        ErrorCode error = apply(prepared, commit.journal(List.of(prepared.transaction)));
+        if (error != null) {
+            // nothing changed, so nothing was journaled either
+            return LedgerResult.failure(error);
+        }
+        commit.awaitDurable();
+        LedgerMetrics.recordTransaction(prepared.transaction.getType());
+        return LedgerResult.success(prepared.transaction.toDTO(accountIds));
+    }
+
+    @Override
+    public BatchResponseDto batch(BatchRequestDto batchRequestDto) {
+        List<BatchOperationDto> operations = batchRequestDto.getOperations() == null
+                ? Collections.emptyList() : batchRequestDto.getOperations();
+        boolean atomic = batchRequestDto.isAtomic();
+        if (operations.size() > (atomic ? MAX_ATOMIC_BATCH_SIZE : MAX_BATCH_SIZE)) {
+            throw CustomException.of(ErrorCode.BATCH_TOO_LARGE);
+        }
+        if (operations.isEmpty()) {
+            // nothing to lock nor to journal, an engine never sees an empty batch
+            return BatchResponseDto.builder().atomic(atomic).results(Collections.emptyList()).build();
+        }
+        // accounts are looked up once per batch, not once per operation, and every swap uses the same rates
+        Map<String, Account> accounts = new HashMap<>();
+        Function<String, Account> accountLookup = email -> accounts.computeIfAbsent(email, inMemoryService::findAccount);
+        RateSnapshot rates = ratesService.currentRates();
+
+        PreparedTransaction[] transactions = new PreparedTransaction[operations.size()];
+        CustomException[] errors = new CustomException[operations.size()];
+        for (int i = 0; i < operations.size(); i++) {
+            PreparedTransaction prepared = prepare(operations.get(i), accountLookup, rates);
+            if (prepared.error == null) {
+                transactions[i] = prepared;
+            } else {
+                errors[i] = CustomException.of(prepared.error);
+            }
+        }
+        // every operation is committed as it is applied, and the batch waits once for all of them
+        LedgerCommit commit = new LedgerCommit(inMemoryService);
+        if (atomic) {
+            applyAtomically(transactions, errors, commit);
+        } else {
+            for (int i = 0; i < transactions.length; i++) {
+                if (errors[i] == null) {
+                    ErrorCode error = apply(transactions[i], commit.journal(List.of(transactions[i].transaction)));
+                    if (error != null) {
+                        errors[i] = CustomException.of(error);
+                    }
+                }
+            }
+        }
+        commit.awaitDurable();
+
+        List<Transaction> applied = new ArrayList<>();
+        List<BatchResultDto> results = new ArrayList<>(operations.size());
+        for (int i = 0; i < transactions.length; i++) {
+            if (errors[i] == null) {
+                Transaction transaction = transactions[i].transaction;
+                applied.add(transaction);
+                LedgerMetrics.recordTransaction(transaction.getType());
+                results.add(BatchResultDto.builder().index(i).success(true).transaction(transaction.toDTO(accountIds)).build());
+            } else {
+                LedgerMetrics.recordError(errors[i].getCode());
+                results.add(BatchResultDto.builder()
+                        .index(i)
+                        .success(false)
+                        .errorCode(errors[i].getCode().getCode())
+                        .error(errors[i].getDetails())
+                        .build());
+            }
+        }
+        return BatchResponseDto.builder()
+                .atomic(atomic)
+                .succeeded(applied.size())
+                .failed(operations.size() - applied.size())
+                .results(results)
+                .build();
+    }
+
+    @Override
+    public int payInterest(Account[] accounts, CurrencyEnum[] currencies, long[] amountsMinor, int count, YearMonth month,
+                           LocalDate today, LedgerCommit commit) {
+        if (count == 0) {
+            return 0;
+        }
+        // by identity: the equality of an Account covers its balances, which change while it is a key
+        Map<Account, Set<CurrencyEnum>> balances = new IdentityHashMap<>();
+        for (int i = 0; i < count; i++) {
+            balances.computeIfAbsent(accounts[i], key -> EnumSet.noneOf(CurrencyEnum.class)).add(currencies[i]);
+        }
+        int[] paid = new int[1];
+        runAtomically(balances, () -> {
+            // state of every balance paid before its payout, to undo them
+            List<Account> paidAccounts = new ArrayList<>(count);
+            List<BalanceChange> previous = new ArrayList<>(count);
+            List<BalanceChange> changes = new ArrayList<>(count);
+            List<Transaction> transactions = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                BalanceChange before = accounts[i].balanceChange(currencies[i]);
+                // every balance of the call is locked, so nobody sees the payouts before they are all committed
+                if (accounts[i].payInterest(currencies[i], month, today, amountsMinor[i], changes::addAll)) {
+                    paidAccounts.add(accounts[i]);
+                    previous.add(before);
+                    if (amountsMinor[i] > 0) {
+                        transactions.add(interestTransaction(accounts[i], currencies[i], amountsMinor[i], today));
+                    }
+                }
+            }
+            if (changes.isEmpty()) {
+                return;
+            }
+            try {
+                commit.journal(transactions).record(changes);
+            } catch (RuntimeException exception) {
+                // nothing was committed, so nothing may stay paid either
+                for (int i = previous.size() - 1; i >= 0; i--) {
+                    paidAccounts.get(i).restore(previous.get(i));
+                }
+                throw exception;
+            }
+            paid[0] = transactions.size();
+        });
+        return paid[0];
+    }
+
+    @Override
+    public List<TransactionDto> getTransactions(String email) {
+        return toDTOs(inMemoryService.getTransactions(email));
+    }
+
+    @Override
+    public TransactionPageDto getTransactions(String email, String cursor, int limit) {
+        long fromPosition = TransactionCursor.decode(cursor);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // asking for one extra transaction tells us whether there is a next page
+        List<Transaction> transactions = inMemoryService.getTransactions(email, fromPosition, pageSize + 1);
+        String nextCursor = null;
+        if (transactions.size() > pageSize) {
+            transactions = transactions.subList(0, pageSize);
+            nextCursor = TransactionCursor.encode(fromPosition + pageSize);
+        }
+        return TransactionPageDto.builder()
+                .transactions(toDTOs(transactions))
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    @Override
+    public Iterator<TransactionDto> streamTransactions(String email) {
+        Iterator<Transaction> transactions = inMemoryService.iterateTransactions(email);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return transactions.hasNext();
+            }
+
+            @Override
+            public TransactionDto next() {
+                return transactions.next().toDTO(accountIds);
+            }
+        };
+    }
+
+    @Override
+    public List<TransactionDto> getStatement(String email, CurrencyEnum currency) {
+        List<Transaction> transactions = inMemoryService.getTransactions(email);
+        List<TransactionDto> dtos = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            TransactionDto dto = transaction.toDTO(accountIds);
+            dto.setStatementCurrency(currency);
+            dto.setStatementFromAmount(reprice(transaction.getFromAmountMinor(), transaction.getFromCurrency(), currency, transaction.getCreatedAt()));
+            dto.setStatementToAmount(reprice(transaction.getToAmountMinor(), transaction.getToCurrency(), currency, transaction.getCreatedAt()));
+            dtos.add(dto);
+        }
+        return dtos;
+    }
+
+    // amount converted at the latest historical rate on or before the date
+    private BigDecimal reprice(long amount, CurrencyEnum from, CurrencyEnum to, LocalDate date) {
+        if (from == null) {
+            return null;
+        }
+        if (from == to) {
+            return Money.toBigDecimal(amount, to);
+        }
+        Money.Factor rate = ratesService.getFactorAsOf(from, to, date);
+        if (rate == null) {
+            throw CustomException.of(ErrorCode.RATE_NOT_FOUND);
+        }
+        return Money.toBigDecimal(Money.convert(amount, from, to, rate, RoundingMode.HALF_EVEN), to);
+    }
+
+    private List<TransactionDto> toDTOs(List<Transaction> transactions) {
+        List<TransactionDto> dtos = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            dtos.add(transaction.toDTO(accountIds));
+        }
+        return dtos;
+    }
+
+    private PreparedTransaction prepare(BatchOperationDto operation, Function<String, Account> accounts, RateSnapshot rates) {
+        // e.g. a null element of the JSON array, it fails on its own like an operation without a payload
+        if (operation == null) {
+            return PreparedTransaction.failed(ErrorCode.INVALID_BATCH_OPERATION);
+        }
+        int set = (operation.getDeposit() != null ? 1 : 0) + (operation.getSend() != null ? 1 : 0) + (operation.getSwap() != null ? 1 : 0);
+        if (set != 1) {
+            return PreparedTransaction.failed(ErrorCode.INVALID_BATCH_OPERATION);
+        }
+        if (operation.getDeposit() != null) {
+            return prepareDeposit(operation.getDeposit(), accounts);
+        }
+        if (operation.getSend() != null) {
+            return prepareSend(operation.getSend(), accounts);
+        }
+        return prepareSwap(operation.getSwap(), accounts, rates);
+    }
+
+    private static Transaction interestTransaction(Account account, CurrencyEnum currency, long payout, LocalDate today) {
+        return Transaction.builder()
+                .fromAccountId(account.getId())
+                .toAccountId(account.getId())
+                .fromCurrency(currency)
+                .toCurrency(currency)
+                .serviceCurrency(currency)
+                .fromAmountMinor(payout)
+                .toAmountMinor(payout)
+                .serviceFeeAmountMinor(0)
+                .type(TransactionTypeEnum.INTEREST_PAYOUT)
+                .createdAt(today)
+                .build();
+    }
+
+    // builds the transaction of a deposit, without changing any balance yet (the lookup returns null for an unknown
+    // account)
+    private PreparedTransaction prepareDeposit(DepositDto depositDto, Function<String, Account> accounts) {
+        Account account = accounts.apply(depositDto.getEmail());
+        if (account == null) {
+            return PreparedTransaction.failed(ErrorCode.NO_SUCH_ACCOUNT);
+        }
+        long amount = Money.tryParse(depositDto.getAmount(), depositDto.getCurrency());
+        if (amount == Money.INVALID) {
+            return PreparedTransaction.failed(ErrorCode.INVALID_AMOUNT);
+        }
+        return PreparedTransaction.of(account, account, Transaction.builder()
+                .fromAccountId(account.getId())
+                .toAccountId(account.getId())
+                .fromCurrency(depositDto.getCurrency())
+                .toCurrency(depositDto.getCurrency())
+                .serviceCurrency(depositDto.getCurrency())
+                .fromAmountMinor(amount)
+                .toAmountMinor(amount)
+                .serviceFeeAmountMinor(0) // let's consider the fee is zero for transfers between users
+                .type(TransactionTypeEnum.DEPOSIT)
+                .createdAt(LocalDate.now())
+                .build());
+    }
+
+    // builds the transaction of a send, without changing any balance yet
+    private PreparedTransaction prepareSend(SendDto sendDTO, Function<String, Account> accounts) {
+        Account sendingAccount = accounts.apply(sendDTO.getFromEmail());
+        Account receivingAccount = accounts.apply(sendDTO.getToEmail());
+        if (sendingAccount == null || receivingAccount == null) {
+            return PreparedTransaction.failed(ErrorCode.NO_SUCH_ACCOUNT);
+        }
+        long amount = Money.tryParse(sendDTO.getAmount(), sendDTO.getCurrency());
+        if (amount == Money.INVALID) {
+            return PreparedTransaction.failed(ErrorCode.INVALID_AMOUNT);
+        }
+        return PreparedTransaction.of(sendingAccount, receivingAccount, Transaction.builder()
+                .fromAccountId(sendingAccount.getId())
+                .toAccountId(receivingAccount.getId())
                 .fromCurrency(sendDTO.getCurrency())
                 .toCurrency(sendDTO.getCurrency())
                 .serviceCurrency(sendDTO.getCurrency())
-                .fromAmount(bgAmount)
-                .toAmount(bgAmount)
-                .serviceFeeAmount(new BigDecimal("0")) // let's consider the fee is zero for transfers between users
+                .fromAmountMinor(amount)
+                .toAmountMinor(amount)
+                .serviceFeeAmountMinor(0) // let's consider the fee is zero for transfers between users
                 .type(TransactionTypeEnum.TRANSFER)
                 .createdAt(LocalDate.now())
-                .build();
-        inMemoryService.addTransaction(newTransaction);
-
-        return newTransaction;
-    }
-
-    @Override
-    public Transaction swap(SwapDto swapDTO) {
-        Account account = inMemoryService.getAccount(swapDTO.getEmail());
-        BigDecimal bgAmount = new BigDecimal(swapDTO.getAmount());
-        // let's consider the service fee for "swaps" as a % defined on the constant SERVICE_FEE
-        BigDecimal serviceFeePercentage = new BigDecimal(SERVICE_FEE);
-        // thus the receiving percentage would be 100% minus the service fee %.
-        BigDecimal receivingPercentage = new BigDecimal(1).subtract(serviceFeePercentage);
-        // get the exchange rate given the source and target currencies
-        ExchangeRateResponseDto exchangeRateDto = ratesService.getConversionRate(
-                ExchangeRateRequestDto.builder()
-                        .targetCurrency(swapDTO.getTargetCurrency())
-                        .sourceCurrency(swapDTO.getSourceCurrency()).build()
-        );
-        BigDecimal exchangeRate = new BigDecimal(exchangeRateDto.getRate());
-        // calculate the fee based on the source currency + sending amount
-        BigDecimal serviceFeeAmount = bgAmount.multiply(serviceFeePercentage);
-        // then the actual amount to be received
-        BigDecimal receivingAmount = bgAmount
-                .multiply(receivingPercentage)
-                .multiply(exchangeRate);
-        // decrease balance from the customer sourceCurrency that's sending the funds
-        account.updateBalance(swapDTO.getSourceCurrency(), bgAmount.multiply(new BigDecimal("-1")));
-        // increase balance from the customer that's receiving the funds
-        account.updateBalance(swapDTO.getTargetCurrency(), receivingAmount);
-        // persisting changes to "in-memory" storage
-        inMemoryService.upsertAccount(swapDTO.getEmail(), account);
-        // creating a transaction and persisting it to the "in-memory" storage
-        Transaction newTransaction = Transaction.builder()
-                .fromAccount(account)
-                .toAccount(account)
+                .build());
+    }
+
+    // builds the transaction of a swap (fee and converted amount included), without changing any balance yet
+    private PreparedTransaction prepareSwap(SwapDto swapDTO, Function<String, Account> accounts, RateSnapshot rates) {
+        Account account = accounts.apply(swapDTO.getEmail());
+        if (account == null) {
+            return PreparedTransaction.failed(ErrorCode.NO_SUCH_ACCOUNT);
+        }
+        long amount = Money.tryParse(swapDTO.getAmount(), swapDTO.getSourceCurrency());
+        if (amount == Money.INVALID) {
+            return PreparedTransaction.failed(ErrorCode.INVALID_AMOUNT);
+        }
+        // get the exchange rate given the source and target currencies, already parsed in the rates snapshot
+        Money.Factor exchangeRate = rates.getRate(swapDTO.getSourceCurrency(), swapDTO.getTargetCurrency());
+        if (exchangeRate == null) {
+            return PreparedTransaction.failed(ErrorCode.NO_SUCH_CURRENCY);
+        }
+        // let's consider the service fee for "swaps" as a % defined on the constant SERVICE_FEE,
+        // charged in the source currency and rounded half-up to its minor unit
+        long serviceFeeAmount = Money.multiply(amount, SERVICE_FEE, RoundingMode.HALF_UP);
+        // then the actual amount to be received, converted to the target currency and rounded down
+        // so a swap never credits more than what was paid for
+        long receivingAmount = Money.convert(amount - serviceFeeAmount, swapDTO.getSourceCurrency(),
+                swapDTO.getTargetCurrency(), exchangeRate, RoundingMode.DOWN);
+        return PreparedTransaction.of(account, account, Transaction.builder()
+                .fromAccountId(account.getId())
+                .toAccountId(account.getId())
                 .fromCurrency(swapDTO.getSourceCurrency())
                 .toCurrency(swapDTO.getTargetCurrency())
                 .serviceCurrency(swapDTO.getSourceCurrency())
-                .fromAmount(bgAmount)
-                .toAmount(receivingAmount)
-                .serviceFeeAmount(serviceFeeAmount)
+                .fromAmountMinor(amount)
+                .toAmountMinor(receivingAmount)
+                .serviceFeeAmountMinor(serviceFeeAmount)
                 .type(TransactionTypeEnum.SWAP)
+                .rateVersion(rates.getVersion())
                 .createdAt(LocalDate.now())
-                .build();
-        inMemoryService.addTransaction(newTransaction);
-        return newTransaction;
+                .build());
     }
 
-    @Override
-    public List<Transaction> getTransactions(String email) {
-        return inMemoryService.getTransactions(email);
+    // changes the balances of a prepared transaction, the journal commits them, returns null or the reason nothing
+    // changed
+    private ErrorCode apply(PreparedTransaction prepared, Account.Journal journal) {
+        Transaction transaction = prepared.transaction;
+        if (transaction.getType() == TransactionTypeEnum.DEPOSIT) {
+            return applyDeposit(prepared.to, transaction.getToCurrency(), transaction.getToAmountMinor(), journal);
+        }
+        return applyTransfer(prepared.from, transaction.getFromCurrency(), transaction.getFromAmountMinor(),
+                prepared.to, transaction.getToCurrency(), transaction.getToAmountMinor(), journal);
+    }
+
+    /**
+     * Applies every transaction of an atomic batch, or none of them if any fails. The batch runs while all the
+     * balances involved are locked at once (see {@link #runAtomically}), so it is undone before anyone else
+     * can see it if an operation fails. The whole batch is committed in one go, before the locks are released.
+     */
+    private void applyAtomically(PreparedTransaction[] transactions, CustomException[] errors, LedgerCommit commit) {
+        if (Arrays.stream(errors).anyMatch(Objects::nonNull)) {
+            abort(errors);
+            return;
+        }
+        // by identity: the equality of an Account covers its balances, which change while it is a key
+        Map<Account, Set<CurrencyEnum>> balances = new IdentityHashMap<>();
+        for (PreparedTransaction prepared : transactions) {
+            balances.computeIfAbsent(prepared.from, key -> EnumSet.noneOf(CurrencyEnum.class)).add(prepared.transaction.getFromCurrency());
+            balances.computeIfAbsent(prepared.to, key -> EnumSet.noneOf(CurrencyEnum.class)).add(prepared.transaction.getToCurrency());
+        }
+        try {
+            runAtomically(balances, () -> {
+                for (int i = 0; i < transactions.length; i++) {
+                    ErrorCode error = applyLocked(transactions[i], false);
+                    if (error != null) {
+                        errors[i] = CustomException.of(error);
+                        // undoing what was applied, in reverse order, nobody else could touch these balances meanwhile
+                        undo(transactions, i - 1);
+                        return;
+                    }
+                }
+                List<BalanceChange> changes = new ArrayList<>();
+                balances.forEach((account, currencies) -> currencies.forEach(currency -> changes.add(account.balanceChange(currency))));
+                try {
+                    commit.journal(Arrays.stream(transactions).map(prepared -> prepared.transaction).toList()).record(changes);
+                } catch (RuntimeException exception) {
+                    // nothing was committed, so nothing may stay applied either
+                    undo(transactions, transactions.length - 1);
+                    throw exception;
+                }
+            });
+        } catch (CustomException exception) {
+            // a balance of the batch doesn't exist, nothing was applied
+            Arrays.fill(errors, exception);
+        }
+        abort(errors);
+    }
+
+    // undoes the transactions of an atomic batch up to the given one, in reverse order
+    private static void undo(PreparedTransaction[] transactions, int last) {
+        for (int i = last; i >= 0; i--) {
+            // an undo puts back what was just applied, it can't fail
+            CustomException.throwIfFailed(applyLocked(transactions[i], true));
+        }
+    }
+
+    private static ErrorCode applyLocked(PreparedTransaction prepared, boolean undo) {
+        Transaction transaction = prepared.transaction;
+        if (transaction.getType() == TransactionTypeEnum.DEPOSIT) {
+            long amount = transaction.getToAmountMinor();
+            return prepared.to.tryUpdateBalance(transaction.getToCurrency(), undo ? -amount : amount, Account.Journal.NONE);
+        }
+        if (undo) {
+            return Account.tryTransfer(prepared.to, transaction.getToCurrency(), transaction.getToAmountMinor(),
+                    prepared.from, transaction.getFromCurrency(), transaction.getFromAmountMinor(), Account.Journal.NONE);
+        }
+        return Account.tryTransfer(prepared.from, transaction.getFromCurrency(), transaction.getFromAmountMinor(),
+                prepared.to, transaction.getToCurrency(), transaction.getToAmountMinor(), Account.Journal.NONE);
+    }
+
+    // once an operation of an atomic batch failed, every other one is reported as not applied
+    private static void abort(CustomException[] errors) {
+        if (Arrays.stream(errors).allMatch(Objects::isNull)) {
+            return;
+        }
+        CustomException aborted = CustomException.of(ErrorCode.BATCH_ABORTED);
+        for (int i = 0; i < errors.length; i++) {
+            if (errors[i] == null) {
+                errors[i] = aborted;
+            }
+        }
+    }
+
+    /**
+     * Runs an action changing several balances with nobody else changing them meanwhile,
+     * the calling thread holds the locks of all the balances (see Account.runLocked)
+     */
+    protected void runAtomically(Map<Account, Set<CurrencyEnum>> balances, Runnable action) {
+        Account.runLocked(balances, action);
+    }
+
+    /**
+     * Adds a deposit to a balance, the calling thread changes (and journals) the balance under its lock
+     * @return null, or the reason the balance didn't change
+     */
+    protected ErrorCode applyDeposit(Account account, CurrencyEnum currency, long amount, Account.Journal journal) {
+        return account.tryUpdateBalance(currency, amount, journal);
+    }
+
+    /**
+     * Moves funds between two balances atomically, the calling thread locks both balances (see Account.transfer)
+     * @return null, or the reason none of the balances changed
+     */
+    protected ErrorCode applyTransfer(Account from, CurrencyEnum fromCurrency, long debit,
+                                      Account to, CurrencyEnum toCurrency, long credit, Account.Journal journal) {
+        return Account.tryTransfer(from, fromCurrency, debit, to, toCurrency, credit, journal);
     }
 
 }
\ No newline at end of file
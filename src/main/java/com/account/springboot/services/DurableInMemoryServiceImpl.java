@@ -0,0 +1,282 @@
+package com.account.springboot.services;
+
+import com.account.springboot.exceptions.CustomException;
+import com.account.springboot.exceptions.ErrorCode;
+import com.account.springboot.models.Account;
+import com.account.springboot.models.BalanceChange;
+import com.account.springboot.models.Transaction;
+import com.account.springboot.storage.LedgerRecordCodec;
+import com.account.springboot.storage.LedgerRecordCodec.RecordType;
+import com.account.springboot.storage.LedgerSnapshots;
+import com.account.springboot.storage.LedgerSnapshots.Snapshot;
+import com.account.springboot.storage.WriteAheadLog;
+import com.account.springboot.util.AccountIds;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory "database" that also appends every mutation to a {@link WriteAheadLog} on local disk,
+ * so the ledger survives a restart. Enabled with {@code ledger.storage=wal}.
+ * <p>
+ * A mutation only returns once its record was forced to disk, but concurrent mutations share the same
+ * fsync (group commit), so durability doesn't cost one fsync per request. The balances and transactions of an
+ * operation are {@link #commit committed} as one record, so they are recovered all together or not at all.
+ * The record is appended while the operation still holds the locks of its balances, so the WAL has the changes
+ * of a balance in the order they were made, and no operation can build on a change that isn't in the WAL yet.
+ * Likewise an account is only published once its record was appended, so none of its changes can come before it.
+ * <p>
+ * Snapshots are taken in the background by folding the WAL records written since the previous snapshot
+ * into it, so they never touch the live accounts or block writers. The previous snapshot stays mapped, and its
+ * transactions are copied to the new one as they are, so a snapshot only decodes the accounts and the WAL tail. On startup the latest snapshot is loaded,
+ * only the WAL tail after it is replayed, and the account records are applied in parallel, partitioned by account.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "ledger.storage", havingValue = "wal")
+public class DurableInMemoryServiceImpl extends InMemoryServiceImpl {
+
+    // number of snapshots kept on disk, the WAL is kept from the oldest one
+    private static final int SNAPSHOTS_KEPT = 2;
+
+    private final WriteAheadLog wal;
+    private final LedgerRecordCodec codec;
+    private final LedgerSnapshots snapshots;
+    // serializes the creations and replacements of accounts, whose records are appended before they are published
+    private final ReentrantLock accountsLock = new ReentrantLock();
+    // latest snapshot taken or loaded, the next one is built from it
+    private Optional<Snapshot> lastSnapshot;
+    private long lastSnapshotLsn;
+
+    // how long the last startup took to rebuild the ledger
+    @Getter
+    private Duration recoveryTime;
+
+    @Autowired
+    public DurableInMemoryServiceImpl(AccountIds accountIds,
+                                      @Value("${ledger.wal.directory:data/wal}") String walDirectory,
+                                      @Value("${ledger.wal.segment-size:67108864}") int segmentSize,
+                                      @Value("${ledger.snapshot.directory:data/snapshots}") String snapshotDirectory) {
+        this(accountIds, new WriteAheadLog(Path.of(walDirectory), segmentSize, LedgerRecordCodec.FORMAT_VERSION),
+                new LedgerSnapshots(Path.of(snapshotDirectory)));
+    }
+
+    DurableInMemoryServiceImpl(AccountIds accountIds, WriteAheadLog wal, LedgerSnapshots snapshots) {
+        super(accountIds);
+        this.codec = new LedgerRecordCodec(accountIds);
+        this.wal = wal;
+        this.snapshots = snapshots;
+        recover();
+    }
+
+    @Override
+    public void addAccount(String email, Account account) {
+        long lsn;
+        accountsLock.lock();
+        try {
+            // checked before appending, so an email is never journaled as added twice
+            if (findAccount(email) != null) {
+                throw CustomException.of(ErrorCode.ACCOUNT_ALREADY_EXISTS);
+            }
+            lsn = append(RecordType.ACCOUNT_ADDED, account);
+        } finally {
+            accountsLock.unlock();
+        }
+        wal.awaitDurable(lsn);
+    }
+
+    @Override
+    public void upsertAccount(String email, Account account) {
+        long lsn;
+        accountsLock.lock();
+        try {
+            lsn = append(RecordType.ACCOUNT_UPSERTED, account);
+        } finally {
+            accountsLock.unlock();
+        }
+        wal.awaitDurable(lsn);
+    }
+
+    @Override
+    public void addTransaction(Transaction transaction) {
+        super.addTransaction(transaction);
+        wal.awaitDurable(wal.append(() -> codec.encodeTransaction(transaction)));
+    }
+
+    @Override
+    public void addTransactions(List<Transaction> transactions) {
+        super.addTransactions(transactions);
+        long lsn = 0;
+        for (Transaction transaction : transactions) {
+            lsn = wal.append(() -> codec.encodeTransaction(transaction));
+        }
+        // waiting once for the whole batch, it usually takes a single fsync
+        wal.awaitDurable(lsn);
+    }
+
+    @Override
+    public long commit(List<BalanceChange> balances, List<Transaction> transactions) {
+        // the balances are copies nobody changes, so they are encoded before taking the WAL lock
+        byte[] record = codec.encodeCommit(balances, transactions);
+        // one record for the whole operation, e.g. a send is never recovered debited but not credited
+        long lsn = wal.append(() -> record);
+        super.addTransactions(transactions);
+        return lsn;
+    }
+
+    @Override
+    public void awaitDurable(long position) {
+        wal.awaitDurable(position);
+    }
+
+    /**
+     * Takes a new snapshot with every durable WAL record and deletes the WAL segments no longer needed
+     */
+    @Scheduled(fixedDelayString = "${ledger.snapshot.interval-ms:300000}", initialDelayString = "${ledger.snapshot.interval-ms:300000}")
+    public synchronized void takeSnapshot() {
+        long lsn = wal.getDurableLsn();
+        if (lsn == lastSnapshotLsn) {
+            return;
+        }
+        long start = System.nanoTime();
+        // latest state per account (keeping the first seen order) and the transactions written since the previous
+        // snapshot, as in the WAL
+        Map<String, Account> accounts = new LinkedHashMap<>();
+        List<ByteBuffer> transactions = new ArrayList<>();
+        Optional<Snapshot> previous = lastSnapshot;
+        long fromLsn = previous.map(Snapshot::getLsn).orElse(0L);
+        previous.ifPresent(snapshot -> snapshot.getAccounts().forEach(record -> fold(accounts, record)));
+        wal.replay(fromLsn, lsn, (recordLsn, walRecord) -> LedgerRecordCodec.unpack(walRecord, record -> {
+            if (LedgerRecordCodec.readType(record.duplicate()) == RecordType.TRANSACTION_ADDED) {
+                transactions.add(record);
+            } else {
+                fold(accounts, record);
+            }
+        }));
+        List<ByteBuffer> accountRecords = accounts.values().stream()
+                .map(account -> ByteBuffer.wrap(LedgerRecordCodec.encodeAccount(RecordType.ACCOUNT_UPSERTED, account)))
+                .toList();
+        Snapshot snapshot = snapshots.write(lsn, accountRecords, previous, transactions);
+        lastSnapshot = Optional.of(snapshot);
+        lastSnapshotLsn = lsn;
+        wal.truncateBefore(snapshots.deleteOldSnapshots(SNAPSHOTS_KEPT));
+        log.info("Took a snapshot of {} accounts and {} transactions ({} new) at LSN {} in {} ms",
+                accounts.size(), snapshot.getTransactionCount(), transactions.size(), lsn,
+                Duration.ofNanos(System.nanoTime() - start).toMillis());
+    }
+
+    @PreDestroy
+    public void close() {
+        wal.close();
+    }
+
+    // applies an account or balance record to the detached state of its account
+    private static void fold(Map<String, Account> accounts, ByteBuffer record) {
+        ByteBuffer in = record.duplicate();
+        if (LedgerRecordCodec.readType(in) == RecordType.BALANCE_CHANGED) {
+            Account change = LedgerRecordCodec.readBalanceChange(in);
+            Account account = accounts.get(change.getEmail());
+            account.getBalances().putAll(change.getBalances());
+            account.setUpdatedAt(change.getUpdatedAt());
+        } else {
+            Account account = LedgerRecordCodec.readAccount(in);
+            accounts.put(account.getEmail(), account);
+        }
+    }
+
+    // appends the record of an account and only then publishes it: nobody can change the account (and journal its
+    // balances) before its record is in the WAL, and an account whose record couldn't be appended is never published
+    private long append(RecordType type, Account account) {
+        // the account is encoded while holding the WAL lock, so its records are in the same order as its states
+        long lsn = wal.append(() -> LedgerRecordCodec.encodeAccount(type, account));
+        if (type == RecordType.ACCOUNT_ADDED) {
+            super.addAccount(account.getEmail(), account);
+        } else {
+            super.upsertAccount(account.getEmail(), account);
+        }
+        return lsn;
+    }
+
+    private void recover() {
+        long start = System.nanoTime();
+        List<ByteBuffer> accountRecords = new ArrayList<>();
+        List<ByteBuffer> transactionRecords = new ArrayList<>();
+        Optional<Snapshot> snapshot = snapshots.loadLatest();
+        snapshot.ifPresent(loaded -> {
+            accountRecords.addAll(loaded.getAccounts());
+            transactionRecords.addAll(loaded.getTransactions());
+        });
+        lastSnapshot = snapshot;
+        lastSnapshotLsn = snapshot.map(Snapshot::getLsn).orElse(0L);
+        int snapshotRecords = accountRecords.size() + transactionRecords.size();
+        // only the tail after the snapshot needs to be replayed
+        wal.replay(lastSnapshotLsn, (lsn, walRecord) -> LedgerRecordCodec.unpack(walRecord, record -> {
+            if (LedgerRecordCodec.readType(record.duplicate()) == RecordType.TRANSACTION_ADDED) {
+                transactionRecords.add(record);
+            } else {
+                accountRecords.add(record);
+            }
+        }));
+
+        // the records of one account always land on the same partition, and each partition applies
+        // them in order, so the accounts can be rebuilt on all cores at the same time
+        int partitions = Runtime.getRuntime().availableProcessors();
+        List<List<ByteBuffer>> partitioned = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            partitioned.add(new ArrayList<>());
+        }
+        for (ByteBuffer record : accountRecords) {
+            partitioned.get(Math.floorMod(LedgerRecordCodec.peekEmail(record).hashCode(), partitions)).add(record);
+        }
+        partitioned.parallelStream().forEach(records -> records.forEach(this::restoreAccount));
+
+        // transactions are decoded in parallel but added in their original order
+        Transaction[] transactions = new Transaction[transactionRecords.size()];
+        IntStream.range(0, transactions.length).parallel().forEach(i -> {
+            ByteBuffer record = transactionRecords.get(i).duplicate();
+            LedgerRecordCodec.readType(record);
+            transactions[i] = codec.readTransaction(record);
+        });
+        for (Transaction transaction : transactions) {
+            super.addTransaction(transaction);
+        }
+
+        recoveryTime = Duration.ofNanos(System.nanoTime() - start);
+        log.info("Recovered {} accounts and {} transactions ({} WAL records after the snapshot) in {} ms",
+                getAllAccounts().size(), transactions.length,
+                accountRecords.size() + transactionRecords.size() - snapshotRecords,
+                recoveryTime.toMillis());
+    }
+
+    private void restoreAccount(ByteBuffer record) {
+        ByteBuffer in = record.duplicate();
+        if (LedgerRecordCodec.readType(in) == RecordType.BALANCE_CHANGED) {
+            // the account was restored by an earlier record of the same partition
+            Account change = LedgerRecordCodec.readBalanceChange(in);
+            Account account = findAccount(change.getEmail());
+            account.getBalances().putAll(change.getBalances());
+            account.setUpdatedAt(change.getUpdatedAt());
+            return;
+        }
+        // a full account record replaces the account, it gets the id of its email again (transactions only
+        // reference accounts by id)
+        Account state = LedgerRecordCodec.readAccount(in);
+        super.upsertAccount(state.getEmail(), state);
+    }
+}
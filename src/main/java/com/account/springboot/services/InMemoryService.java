@@ -1,15 +1,17 @@
 package com.account.springboot.services;
 
 import com.account.springboot.models.Account;
+import com.account.springboot.models.BalanceChange;
 import com.account.springboot.models.Transaction;
 
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 public interface InMemoryService {
 
     /**
-     * Creates an account in to the in-memory "database"
+     * Creates an account in to the in-memory "database", stored by its id
      * @param account - account to be persisted or updated
      */
     void addAccount(String email, Account account);
@@ -26,6 +28,29 @@ public interface InMemoryService {
      */
     void addTransaction(Transaction transaction);
 
+    /**
+     * Persist many transactions at once, in order (e.g. a batch)
+     * @param transactions - transactions to be persisted
+     */
+    void addTransactions(List<Transaction> transactions);
+
+    /**
+     * Persist the new state of the balances changed by an operation (or a batch of them) together with its
+     * transactions, a durable storage keeps either all of them or none after a crash. Called while the operation
+     * still holds the locks of the balances (see Account.Journal), so their changes are committed in the order
+     * they are made: if it fails the balances don't change.
+     * @param balances - new state of the balances changed by the operation
+     * @param transactions - transactions of the operation, in order
+     * @return position of the commit, to wait for it with awaitDurable once the locks were released
+     */
+    long commit(List<BalanceChange> balances, List<Transaction> transactions);
+
+    /**
+     * Blocks until every commit up to the given position survives a crash
+     * @param position - position returned by commit
+     */
+    void awaitDurable(long position);
+
     /**
      * Get Account by email (key)
      * @param email - key to return an account
@@ -33,6 +58,20 @@ public interface InMemoryService {
      */
     Account getAccount(String email);
 
+    /**
+     * Same as {@link #getAccount(String)}, without throwing when there is no such account
+     * @param email - key to return an account
+     * @return Account, or null if there is none
+     */
+    Account findAccount(String email);
+
+    /**
+     * Get Account by id, e.g. the accounts of a transaction
+     * @param accountId - id of the account (see Account.getId)
+     * @return Account
+     */
+    Account getAccount(int accountId);
+
     /**
      * Get all Transactions from a customer account by email (key)
      * @param email - key to return a list of transactions
@@ -40,10 +79,26 @@ public interface InMemoryService {
      */
     List<Transaction> getTransactions(String email);
 
+    /**
+     * Get a page of Transactions from a customer account by email (key)
+     * @param email - key to return a list of transactions
+     * @param fromPosition - position (in the account history) of the first transaction to be returned
+     * @param limit - max number of transactions to be returned
+     * @return List<Transaction>
+     */
+    List<Transaction> getTransactions(String email, long fromPosition, int limit);
+
+    /**
+     * Iterates over all Transactions from a customer account by email (key) without copying them
+     * @param email - key to iterate over the transactions
+     * @return Iterator<Transaction>
+     */
+    Iterator<Transaction> iterateTransactions(String email);
+
     /**
      * Get all accounts
-     * @return List<Account>
+     * @return Collection<Account> in id order
      */
-    Map<String, Account> getAllAccounts();
+    Collection<Account> getAllAccounts();
 
 }
\ No newline at end of file
@@ -3,62 +3,140 @@ package com.account.springboot.services;
 import com.account.springboot.exceptions.CustomException;
 import com.account.springboot.exceptions.ErrorCode;
 import com.account.springboot.models.Account;
+import com.account.springboot.models.BalanceChange;
 import com.account.springboot.models.Transaction;
+import com.account.springboot.storage.HeapTransactionStore;
+import com.account.springboot.storage.IdTable;
+import com.account.springboot.storage.TransactionStore;
+import com.account.springboot.util.AccountIds;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.stream.Collectors;
 
 @Service
 @Slf4j
-public class InMemoryServiceImpl implements InMemoryService {
+@ConditionalOnProperty(name = "ledger.storage", havingValue = "memory", matchIfMissing = true)
+public class InMemoryServiceImpl implements InMemoryService, MeterBinder {
 
-    // Save accounts using email as key
-    private final ConcurrentMap<String, Account> accounts = new ConcurrentHashMap<>();
-    // Save all transactions
-    private final List<Transaction> transactions = new ArrayList<>();
+    // ids of the accounts of this ledger, the email of a request is resolved to its id once
+    private final AccountIds accountIds;
+    // Save accounts by id (an array lookup)
+    private final IdTable<Account> accounts = new IdTable<>();
+    // Save all transactions, with the history of every account (on the heap unless a subclass picks another store)
+    private final TransactionStore transactions;
+
+    @Autowired
+    public InMemoryServiceImpl(AccountIds accountIds) {
+        this(accountIds, new HeapTransactionStore());
+    }
+
+    protected InMemoryServiceImpl(AccountIds accountIds, TransactionStore transactions) {
+        this.accountIds = accountIds;
+        this.transactions = transactions;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("ledger.accounts", accounts, IdTable::size)
+                .description("Accounts in the ledger")
+                .register(registry);
+        Gauge.builder("ledger.journal.transactions", transactions, TransactionStore::size)
+                .description("Transactions in the journal")
+                .register(registry);
+        Gauge.builder("ledger.journal.indexed.accounts", transactions, TransactionStore::indexedAccounts)
+                .description("Accounts with transactions in the journal index")
+                .register(registry);
+    }
 
     @Override
     public void addAccount(String email, Account account) {
-        if (accounts.containsKey(email)) {
-            throw new CustomException(ErrorCode.ACCOUNT_ALREADY_EXISTS);
+        if (accounts.putIfAbsent(idOf(account), account) != null) {
+            throw CustomException.of(ErrorCode.ACCOUNT_ALREADY_EXISTS);
         }
-        accounts.put(email, account);
     }
 
     @Override
     public void upsertAccount(String email, Account account) {
-        accounts.put(email, account);
+        accounts.set(idOf(account), account);
     }
 
     @Override
-    public void addTransaction(Transaction transaction) { transactions.add(transaction); }
+    public void addTransaction(Transaction transaction) {
+        transactions.add(transaction);
+    }
+
+    @Override
+    public void addTransactions(List<Transaction> transactions) {
+        this.transactions.addAll(transactions);
+    }
+
+    @Override
+    public long commit(List<BalanceChange> balances, List<Transaction> transactions) {
+        // the balances themselves were already changed in place
+        addTransactions(transactions);
+        return 0;
+    }
+
+    @Override
+    public void awaitDurable(long position) {
+        // nothing is persisted
+    }
 
     @Override
     public Account getAccount(String email) {
-        if (!accounts.containsKey(email)) {
-            throw new CustomException(ErrorCode.NO_SUCH_ACCOUNT);
+        return getAccount(accountIds.find(email));
+    }
+
+    @Override
+    public Account getAccount(int accountId) {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            throw CustomException.of(ErrorCode.NO_SUCH_ACCOUNT);
         }
-        return accounts.get(email);
+        return account;
     }
 
     @Override
     public List<Transaction> getTransactions(String email) {
-        if (!accounts.containsKey(email)) {
-            throw new CustomException(ErrorCode.NO_SUCH_ACCOUNT);
-        }
-        return transactions.stream()
-                .filter(tx -> tx.getFromAccount().getEmail().equals(email) || tx.getToAccount().getEmail().equals(email))
-                .collect(Collectors.toList());
+        return transactions.getAll(getAccount(email).getId());
+    }
+
+    @Override
+    public List<Transaction> getTransactions(String email, long fromPosition, int limit) {
+        return transactions.get(getAccount(email).getId(), fromPosition, limit);
+    }
+
+    @Override
+    public Iterator<Transaction> iterateTransactions(String email) {
+        return transactions.iterator(getAccount(email).getId());
+    }
+
+    @Override
+    public Collection<Account> getAllAccounts() {
+        return accounts.values();
     }
 
     @Override
-    public Map<String, Account> getAllAccounts() {
-        return accounts;
+    public Account findAccount(String email) {
+        return accounts.get(accountIds.find(email));
+    }
+
+    // gives an account object that isn't in the ledger yet the id of its email
+    private int idOf(Account account) {
+        if (account.getId() == AccountIds.NONE) {
+            int id = accountIds.intern(account.getEmail());
+            // every account object of an email (e.g. replayed from the WAL) shares the interned instance
+            account.setEmail(accountIds.email(id));
+            account.setId(id);
+        }
+        return account.getId();
     }
-}
\ No newline at end of file
+}
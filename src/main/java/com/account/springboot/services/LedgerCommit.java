@@ -0,0 +1,38 @@
+package com.account.springboot.services;
+
+import com.account.springboot.models.Account;
+import com.account.springboot.models.Transaction;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Commits of a request (one operation, a batch, a chunk of interest payouts...): every operation commits the
+ * balances it changed with its transactions from its {@link #journal}, while it still holds their locks, and the
+ * request waits once for all of them to be durable after every lock was released, usually with a single fsync.
+ */
+public class LedgerCommit {
+
+    private final InMemoryService inMemoryService;
+    // position of the latest commit of the request
+    private final AtomicLong position = new AtomicLong();
+
+    public LedgerCommit(InMemoryService inMemoryService) {
+        this.inMemoryService = inMemoryService;
+    }
+
+    /**
+     * @param transactions - transactions of the operation, committed with the balances it changes
+     * @return journal to be handed to the operation (e.g. Account.transfer)
+     */
+    public Account.Journal journal(List<Transaction> transactions) {
+        return changes -> position.accumulateAndGet(inMemoryService.commit(changes, transactions), Math::max);
+    }
+
+    /**
+     * Blocks until every commit of the request survives a crash, must be called without holding any balance lock
+     */
+    public void awaitDurable() {
+        inMemoryService.awaitDurable(position.get());
+    }
+}
@@ -0,0 +1,62 @@
+package com.account.springboot.services;
+
+import com.account.springboot.exceptions.CustomException;
+import com.account.springboot.exceptions.ErrorCode;
+
+/**
+ * Outcome of a ledger operation: either its value or the error it failed with.
+ * Lets callers handle expected failures (e.g. not enough funds) as plain return values, without any exception
+ * going through them.
+ * @param <T> - value of a successful operation
+ */
+public final class LedgerResult<T> {
+
+    private final T value;
+    private final CustomException error;
+
+    private LedgerResult(T value, CustomException error) {
+        this.value = value;
+        this.error = error;
+    }
+
+    public static <T> LedgerResult<T> success(T value) {
+        return new LedgerResult<>(value, null);
+    }
+
+    public static <T> LedgerResult<T> failure(CustomException error) {
+        return new LedgerResult<>(null, error);
+    }
+
+    public static <T> LedgerResult<T> failure(ErrorCode code) {
+        return failure(CustomException.of(code));
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return value of the operation, null if it failed
+     */
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * @return error of the operation, null if it succeeded
+     */
+    public CustomException getError() {
+        return error;
+    }
+
+    /**
+     * @return value of the operation, for callers expecting it to succeed
+     * @throws CustomException the error of the operation, if it failed
+     */
+    public T orElseThrow() {
+        if (error != null) {
+            throw error;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,46 @@
+package com.account.springboot.services;
+
+import com.account.springboot.storage.OffHeapTransactionStore;
+import com.account.springboot.util.AccountIds;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-memory "database" keeping the transactions off the heap, in the columns of an {@link OffHeapTransactionStore},
+ * so a ledger with hundreds of millions of transactions doesn't make the garbage collector pauses grow with it.
+ * Transactions are only turned back into objects when they are read. Enabled with {@code ledger.storage=offheap}.
+ * <p>
+ * Like the default in-memory service nothing is persisted, and the accounts stay on the heap.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "ledger.storage", havingValue = "offheap")
+public class OffHeapInMemoryServiceImpl extends InMemoryServiceImpl {
+
+    private final OffHeapTransactionStore store;
+
+    @Autowired
+    public OffHeapInMemoryServiceImpl(AccountIds accountIds,
+                                      @Value("${ledger.offheap.segment-rows:65536}") int segmentRows) {
+        this(accountIds, new OffHeapTransactionStore(segmentRows));
+    }
+
+    private OffHeapInMemoryServiceImpl(AccountIds accountIds, OffHeapTransactionStore store) {
+        super(accountIds, store);
+        this.store = store;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        super.bindTo(registry);
+        Gauge.builder("ledger.offheap.bytes", store, OffHeapTransactionStore::offHeapBytes)
+                .description("Memory allocated off the heap for the transactions")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+}
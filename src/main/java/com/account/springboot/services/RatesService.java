@@ -2,6 +2,13 @@ package com.account.springboot.services;
 
 import com.account.springboot.dto.ExchangeRateRequestDto;
 import com.account.springboot.dto.ExchangeRateResponseDto;
+import com.account.springboot.models.ConversionRate;
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.models.Money;
+import com.account.springboot.models.RateSnapshot;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
 
 public interface RatesService {
 
@@ -12,4 +19,31 @@ public interface RatesService {
      */
     ExchangeRateResponseDto getConversionRate(ExchangeRateRequestDto exchangeRateRequestDto);
 
+    /**
+     * Current rates, a swap reads every rate it needs from the same snapshot
+     * @return RateSnapshot
+     */
+    RateSnapshot currentRates();
+
+    /**
+     * Current rates without blocking the caller, e.g. while the provider is being called
+     * @return CompletableFuture<RateSnapshot>, failed with a CustomException when the rates are unavailable
+     */
+    CompletableFuture<RateSnapshot> currentRatesAsync();
+
+    /**
+     * Historical rate, e.g. to re-price a swap or a statement at a past date
+     * @param source - currency being converted
+     * @param target - currency it is converted to
+     * @param date - date of the rate, the latest rate on or before it is returned
+     * @return ConversionRate or null if there is no rate on or before the date
+     */
+    ConversionRate getRateAsOf(CurrencyEnum source, CurrencyEnum target, LocalDate date);
+
+    /**
+     * Same as {@link #getRateAsOf}, returning the parsed rate, e.g. to re-price every transaction of a statement
+     * @return Money.Factor or null if there is no rate on or before the date
+     */
+    Money.Factor getFactorAsOf(CurrencyEnum source, CurrencyEnum target, LocalDate date);
+
 }
\ No newline at end of file
@@ -2,21 +2,59 @@ package com.account.springboot.services;
 
 import com.account.springboot.dto.ExchangeRateRequestDto;
 import com.account.springboot.dto.ExchangeRateResponseDto;
-import lombok.AllArgsConstructor;
+import com.account.springboot.exceptions.CustomException;
+import com.account.springboot.exceptions.ErrorCode;
+import com.account.springboot.models.ConversionRate;
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.models.Money;
+import com.account.springboot.models.RateSnapshot;
+import com.account.springboot.storage.HistoricalRatesStore;
+import com.account.springboot.util.LedgerClock;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
-import java.time.ZoneId;
-import java.util.Date;
-import java.util.HashMap;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 @Slf4j
-@AllArgsConstructor(onConstructor = @__(@Autowired))
+@ConditionalOnProperty(name = "rates.provider", havingValue = "static", matchIfMissing = true)
 public class RatesServiceImpl implements RatesService {
 
+    private static final Map<String, String> DEFAULT_RATES = Map.of(
+            "CADUSD", "0.73",
+            "CADEUR", "0.68",
+            "USDCAD", "1.36",
+            "USDEUR", "0.93",
+            "EURCAD", "1.46",
+            "EURUSD", "1.07"
+    );
+
+    // rates are parsed once into an immutable snapshot, refreshes swap in a whole new one
+    private final AtomicReference<RateSnapshot> rates = new AtomicReference<>(RateSnapshot.of(1, LedgerClock.today(), DEFAULT_RATES));
+
+    // daily rates of past dates
+    private final HistoricalRatesStore history;
+
+    public RatesServiceImpl() {
+        this(HistoricalRatesStore.empty());
+    }
+
+    @Autowired
+    public RatesServiceImpl(@Value("${rates.history.file:}") String historyFile) {
+        this(historyFile.isBlank() ? HistoricalRatesStore.empty() : HistoricalRatesStore.load(Path.of(historyFile)));
+    }
+
+    public RatesServiceImpl(HistoricalRatesStore history) {
+        this.history = history;
+    }
+
     /**
      * When there is no entry for particular day the method checks what is actual rate with date before the requested date
      *@param exchangeRateRequestDto  requested conversion rate dto with desired currency
@@ -24,26 +62,60 @@ public class RatesServiceImpl implements RatesService {
      */
     @Override
     public ExchangeRateResponseDto getConversionRate(ExchangeRateRequestDto exchangeRateRequestDto) {
-        Map<String, String> exchangeRates = new HashMap<String,String>(
-                Map.of(
-                        "CADUSD", "0.73",
-                        "CADEUR", "0.68",
-                        "USDCAD", "1.36",
-                        "USDEUR", "0.93",
-                        "EURCAD", "1.46",
-                        "EURUSD", "1.07"
-                )
-        );
-        String rate = exchangeRates.get(exchangeRateRequestDto.getSourceCurrency().toString()+ exchangeRateRequestDto.getTargetCurrency().toString());
+        LocalDate today = LedgerClock.today();
+        if (exchangeRateRequestDto.getDate() != null && exchangeRateRequestDto.getDate().isBefore(today)) {
+            ConversionRate rate = getRateAsOf(exchangeRateRequestDto.getSourceCurrency(),
+                    exchangeRateRequestDto.getTargetCurrency(), exchangeRateRequestDto.getDate());
+            if (rate == null) {
+                throw CustomException.of(ErrorCode.RATE_NOT_FOUND);
+            }
+            return ExchangeRateResponseDto
+                    .builder()
+                    .rate(rate.getRate())
+                    .targetCurrency(exchangeRateRequestDto.getTargetCurrency())
+                    // date of the rate that was actually used
+                    .date(rate.getDate())
+                    .build();
+        }
+        RateSnapshot snapshot = currentRates();
         return ExchangeRateResponseDto
                 .builder()
-                .rate(rate)
+                .rate(snapshot.getQuote(exchangeRateRequestDto.getSourceCurrency(), exchangeRateRequestDto.getTargetCurrency()))
                 .targetCurrency(exchangeRateRequestDto.getTargetCurrency())
-                .date(new Date().toInstant()
-                        .atZone(ZoneId.systemDefault())
-                        .toLocalDate())
+                .date(today)
+                .rateVersion(snapshot.getVersion())
                 .build();
     }
 
+    @Override
+    public RateSnapshot currentRates() {
+        return rates.get();
+    }
+
+    @Override
+    public CompletableFuture<RateSnapshot> currentRatesAsync() {
+        return CompletableFuture.completedFuture(currentRates());
+    }
+
+    @Override
+    public ConversionRate getRateAsOf(CurrencyEnum source, CurrencyEnum target, LocalDate date) {
+        return history.getRate(source, target, date);
+    }
+
+    @Override
+    public Money.Factor getFactorAsOf(CurrencyEnum source, CurrencyEnum target, LocalDate date) {
+        return history.getFactor(source, target, date);
+    }
+
+    /**
+     * Replaces every rate at once, readers see either the old or the new snapshot, never a mix of both
+     * @param ratesByPair - rates by source and target codes, e.g. "USDCAD" -> "1.36"
+     * @return the new snapshot
+     */
+    public RateSnapshot refreshRates(Map<String, String> ratesByPair) {
+        RateSnapshot refreshed = rates.updateAndGet(current -> RateSnapshot.of(current.getVersion() + 1, LedgerClock.today(), ratesByPair));
+        log.info("Refreshed exchange rates to version {}", refreshed.getVersion());
+        return refreshed;
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,86 @@
+package com.account.springboot.services;
+
+import com.account.springboot.dto.*;
+import com.account.springboot.models.CurrencyEnum;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link AccountService}, used by the reactive api
+ */
+public interface ReactiveAccountService {
+
+    /**
+     * Creates a new customer account
+     * @param accountDto - dto with basic data
+     * @return Mono<AccountResponseDto> with all "zeroed" balances
+     */
+    Mono<AccountResponseDto> create(AccountRequestDto accountDto);
+
+    /**
+     * Deposits into an account
+     * @param depositDto - dto with deposit information
+     * @return Mono<TransactionDto>
+     */
+    Mono<TransactionDto> deposit(DepositDto depositDto);
+
+    /**
+     * Creates a new currency balance for a customer
+     * @param createBalanceDTO - dto with email and currency to open the account
+     * @return Mono<AccountResponseDto>
+     */
+    Mono<AccountResponseDto> createBalance(CreateBalanceDto createBalanceDTO);
+
+    /**
+     * find account when provided an email
+     * @param email - email (used as the id for that customer)
+     * @return Mono<AccountResponseDto>
+     */
+    Mono<AccountResponseDto> find(String email);
+
+    /**
+     * send money to a customer through their email
+     * @param sendDTO - DTO with the send transaction information
+     * @return Mono<TransactionDto>
+     */
+    Mono<TransactionDto> send(SendDto sendDTO);
+
+    /**
+     * exchanges funds between balances of a customer, without holding a thread while the rates are looked up
+     * @param swapDTO - DTO with the swap transaction information
+     * @return Mono<TransactionDto>
+     */
+    Mono<TransactionDto> swap(SwapDto swapDTO);
+
+    /**
+     * applies many deposits, sends and swaps in one call
+     * @param batchRequestDto - operations of the batch, and whether they must be applied all-or-nothing
+     * @return Mono<BatchResponseDto> with one result per operation
+     */
+    Mono<BatchResponseDto> batch(BatchRequestDto batchRequestDto);
+
+    /**
+     * gets all transactions given a customer email, read from the history as the subscriber requests them
+     * @param email - email of the customer that would like to see its transactions
+     * @return Flux<TransactionDto>
+     */
+    Flux<TransactionDto> getTransactions(String email);
+
+    /**
+     * gets a page of transactions given a customer email
+     * @param email - email of the customer that would like to see its transactions
+     * @param cursor - opaque cursor returned with the previous page (null for the first page)
+     * @param limit - max number of transactions in the page
+     * @return Mono<TransactionPageDto>
+     */
+    Mono<TransactionPageDto> getTransactions(String email, String cursor, int limit);
+
+    /**
+     * gets all transactions given a customer email, re-priced in a single currency at the rates of their day
+     * @param email - email of the customer that would like to see its statement
+     * @param currency - currency of the statement
+     * @return Flux<TransactionDto>
+     */
+    Flux<TransactionDto> getStatement(String email, CurrencyEnum currency);
+
+}
@@ -0,0 +1,106 @@
+package com.account.springboot.services;
+
+import com.account.springboot.dto.*;
+import com.account.springboot.models.CurrencyEnum;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Reactive account service on top of the {@link AccountService}.
+ * <p>
+ * Changing the in-memory ledger only takes the balance locks for a few instructions, so by default it runs
+ * right on the calling (event loop) thread. What used to block a request thread is waiting for the rates,
+ * and swaps now wait for them without any thread. Ledgers that do block (the wal storage waits for the fsync,
+ * the sharded engine for the shard) are called on the bounded elastic scheduler instead, off the event loop.
+ */
+@Service
+public class ReactiveAccountServiceImpl implements ReactiveAccountService {
+
+    private final AccountService accountService;
+
+    private final ReactiveRatesService reactiveRatesService;
+
+    // where the ledger is called
+    private final Scheduler ledgerScheduler;
+
+    @Autowired
+    public ReactiveAccountServiceImpl(AccountService accountService,
+                                      ReactiveRatesService reactiveRatesService,
+                                      @Value("${ledger.storage:memory}") String storage,
+                                      @Value("${ledger.engine:locking}") String engine) {
+        this.accountService = accountService;
+        this.reactiveRatesService = reactiveRatesService;
+        boolean blocking = "wal".equals(storage) || "sharded".equals(engine);
+        this.ledgerScheduler = blocking ? Schedulers.boundedElastic() : Schedulers.immediate();
+    }
+
+    @Override
+    public Mono<AccountResponseDto> create(AccountRequestDto accountDto) {
+        return onLedger(() -> accountService.create(accountDto));
+    }
+
+    @Override
+    public Mono<TransactionDto> deposit(DepositDto depositDto) {
+        return onLedger(() -> accountService.deposit(depositDto));
+    }
+
+    @Override
+    public Mono<AccountResponseDto> createBalance(CreateBalanceDto createBalanceDTO) {
+        return onLedger(() -> accountService.createBalance(createBalanceDTO));
+    }
+
+    @Override
+    public Mono<AccountResponseDto> find(String email) {
+        return Mono.fromCallable(() -> accountService.find(email));
+    }
+
+    @Override
+    public Mono<TransactionDto> send(SendDto sendDTO) {
+        return onLedger(() -> accountService.send(sendDTO));
+    }
+
+    @Override
+    public Mono<TransactionDto> swap(SwapDto swapDTO) {
+        return reactiveRatesService.currentRates()
+                .flatMap(rates -> onLedger(() -> accountService.swap(swapDTO, rates)));
+    }
+
+    @Override
+    public Mono<BatchResponseDto> batch(BatchRequestDto batchRequestDto) {
+        boolean hasSwaps = batchRequestDto.getOperations() != null
+                && batchRequestDto.getOperations().stream().anyMatch(operation -> operation != null && operation.getSwap() != null);
+        if (!hasSwaps) {
+            return onLedger(() -> accountService.batch(batchRequestDto));
+        }
+        // the batch reads the rates itself, waiting for them first so it finds them in the cache
+        return reactiveRatesService.currentRates()
+                .then(onLedger(() -> accountService.batch(batchRequestDto)));
+    }
+
+    @Override
+    public Flux<TransactionDto> getTransactions(String email) {
+        // the history is read from memory one transaction at a time, only as fast as the subscriber requests them
+        return Flux.fromIterable(() -> accountService.streamTransactions(email));
+    }
+
+    @Override
+    public Mono<TransactionPageDto> getTransactions(String email, String cursor, int limit) {
+        return Mono.fromCallable(() -> accountService.getTransactions(email, cursor, limit));
+    }
+
+    @Override
+    public Flux<TransactionDto> getStatement(String email, CurrencyEnum currency) {
+        return Mono.fromCallable(() -> accountService.getStatement(email, currency)).flatMapIterable(statement -> statement);
+    }
+
+    private <T> Mono<T> onLedger(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(ledgerScheduler);
+    }
+}
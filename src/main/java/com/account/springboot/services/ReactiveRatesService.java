@@ -0,0 +1,17 @@
+package com.account.springboot.services;
+
+import com.account.springboot.models.RateSnapshot;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link RatesService}, used by the reactive api
+ */
+public interface ReactiveRatesService {
+
+    /**
+     * Current rates, emitted once they are available without holding a thread while the provider is called
+     * @return Mono<RateSnapshot>
+     */
+    Mono<RateSnapshot> currentRates();
+
+}
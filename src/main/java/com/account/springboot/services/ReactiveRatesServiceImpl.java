@@ -0,0 +1,20 @@
+package com.account.springboot.services;
+
+import com.account.springboot.models.RateSnapshot;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+@Service
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class ReactiveRatesServiceImpl implements ReactiveRatesService {
+
+    private final RatesService ratesService;
+
+    @Override
+    public Mono<RateSnapshot> currentRates() {
+        // a failed future is emitted as its cause, e.g. the CustomException of unavailable rates
+        return Mono.fromFuture(ratesService::currentRatesAsync);
+    }
+}
@@ -0,0 +1,236 @@
+package com.account.springboot.services;
+
+import com.account.springboot.exceptions.CustomException;
+import com.account.springboot.exceptions.ErrorCode;
+import com.account.springboot.models.RateSnapshot;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Rates service getting the current rates from a remote provider, enabled with {@code rates.provider=remote}.
+ * The provider is expected to answer {@code GET rates.remote.url} with {@code {"date": "2023-05-05", "rates": {"USDCAD": "1.36", ...}}}.
+ * <p>
+ * Swaps never wait for the provider while there are usable rates in the cache:
+ * <ul>
+ *     <li>refresh-ahead: once the rates are older than {@code refresh-ahead-ratio * ttl} a refresh starts in the background</li>
+ *     <li>stale-while-revalidate: while the refresh runs (or fails), the last good rates are served up to {@code max-staleness}</li>
+ *     <li>coalescing: there is only one request to the provider at a time, every caller shares it</li>
+ * </ul>
+ * Only when there are no usable rates (cold start, or older than max staleness) callers wait for the refresh,
+ * up to the timeout, and at most {@code max-waiting-requests} of them (the bulkhead), the others fail right away.
+ * After a failed refresh the provider isn't called again before the timeout elapses.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "rates.provider", havingValue = "remote")
+public class RemoteRatesServiceImpl extends RatesServiceImpl {
+
+    private static class CachedRates {
+        private final RateSnapshot snapshot;
+        private final long fetchedAt;
+
+        private CachedRates(RateSnapshot snapshot, long fetchedAt) {
+            this.snapshot = snapshot;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final URI uri;
+    private final Duration timeout;
+    private final long refreshAheadNanos;
+    private final long maxStalenessNanos;
+    // bulkhead: callers allowed to block waiting for the provider at the same time
+    private final Semaphore waitingRequests;
+
+    private final AtomicReference<CachedRates> cached = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<CachedRates>> inFlight = new AtomicReference<>();
+    private volatile long retryAfter;
+    private final AtomicLong fetchCount = new AtomicLong();
+
+    @Autowired
+    public RemoteRatesServiceImpl(@Value("${rates.remote.url}") String url,
+                                  @Value("${rates.remote.ttl-ms:60000}") long ttlMs,
+                                  @Value("${rates.remote.refresh-ahead-ratio:0.8}") double refreshAheadRatio,
+                                  @Value("${rates.remote.max-staleness-ms:600000}") long maxStalenessMs,
+                                  @Value("${rates.remote.timeout-ms:2000}") long timeoutMs,
+                                  @Value("${rates.remote.max-waiting-requests:64}") int maxWaitingRequests,
+                                  @Value("${rates.history.file:}") String historyFile,
+                                  ObjectMapper objectMapper) {
+        super(historyFile);
+        this.uri = URI.create(url);
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.refreshAheadNanos = TimeUnit.MILLISECONDS.toNanos((long) (ttlMs * refreshAheadRatio));
+        this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMs);
+        this.waitingRequests = new Semaphore(maxWaitingRequests);
+        this.objectMapper = objectMapper;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .build();
+        this.retryAfter = System.nanoTime();
+        // warming up the cache, without holding the startup
+        refresh();
+    }
+
+    @Override
+    public RateSnapshot currentRates() {
+        RateSnapshot usable = usableRates();
+        return usable != null ? usable : awaitRefresh();
+    }
+
+    @Override
+    public CompletableFuture<RateSnapshot> currentRatesAsync() {
+        RateSnapshot usable = usableRates();
+        if (usable != null) {
+            return CompletableFuture.completedFuture(usable);
+        }
+        // nobody blocks here, so there is no bulkhead: callers just share the refresh, up to the timeout
+        // (on a future of their own, the timeout must not fail the shared one)
+        return refresh()
+                .thenApply(rates -> rates.snapshot)
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .handle((rates, error) -> {
+                    if (error != null) {
+                        throw CustomException.of(ErrorCode.RATES_UNAVAILABLE);
+                    }
+                    return rates;
+                });
+    }
+
+    @Override
+    public RateSnapshot refreshRates(Map<String, String> ratesByPair) {
+        CachedRates refreshed = cache(LocalDate.now(), ratesByPair);
+        log.info("Refreshed exchange rates to version {}", refreshed.snapshot.getVersion());
+        return refreshed.snapshot;
+    }
+
+    /**
+     * @return number of requests sent to the provider
+     */
+    public long getFetchCount() {
+        return fetchCount.get();
+    }
+
+    // cached rates that can still be served (refreshing them in the background when they are getting old), or null
+    private RateSnapshot usableRates() {
+        CachedRates current = cached.get();
+        if (current != null) {
+            long age = System.nanoTime() - current.fetchedAt;
+            if (age >= refreshAheadNanos) {
+                // runs in the background, meanwhile the rates we have are served
+                refresh();
+            }
+            if (age < maxStalenessNanos) {
+                return current.snapshot;
+            }
+        }
+        return null;
+    }
+
+    private RateSnapshot awaitRefresh() {
+        if (!waitingRequests.tryAcquire()) {
+            throw CustomException.of(ErrorCode.RATES_UNAVAILABLE);
+        }
+        try {
+            return refresh().get(timeout.toMillis(), TimeUnit.MILLISECONDS).snapshot;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw CustomException.of(ErrorCode.RATES_UNAVAILABLE);
+        } catch (ExecutionException | TimeoutException exception) {
+            throw CustomException.of(ErrorCode.RATES_UNAVAILABLE);
+        } finally {
+            waitingRequests.release();
+        }
+    }
+
+    // starts a request to the provider unless one is already running, callers share the running one
+    private CompletableFuture<CachedRates> refresh() {
+        while (true) {
+            CompletableFuture<CachedRates> running = inFlight.get();
+            if (running != null) {
+                return running;
+            }
+            if (System.nanoTime() - retryAfter < 0) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Waiting before calling the rates provider again"));
+            }
+            CompletableFuture<CachedRates> refresh = new CompletableFuture<>();
+            if (!inFlight.compareAndSet(null, refresh)) {
+                continue;
+            }
+            fetchCount.incrementAndGet();
+            try {
+                HttpRequest request = HttpRequest.newBuilder(uri)
+                        .timeout(timeout)
+                        .header("Accept", "application/json")
+                        .GET()
+                        .build();
+                httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                        .thenApply(this::parse)
+                        .whenComplete((rates, error) -> completeRefresh(refresh, rates, error));
+            } catch (RuntimeException exception) {
+                // the request couldn't even be sent (e.g. the client refused it), nothing else would end the refresh
+                completeRefresh(refresh, null, exception);
+            }
+            return refresh;
+        }
+    }
+
+    private void completeRefresh(CompletableFuture<CachedRates> refresh, CachedRates rates, Throwable error) {
+        if (error != null) {
+            log.warn("Could not refresh the exchange rates: {}", error.toString());
+            retryAfter = System.nanoTime() + timeout.toNanos();
+        }
+        // letting the next refresh start before completing this one
+        inFlight.set(null);
+        if (error != null) {
+            refresh.completeExceptionally(error);
+        } else {
+            refresh.complete(rates);
+        }
+    }
+
+    private CachedRates parse(HttpResponse<byte[]> response) {
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Rates provider answered " + response.statusCode());
+        }
+        try {
+            JsonNode body = objectMapper.readTree(response.body());
+            Map<String, String> ratesByPair = new HashMap<>();
+            body.path("rates").fields().forEachRemaining(entry -> ratesByPair.put(entry.getKey(), entry.getValue().asText()));
+            LocalDate date = body.hasNonNull("date") ? LocalDate.parse(body.get("date").asText()) : LocalDate.now();
+            return cache(date, ratesByPair);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private CachedRates cache(LocalDate date, Map<String, String> ratesByPair) {
+        return cached.updateAndGet(current -> new CachedRates(
+                RateSnapshot.of(current == null ? 1 : current.snapshot.getVersion() + 1, date, ratesByPair),
+                System.nanoTime()));
+    }
+}
@@ -0,0 +1,83 @@
+package com.account.springboot.services;
+
+import com.account.springboot.engine.ShardedLedger;
+import com.account.springboot.exceptions.ErrorCode;
+import com.account.springboot.models.Account;
+import com.account.springboot.models.CurrencyEnum;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Account service where balances are only changed by the single-threaded shard owning the account
+ * (see {@link ShardedLedger}), instead of request threads competing for the balance locks.
+ * Enabled with {@code ledger.engine=sharded}.
+ * <p>
+ * Deposits, swaps and sends between accounts of the same shard run as one command on that shard.
+ * A send between accounts of different shards is a two-phase handoff: first one of the two shards is handed over
+ * (it stops at the send, see {@link ShardedLedger#execute(java.util.Collection, Runnable)}), then the other one
+ * debits and credits both balances as one command. Funds are never in flight between two commands, so the debit
+ * and the credit are journaled together, and a crash can never keep one without the other.
+ * <p>
+ * An atomic batch (or a chunk of interest payouts) runs on one of the shards of its accounts while the other ones
+ * are held idle, so it is still only ever applied by shard threads.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "ledger.engine", havingValue = "sharded")
+public class ShardedAccountServiceImpl extends AccountServiceImpl {
+
+    private final ShardedLedger ledger;
+
+    @Autowired
+    public ShardedAccountServiceImpl(@Value("${ledger.engine.shards:0}") int shards,
+                                     @Value("${ledger.engine.ring-capacity:1024}") int ringCapacity) {
+        // one shard per core unless configured
+        this.ledger = new ShardedLedger(shards > 0 ? shards : Runtime.getRuntime().availableProcessors(), ringCapacity);
+    }
+
+    @Override
+    protected ErrorCode applyDeposit(Account account, CurrencyEnum currency, long amount, Account.Journal journal) {
+        // the error is handed back from the shard thread, not thrown through it
+        ErrorCode[] error = new ErrorCode[1];
+        ledger.shardOf(account.getId()).execute(() -> error[0] = account.tryUpdateBalance(currency, amount, journal));
+        return error[0];
+    }
+
+    @Override
+    protected ErrorCode applyTransfer(Account from, CurrencyEnum fromCurrency, long debit,
+                                      Account to, CurrencyEnum toCurrency, long credit, Account.Journal journal) {
+        ErrorCode[] error = new ErrorCode[1];
+        ShardedLedger.Shard fromShard = ledger.shardOf(from.getId());
+        ShardedLedger.Shard toShard = ledger.shardOf(to.getId());
+        if (fromShard == toShard) {
+            fromShard.execute(() -> error[0] = Account.tryTransfer(from, fromCurrency, debit, to, toCurrency, credit, journal));
+            return error[0];
+        }
+        // phase 1: one shard is handed over, phase 2: the other one moves the funds (or fails without changing
+        // anything, e.g. the receiver has no balance in that currency)
+        ledger.execute(List.of(fromShard, toShard),
+                () -> error[0] = Account.tryTransfer(from, fromCurrency, debit, to, toCurrency, credit, journal));
+        return error[0];
+    }
+
+    @Override
+    protected void runAtomically(Map<Account, Set<CurrencyEnum>> balances, Runnable action) {
+        List<ShardedLedger.Shard> shards = balances.keySet().stream()
+                .map(account -> ledger.shardOf(account.getId()))
+                .toList();
+        ledger.execute(shards, () -> Account.runLocked(balances, action));
+    }
+
+    @PreDestroy
+    public void close() {
+        ledger.close();
+    }
+}
@@ -0,0 +1,174 @@
+package com.account.springboot.storage;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrent, append-only list of entries where every entry gets a monotonic sequence number.
+ * <p>
+ * Entries are kept in chunked segments that double in size (the first one holds {@code 2^firstSegmentBits}
+ * entries), so small journals stay small and a sequence number maps to its segment and offset in O(1).
+ * <p>
+ * Appending never takes a lock: a writer claims its sequence with a single atomic increment, installs the
+ * segment if it is the first one to reach it, writes its slot and then helps moving the publication
+ * watermark forward. Readers only look at entries below the watermark, so they never block writers and
+ * always see a gap-free snapshot of the journal up to a sequence number.
+ */
+public class AppendOnlyJournal<T> implements Iterable<T> {
+
+    // a journal can hold up to 2^MAX_CAPACITY_BITS entries
+    private static final int MAX_CAPACITY_BITS = 48;
+
+    private final int firstSegmentBits;
+    private final AtomicReferenceArray<AtomicReferenceArray<T>> segments;
+    // next sequence number to be handed out to a writer
+    private final AtomicLong claimed = new AtomicLong();
+    // every entry with a sequence number lower than this one was written and is visible to readers
+    private final AtomicLong published = new AtomicLong();
+
+    public AppendOnlyJournal() {
+        this(10);
+    }
+
+    public AppendOnlyJournal(int firstSegmentBits) {
+        if (firstSegmentBits < 0 || firstSegmentBits >= MAX_CAPACITY_BITS) {
+            throw new IllegalArgumentException("Invalid segment size: " + firstSegmentBits);
+        }
+        this.firstSegmentBits = firstSegmentBits;
+        this.segments = new AtomicReferenceArray<>(MAX_CAPACITY_BITS - firstSegmentBits);
+    }
+
+    /**
+     * Appends an entry to the end of the journal
+     * @param entry - entry to be appended, can't be null
+     * @return sequence number given to the entry
+     */
+    public long append(T entry) {
+        Objects.requireNonNull(entry);
+        long sequence = claimed.getAndIncrement();
+        slotsOf(sequence, true).set(offsetOf(sequence), entry);
+        publish();
+        return sequence;
+    }
+
+    /**
+     * @return number of entries visible to readers, every sequence number below it can be read
+     */
+    public long size() {
+        return published.get();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Gets an entry by its sequence number
+     * @param sequence - sequence number returned when the entry was appended
+     * @return the entry
+     */
+    public T get(long sequence) {
+        if (sequence < 0 || sequence >= published.get()) {
+            throw new IndexOutOfBoundsException("Sequence " + sequence + " is not published");
+        }
+        return entryAt(sequence);
+    }
+
+    /**
+     * Copies every published entry to a list
+     * @return List<T> with the entries in sequence order
+     */
+    public List<T> snapshot() {
+        return snapshot(0, size());
+    }
+
+    /**
+     * Copies the entries in the [fromSequence, toSequence) range to a list
+     * @return List<T> with the entries in sequence order
+     */
+    public List<T> snapshot(long fromSequence, long toSequence) {
+        List<T> entries = new ArrayList<>((int) Math.max(0, Math.min(toSequence - fromSequence, Integer.MAX_VALUE - 8)));
+        iterator(fromSequence, toSequence).forEachRemaining(entries::add);
+        return entries;
+    }
+
+    /**
+     * Iterates over the entries that were published when the iterator was created
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return iterator(0, size());
+    }
+
+    /**
+     * Iterates over the entries in the [fromSequence, toSequence) range, which must be already published
+     */
+    public Iterator<T> iterator(long fromSequence, long toSequence) {
+        long upTo = Math.min(toSequence, size());
+        return new Iterator<>() {
+            private long next = Math.max(0, fromSequence);
+
+            @Override
+            public boolean hasNext() {
+                return next < upTo;
+            }
+
+            @Override
+            public T next() {
+                if (next >= upTo) {
+                    throw new NoSuchElementException();
+                }
+                return entryAt(next++);
+            }
+        };
+    }
+
+    private void publish() {
+        // entries claimed after this point will be published by their own writers, which makes the
+        // helping loop below bounded
+        long bound = claimed.get();
+        long current = published.get();
+        while (current < bound) {
+            // stop at the first hole: its writer hasn't finished yet and will carry on from there
+            if (entryAt(current) == null) {
+                return;
+            }
+            published.compareAndSet(current, current + 1);
+            current = published.get();
+        }
+    }
+
+    private T entryAt(long sequence) {
+        AtomicReferenceArray<T> slots = slotsOf(sequence, false);
+        return slots == null ? null : slots.get(offsetOf(sequence));
+    }
+
+    private int segmentOf(long sequence) {
+        long index = sequence + (1L << firstSegmentBits);
+        return 63 - Long.numberOfLeadingZeros(index) - firstSegmentBits;
+    }
+
+    private int offsetOf(long sequence) {
+        long index = sequence + (1L << firstSegmentBits);
+        return (int) (index - Long.highestOneBit(index));
+    }
+
+    private AtomicReferenceArray<T> slotsOf(long sequence, boolean create) {
+        int segment = segmentOf(sequence);
+        if (segment >= segments.length()) {
+            throw new IllegalStateException("Journal is full");
+        }
+        AtomicReferenceArray<T> slots = segments.get(segment);
+        if (slots == null && create) {
+            // many writers may race to create the same segment, only one of them wins
+            segments.compareAndSet(segment, null, new AtomicReferenceArray<>(1 << (firstSegmentBits + segment)));
+            slots = segments.get(segment);
+        }
+        return slots;
+    }
+}
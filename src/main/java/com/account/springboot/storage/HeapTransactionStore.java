@@ -0,0 +1,83 @@
+package com.account.springboot.storage;
+
+import com.account.springboot.models.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Keeps the {@link Transaction} objects on the heap, in lock-free {@link AppendOnlyJournal}s (safe for
+ * concurrent requests and jobs): one with every transaction and one per account.
+ */
+public class HeapTransactionStore implements TransactionStore {
+
+    // all transactions
+    private final AppendOnlyJournal<Transaction> transactions = new AppendOnlyJournal<>();
+    // index of transactions per account (by account id)
+    private final IdTable<AppendOnlyJournal<Transaction>> transactionsByAccount = new IdTable<>();
+
+    @Override
+    public void add(Transaction transaction) {
+        transactions.append(transaction);
+        int fromAccountId = transaction.getFromAccountId();
+        int toAccountId = transaction.getToAccountId();
+        index(fromAccountId, transaction);
+        // transfers are listed for both the sender and the receiver, but swaps, deposits
+        // and interest payouts have the same account on both sides and are listed only once
+        if (fromAccountId != toAccountId) {
+            index(toAccountId, transaction);
+        }
+    }
+
+    @Override
+    public void addAll(List<Transaction> transactions) {
+        transactions.forEach(this::add);
+    }
+
+    @Override
+    public long size() {
+        return transactions.size();
+    }
+
+    @Override
+    public int indexedAccounts() {
+        return transactionsByAccount.size();
+    }
+
+    @Override
+    public List<Transaction> get(int accountId, long fromPosition, int limit) {
+        AppendOnlyJournal<Transaction> accountTransactions = transactionsByAccount.get(accountId);
+        if (accountTransactions == null) {
+            return new ArrayList<>();
+        }
+        // a snapshot range must be published already, and the list is sized to the page rather than to the limit
+        return accountTransactions.snapshot(fromPosition, Math.min(fromPosition + limit, accountTransactions.size()));
+    }
+
+    @Override
+    public List<Transaction> getAll(int accountId) {
+        AppendOnlyJournal<Transaction> accountTransactions = transactionsByAccount.get(accountId);
+        if (accountTransactions == null) {
+            return new ArrayList<>();
+        }
+        return accountTransactions.snapshot();
+    }
+
+    @Override
+    public Iterator<Transaction> iterator(int accountId) {
+        AppendOnlyJournal<Transaction> accountTransactions = transactionsByAccount.get(accountId);
+        if (accountTransactions == null) {
+            return Collections.emptyIterator();
+        }
+        return accountTransactions.iterator();
+    }
+
+    private void index(int accountId, Transaction transaction) {
+        transactionsByAccount
+                // most customers have a short history, so their journal starts with a small segment
+                .computeIfAbsent(accountId, key -> new AppendOnlyJournal<>(3))
+                .append(transaction);
+    }
+}
@@ -0,0 +1,188 @@
+package com.account.springboot.storage;
+
+import com.account.springboot.models.ConversionRate;
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.models.Money;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.List;
+
+/**
+ * Immutable store of daily exchange rates per currency pair, answering "the rate as of a date" with a binary search.
+ * <p>
+ * Every pair keeps its rates sorted by date in plain arrays (epoch days, parsed rates and quotes), so a lookup
+ * finds the latest rate on or before the requested date in O(log n) without scanning or allocating.
+ * Days without a rate (weekends, holidays) use the rate of the previous day that has one.
+ */
+@Slf4j
+public class HistoricalRatesStore {
+
+    private static final CurrencyEnum[] CURRENCIES = CurrencyEnum.values();
+
+    private static class PairHistory {
+        private final int[] epochDays;
+        private final Money.Factor[] rates;
+        private final String[] quotes;
+
+        private PairHistory(int[] epochDays, Money.Factor[] rates, String[] quotes) {
+            this.epochDays = epochDays;
+            this.rates = rates;
+            this.quotes = quotes;
+        }
+
+        // index of the latest rate on or before the day, or -1 if the history starts after it
+        private int floor(int epochDay) {
+            int index = Arrays.binarySearch(epochDays, epochDay);
+            return index >= 0 ? index : -index - 2;
+        }
+    }
+
+    // indexed by the ordinals of the source and target currencies
+    private final PairHistory[] pairs;
+    private final int size;
+
+    private HistoricalRatesStore(PairHistory[] pairs, int size) {
+        this.pairs = pairs;
+        this.size = size;
+    }
+
+    public static HistoricalRatesStore empty() {
+        return new HistoricalRatesStore(new PairHistory[CURRENCIES.length * CURRENCIES.length], 0);
+    }
+
+    /**
+     * Loads the rates of a CSV file with a {@code date,source,target,rate} line per rate (e.g. 2023-05-02,USD,CAD,1.3613).
+     * Blank lines, lines starting with # and the header are ignored, and so are currencies we don't support.
+     * @param file - path of the CSV file
+     * @return HistoricalRatesStore
+     */
+    public static HistoricalRatesStore load(Path file) {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            HistoricalRatesStore store = load(reader);
+            log.info("Loaded {} historical rates from {}", store.size(), file);
+            return store;
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Same as {@link #load(Path)}, reading the CSV lines from a reader
+     */
+    public static HistoricalRatesStore load(Reader reader) throws IOException {
+        List<List<ConversionRate>> ratesByPair = new ArrayList<>();
+        for (int i = 0; i < CURRENCIES.length * CURRENCIES.length; i++) {
+            ratesByPair.add(new ArrayList<>());
+        }
+        BufferedReader lines = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("date,")) {
+                continue;
+            }
+            String[] columns = line.split(",");
+            if (columns.length != 4) {
+                throw new IllegalArgumentException("Invalid rate on line " + lineNumber + ": " + line);
+            }
+            CurrencyEnum source = currencyOf(columns[1].trim());
+            CurrencyEnum target = currencyOf(columns[2].trim());
+            if (source == null || target == null) {
+                continue;
+            }
+            ratesByPair.get(index(source, target)).add(ConversionRate.builder()
+                    .date(LocalDate.parse(columns[0].trim()))
+                    .currency(Currency.getInstance(target.name()))
+                    .rate(columns[3].trim())
+                    .build());
+        }
+
+        PairHistory[] pairs = new PairHistory[ratesByPair.size()];
+        int size = 0;
+        for (int i = 0; i < pairs.length; i++) {
+            List<ConversionRate> rates = ratesByPair.get(i);
+            if (rates.isEmpty()) {
+                continue;
+            }
+            // ConversionRate sorts the most recent first, the arrays go from the oldest to the most recent
+            rates.sort(Comparator.reverseOrder());
+            int[] epochDays = new int[rates.size()];
+            Money.Factor[] factors = new Money.Factor[rates.size()];
+            String[] quotes = new String[rates.size()];
+            int count = 0;
+            for (ConversionRate rate : rates) {
+                int epochDay = (int) rate.getDate().toEpochDay();
+                // a date listed twice keeps the last rate loaded for it
+                if (count == 0 || epochDays[count - 1] != epochDay) {
+                    count++;
+                }
+                epochDays[count - 1] = epochDay;
+                factors[count - 1] = Money.Factor.parse(rate.getRate());
+                quotes[count - 1] = rate.getRate();
+            }
+            pairs[i] = new PairHistory(Arrays.copyOf(epochDays, count), Arrays.copyOf(factors, count), Arrays.copyOf(quotes, count));
+            size += count;
+        }
+        return new HistoricalRatesStore(pairs, size);
+    }
+
+    /**
+     * @return the latest rate on or before the date, or null if there is none
+     */
+    public ConversionRate getRate(CurrencyEnum source, CurrencyEnum target, LocalDate date) {
+        PairHistory history = pairs[index(source, target)];
+        int index = history == null ? -1 : history.floor((int) date.toEpochDay());
+        if (index < 0) {
+            return null;
+        }
+        return ConversionRate.builder()
+                .date(LocalDate.ofEpochDay(history.epochDays[index]))
+                .currency(Currency.getInstance(target.name()))
+                .rate(history.quotes[index])
+                .build();
+    }
+
+    /**
+     * Same as {@link #getRate}, returning the parsed rate without allocating anything
+     * @return the latest rate on or before the date, or null if there is none
+     */
+    public Money.Factor getFactor(CurrencyEnum source, CurrencyEnum target, LocalDate date) {
+        PairHistory history = pairs[index(source, target)];
+        int index = history == null ? -1 : history.floor((int) date.toEpochDay());
+        return index < 0 ? null : history.rates[index];
+    }
+
+    /**
+     * @return number of daily rates in the store
+     */
+    public int size() {
+        return size;
+    }
+
+    private static CurrencyEnum currencyOf(String code) {
+        for (CurrencyEnum currency : CURRENCIES) {
+            if (currency.name().equals(code)) {
+                return currency;
+            }
+        }
+        return null;
+    }
+
+    private static int index(CurrencyEnum source, CurrencyEnum target) {
+        return source.ordinal() * CURRENCIES.length + target.ordinal();
+    }
+}
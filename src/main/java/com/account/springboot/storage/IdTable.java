@@ -0,0 +1,153 @@
+package com.account.springboot.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/**
+ * Concurrent table of entries indexed by a dense int id (e.g. account ids), so finding an entry is an array
+ * lookup rather than hashing and comparing a key.
+ * <p>
+ * Like the {@link AppendOnlyJournal}, slots are kept in segments that double in size, so a table only takes the
+ * memory of the ids used so far and an id maps to its segment and offset in O(1). Segments are installed with a
+ * CAS and slots are read and written atomically, so readers never take a lock.
+ */
+public class IdTable<T> {
+
+    // a table can hold ids up to 2^MAX_CAPACITY_BITS - 2^firstSegmentBits
+    private static final int MAX_CAPACITY_BITS = 31;
+
+    private final int firstSegmentBits;
+    private final AtomicReferenceArray<AtomicReferenceArray<T>> segments;
+    private final AtomicInteger size = new AtomicInteger();
+    // every id with an entry is lower than this one, iterating stops there
+    private final AtomicInteger upperBound = new AtomicInteger();
+
+    public IdTable() {
+        this(10);
+    }
+
+    public IdTable(int firstSegmentBits) {
+        if (firstSegmentBits < 0 || firstSegmentBits >= MAX_CAPACITY_BITS) {
+            throw new IllegalArgumentException("Invalid segment size: " + firstSegmentBits);
+        }
+        this.firstSegmentBits = firstSegmentBits;
+        this.segments = new AtomicReferenceArray<>(MAX_CAPACITY_BITS - firstSegmentBits);
+    }
+
+    /**
+     * @param id - id of the entry
+     * @return the entry or null if there is none
+     */
+    public T get(int id) {
+        if (id < 0 || segmentOf(id) >= segments.length()) {
+            return null;
+        }
+        AtomicReferenceArray<T> slots = slotsOf(id, false);
+        return slots == null ? null : slots.get(offsetOf(id));
+    }
+
+    /**
+     * Sets (or replaces) the entry of an id
+     * @param id - id of the entry
+     * @param entry - entry, can't be null
+     */
+    public void set(int id, T entry) {
+        Objects.requireNonNull(entry);
+        if (slotsOf(id, true).getAndSet(offsetOf(id), entry) == null) {
+            added(id);
+        }
+    }
+
+    /**
+     * Sets the entry of an id, unless it has one already
+     * @param id - id of the entry
+     * @param entry - entry, can't be null
+     * @return the entry the id already had, or null if the new one was set
+     */
+    public T putIfAbsent(int id, T entry) {
+        Objects.requireNonNull(entry);
+        AtomicReferenceArray<T> slots = slotsOf(id, true);
+        int offset = offsetOf(id);
+        if (slots.compareAndSet(offset, null, entry)) {
+            added(id);
+            return null;
+        }
+        return slots.get(offset);
+    }
+
+    /**
+     * Gets the entry of an id, creating it if there is none (concurrent callers may create one each, only one
+     * of them is kept and returned to all of them)
+     * @param id - id of the entry
+     * @param factory - creates the entry of the id
+     * @return the entry of the id
+     */
+    public T computeIfAbsent(int id, IntFunction<T> factory) {
+        T entry = get(id);
+        if (entry != null) {
+            return entry;
+        }
+        T created = factory.apply(id);
+        T existing = putIfAbsent(id, created);
+        return existing != null ? existing : created;
+    }
+
+    /**
+     * @return number of ids with an entry
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Copies every entry to a list
+     * @return List<T> with the entries in id order
+     */
+    public List<T> values() {
+        List<T> values = new ArrayList<>(size());
+        int upTo = upperBound.get();
+        for (int id = 0; id < upTo; id++) {
+            T entry = get(id);
+            if (entry != null) {
+                values.add(entry);
+            }
+        }
+        return values;
+    }
+
+    private void added(int id) {
+        size.incrementAndGet();
+        upperBound.accumulateAndGet(id + 1, Math::max);
+    }
+
+    private int segmentOf(int id) {
+        long index = id + (1L << firstSegmentBits);
+        return 63 - Long.numberOfLeadingZeros(index) - firstSegmentBits;
+    }
+
+    private int offsetOf(int id) {
+        long index = id + (1L << firstSegmentBits);
+        return (int) (index - Long.highestOneBit(index));
+    }
+
+    private AtomicReferenceArray<T> slotsOf(int id, boolean create) {
+        if (id < 0) {
+            throw new IndexOutOfBoundsException("Invalid id: " + id);
+        }
+        int segment = segmentOf(id);
+        if (segment >= segments.length()) {
+            throw new IllegalStateException("Table is full");
+        }
+        AtomicReferenceArray<T> slots = segments.get(segment);
+        if (slots == null && create) {
+            // many writers may race to create the same segment, only one of them wins
+            segments.compareAndSet(segment, null, new AtomicReferenceArray<>(1 << (firstSegmentBits + segment)));
+            slots = segments.get(segment);
+        }
+        return slots;
+    }
+}
@@ -0,0 +1,319 @@
+package com.account.springboot.storage;
+
+import com.account.springboot.dto.AccountRequestDto;
+import com.account.springboot.models.Account;
+import com.account.springboot.models.Balance;
+import com.account.springboot.models.BalanceChange;
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.models.Transaction;
+import com.account.springboot.models.TransactionTypeEnum;
+import com.account.springboot.util.AccountIds;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Binary encoding of the ledger mutations written to the {@link WriteAheadLog}.
+ * Every record starts with a one byte {@link RecordType} followed by the full state of the account or transaction,
+ * so replaying the records in order always rebuilds the latest state. The records of one operation (e.g. the debit,
+ * the credit and the transaction of a send) are wrapped in a single {@link RecordType#COMMIT} record, so a crash
+ * never leaves half of it in the WAL. Operations only journal the balances they changed
+ * ({@link RecordType#BALANCE_CHANGED}), copied while they held their locks.
+ * <p>
+ * Records reference accounts by email: account ids only live in memory, so a codec translates them with
+ * the {@link AccountIds} of its ledger.
+ */
+public class LedgerRecordCodec {
+
+    // version of the record layout, to be bumped whenever it changes (the WAL rejects segments of another version)
+    public static final int FORMAT_VERSION = 4;
+
+    public enum RecordType {
+        ACCOUNT_ADDED,
+        ACCOUNT_UPSERTED,
+        TRANSACTION_ADDED,
+        // [count]([length][record])*, the records of one operation
+        COMMIT,
+        // [email][account updatedAt][balance], one balance of an account
+        BALANCE_CHANGED
+    }
+
+    private static final CurrencyEnum[] CURRENCIES = CurrencyEnum.values();
+    private static final TransactionTypeEnum[] TRANSACTION_TYPES = TransactionTypeEnum.values();
+    private static final RecordType[] RECORD_TYPES = RecordType.values();
+    // written for balances that were never paid interest
+    private static final int NO_MONTH = -1;
+    // written for transactions that didn't use exchange rates
+    private static final long NO_RATE_VERSION = -1;
+
+    private final AccountIds accountIds;
+
+    public LedgerRecordCodec(AccountIds accountIds) {
+        this.accountIds = accountIds;
+    }
+
+    public static byte[] encodeAccount(RecordType type, Account account) {
+        return encode(out -> {
+            out.writeByte(type.ordinal());
+            writeAccount(out, account);
+        });
+    }
+
+    public byte[] encodeTransaction(Transaction transaction) {
+        return encode(out -> {
+            out.writeByte(RecordType.TRANSACTION_ADDED.ordinal());
+            writeTransaction(out, transaction);
+        });
+    }
+
+    public byte[] encodeBalanceChange(BalanceChange change) {
+        return encode(out -> {
+            out.writeByte(RecordType.BALANCE_CHANGED.ordinal());
+            writeString(out, accountIds.email(change.getAccountId()));
+            writeDate(out, change.getAccountUpdatedAt());
+            writeBalance(out, change.getBalance());
+        });
+    }
+
+    /**
+     * Encodes the balances changed by an operation and its transactions as one record
+     * @param balances - new state of the balances changed by the operation
+     * @param transactions - transactions of the operation, in order
+     * @return the commit record
+     */
+    public byte[] encodeCommit(List<BalanceChange> balances, List<Transaction> transactions) {
+        return encode(out -> {
+            out.writeByte(RecordType.COMMIT.ordinal());
+            out.writeInt(balances.size() + transactions.size());
+            for (BalanceChange balance : balances) {
+                writeRecord(out, encodeBalanceChange(balance));
+            }
+            for (Transaction transaction : transactions) {
+                writeRecord(out, encodeTransaction(transaction));
+            }
+        });
+    }
+
+    /**
+     * Passes the account and transaction records of a WAL record to the consumer, in order: the records wrapped
+     * in a commit record, or the record itself
+     * @param record - WAL record, positioned at its type
+     * @param consumer - receives every account or transaction record, positioned at its type
+     */
+    public static void unpack(ByteBuffer record, Consumer<ByteBuffer> consumer) {
+        ByteBuffer in = record.duplicate();
+        if (readType(in) != RecordType.COMMIT) {
+            consumer.accept(record);
+            return;
+        }
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            int length = in.getInt();
+            consumer.accept(in.slice(in.position(), length));
+            in.position(in.position() + length);
+        }
+    }
+
+    public static RecordType readType(ByteBuffer record) {
+        return RECORD_TYPES[record.get()];
+    }
+
+    /**
+     * Reads the email of an account (or balance) record without moving the record position
+     * @param record - account or balance record, positioned at its type
+     * @return email of the account
+     */
+    public static String peekEmail(ByteBuffer record) {
+        ByteBuffer in = record.duplicate();
+        in.get();
+        return readString(in);
+    }
+
+    public static Account readAccount(ByteBuffer in) {
+        Account account = new Account(new AccountRequestDto(readString(in)));
+        account.setCreatedAt(readDate(in));
+        account.setUpdatedAt(readDate(in));
+        int balanceCount = in.get();
+        ConcurrentMap<CurrencyEnum, Balance> balances = new ConcurrentHashMap<>();
+        for (int i = 0; i < balanceCount; i++) {
+            Balance balance = readBalance(in);
+            balances.put(balance.getCurrency(), balance);
+        }
+        account.setBalances(balances);
+        return account;
+    }
+
+    /**
+     * Decodes a balance record as a partial account, with its last update and the changed balance only
+     * @param in - record positioned after its type
+     * @return Account
+     */
+    public static Account readBalanceChange(ByteBuffer in) {
+        Account account = new Account(new AccountRequestDto(readString(in)));
+        account.setUpdatedAt(readDate(in));
+        Balance balance = readBalance(in);
+        account.getBalances().put(balance.getCurrency(), balance);
+        return account;
+    }
+
+    /**
+     * Decodes a transaction, its accounts must already be in the ledger
+     * @param in - record positioned after its type
+     * @return Transaction
+     */
+    public Transaction readTransaction(ByteBuffer in) {
+        return Transaction.builder()
+                .fromAccountId(idOf(readString(in)))
+                .toAccountId(idOf(readString(in)))
+                .fromCurrency(CURRENCIES[in.get()])
+                .fromAmountMinor(in.getLong())
+                .toCurrency(CURRENCIES[in.get()])
+                .toAmountMinor(in.getLong())
+                .serviceCurrency(CURRENCIES[in.get()])
+                .serviceFeeAmountMinor(in.getLong())
+                .type(TRANSACTION_TYPES[in.get()])
+                .createdAt(readDate(in))
+                .rateVersion(readRateVersion(in))
+                .build();
+    }
+
+    static void writeAccount(DataOutputStream out, Account account) throws IOException {
+        writeString(out, account.getEmail());
+        writeDate(out, account.getCreatedAt());
+        writeDate(out, account.getUpdatedAt());
+        // copying first, so the count matches the balances even if one is being added concurrently
+        Balance[] balances = account.getBalances().values().toArray(new Balance[0]);
+        out.writeByte(balances.length);
+        for (Balance balance : balances) {
+            writeBalance(out, balance);
+        }
+    }
+
+    private static void writeBalance(DataOutputStream out, Balance balance) throws IOException {
+        out.writeByte(balance.getCurrency().ordinal());
+        out.writeLong(balance.getAmountMinor());
+        writeDecimal(out, balance.getYearlyInterestRate());
+        writeDate(out, balance.getCreatedAt());
+        writeDate(out, balance.getUpdatedAt());
+        out.writeInt(balance.getLastInterestPayout() == null ? NO_MONTH
+                : balance.getLastInterestPayout().getYear() * 12 + balance.getLastInterestPayout().getMonthValue() - 1);
+        out.writeLong(balance.getAccrualStartDay());
+        out.writeLong(balance.getAccruedToDay());
+        out.writeLong(balance.getAccruedAmountDays());
+        out.writeLong(balance.getAccruedAmountDaysHigh());
+    }
+
+    private static Balance readBalance(ByteBuffer in) {
+        CurrencyEnum currency = CURRENCIES[in.get()];
+        return Balance.builder()
+                .currency(currency)
+                .amountMinor(in.getLong())
+                .yearlyInterestRate(readDecimal(in))
+                .createdAt(readDate(in))
+                .updatedAt(readDate(in))
+                .lastInterestPayout(readMonth(in))
+                .accrualStartDay(in.getLong())
+                .accruedToDay(in.getLong())
+                .accruedAmountDays(in.getLong())
+                .accruedAmountDaysHigh(in.getLong())
+                .build();
+    }
+
+    private int idOf(String email) {
+        int id = accountIds.find(email);
+        if (id == AccountIds.NONE) {
+            throw new IllegalStateException("Transaction record of an unknown account: " + email);
+        }
+        return id;
+    }
+
+    private void writeTransaction(DataOutputStream out, Transaction transaction) throws IOException {
+        writeString(out, accountIds.email(transaction.getFromAccountId()));
+        writeString(out, accountIds.email(transaction.getToAccountId()));
+        out.writeByte(transaction.getFromCurrency().ordinal());
+        out.writeLong(transaction.getFromAmountMinor());
+        out.writeByte(transaction.getToCurrency().ordinal());
+        out.writeLong(transaction.getToAmountMinor());
+        out.writeByte(transaction.getServiceCurrency().ordinal());
+        out.writeLong(transaction.getServiceFeeAmountMinor());
+        out.writeByte(transaction.getType().ordinal());
+        writeDate(out, transaction.getCreatedAt());
+        out.writeLong(transaction.getRateVersion() == null ? NO_RATE_VERSION : transaction.getRateVersion());
+    }
+
+    @FunctionalInterface
+    interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    static byte[] encode(Writer writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeRecord(DataOutputStream out, byte[] record) throws IOException {
+        out.writeInt(record.length);
+        out.write(record);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDate(DataOutputStream out, LocalDate date) throws IOException {
+        out.writeLong(date.toEpochDay());
+    }
+
+    private static LocalDate readDate(ByteBuffer in) {
+        return LocalDate.ofEpochDay(in.getLong());
+    }
+
+    private static YearMonth readMonth(ByteBuffer in) {
+        int month = in.getInt();
+        return month == NO_MONTH ? null : YearMonth.of(month / 12, month % 12 + 1);
+    }
+
+    private static Long readRateVersion(ByteBuffer in) {
+        long version = in.getLong();
+        return version == NO_RATE_VERSION ? null : version;
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        out.writeInt(value.scale());
+        out.writeByte(unscaled.length);
+        out.write(unscaled);
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer in) {
+        int scale = in.getInt();
+        byte[] unscaled = new byte[in.get() & 0xFF];
+        in.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+}
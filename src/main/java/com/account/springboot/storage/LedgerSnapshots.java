@@ -0,0 +1,242 @@
+package com.account.springboot.storage;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact binary snapshots of the ledger, taken at a given WAL LSN.
+ * <p>
+ * A snapshot holds the latest account record of every account and every transaction record, both in the
+ * {@link LedgerRecordCodec} format, so restoring it is the same as replaying the WAL up to its LSN.
+ * Files are written to a temporary file, forced to disk and then renamed, and end with a checksum, so a
+ * crash while taking a snapshot never leaves a half written one behind.
+ * <p>
+ * The transactions are the last section of a file, so a new snapshot copies the transactions of the previous one
+ * as a single block of bytes and only appends the new ones: taking a snapshot never decodes (nor holds on the heap)
+ * the whole history.
+ */
+@Slf4j
+public class LedgerSnapshots {
+
+    private static final int MAGIC = 0x4C534E50; // "LSNP"
+    private static final int VERSION = 6;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    public static class Snapshot {
+        // every WAL record up to this LSN is in the snapshot
+        @Getter
+        private final long lsn;
+        @Getter
+        private final List<ByteBuffer> accounts;
+        @Getter
+        private final int transactionCount;
+        // the transaction records as they are framed in the file, read straight from the mapped file
+        private final ByteBuffer transactionRecords;
+
+        Snapshot(long lsn, List<ByteBuffer> accounts, int transactionCount, ByteBuffer transactionRecords) {
+            this.lsn = lsn;
+            this.accounts = accounts;
+            this.transactionCount = transactionCount;
+            this.transactionRecords = transactionRecords;
+        }
+
+        /**
+         * @return every transaction record, in order (one buffer per transaction, e.g. to restore them)
+         */
+        public List<ByteBuffer> getTransactions() {
+            ByteBuffer buffer = transactionRecords.duplicate();
+            List<ByteBuffer> transactions = new ArrayList<>(transactionCount);
+            for (int i = 0; i < transactionCount; i++) {
+                transactions.add(readRecord(buffer));
+            }
+            return transactions;
+        }
+    }
+
+    private final Path directory;
+
+    public LedgerSnapshots(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Loads the most recent valid snapshot, records are read straight from the mapped file
+     * @return the snapshot or empty if there is none
+     */
+    public Optional<Snapshot> loadLatest() {
+        List<Path> files = listSnapshots();
+        for (int i = files.size() - 1; i >= 0; i--) {
+            try {
+                return Optional.of(read(files.get(i), true));
+            } catch (IOException | RuntimeException exception) {
+                log.warn("Ignoring invalid snapshot {}", files.get(i), exception);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Writes a new snapshot
+     * @param lsn - LSN of the last WAL record in the snapshot
+     * @param accounts - latest record of every account
+     * @param previous - snapshot whose transactions are copied first, if any
+     * @param transactions - every transaction record after the previous snapshot, in order
+     * @return the new snapshot, read from the file that was just written
+     */
+    public Snapshot write(long lsn, Collection<ByteBuffer> accounts, Optional<Snapshot> previous, List<ByteBuffer> transactions) {
+        Path target = directory.resolve(fileName(lsn));
+        Path temporary = directory.resolve(fileName(lsn) + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), new CRC32C());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(lsn);
+            out.writeInt(accounts.size());
+            out.writeInt(previous.map(Snapshot::getTransactionCount).orElse(0) + transactions.size());
+            for (ByteBuffer account : accounts) {
+                writeRecord(out, account);
+            }
+            if (previous.isPresent()) {
+                writeBytes(out, previous.get().transactionRecords.duplicate());
+            }
+            for (ByteBuffer transaction : transactions) {
+                writeRecord(out, transaction);
+            }
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            channel.force(true);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+            // it was just forced to disk, no need to check it again
+            return read(target, false);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Deletes old snapshots, keeping the most recent ones
+     * @param keep - number of snapshots to keep
+     * @return LSN of the oldest snapshot kept, the WAL can be truncated up to it
+     */
+    public long deleteOldSnapshots(int keep) {
+        List<Path> files = listSnapshots();
+        for (int i = 0; i < files.size() - keep; i++) {
+            try {
+                Files.deleteIfExists(files.get(i));
+            } catch (IOException exception) {
+                log.warn("Could not delete snapshot {}", files.get(i), exception);
+            }
+        }
+        return files.isEmpty() ? 0 : lsnOf(files.get(Math.max(0, files.size() - keep)));
+    }
+
+    private Snapshot read(Path file, boolean verify) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        // checking the whole file before using any of it
+        if (verify) {
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(0, buffer.limit() - Long.BYTES));
+            if (buffer.getLong(buffer.limit() - Long.BYTES) != crc.getValue()) {
+                throw new IOException("Snapshot checksum doesn't match");
+            }
+        }
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Unknown snapshot format");
+        }
+        long lsn = buffer.getLong();
+        int accountCount = buffer.getInt();
+        int transactionCount = buffer.getInt();
+        List<ByteBuffer> accounts = new ArrayList<>(accountCount);
+        for (int i = 0; i < accountCount; i++) {
+            accounts.add(readRecord(buffer));
+        }
+        // the transactions run up to the checksum
+        ByteBuffer transactionRecords = buffer.slice(buffer.position(), buffer.limit() - Long.BYTES - buffer.position());
+        return new Snapshot(lsn, accounts, transactionCount, transactionRecords);
+    }
+
+    private static void writeRecord(DataOutputStream out, ByteBuffer record) throws IOException {
+        ByteBuffer source = record.duplicate();
+        out.writeInt(source.remaining());
+        writeBytes(out, source);
+    }
+
+    private static void writeBytes(OutputStream out, ByteBuffer source) throws IOException {
+        if (source.hasArray()) {
+            out.write(source.array(), source.arrayOffset() + source.position(), source.remaining());
+            return;
+        }
+        byte[] chunk = new byte[Math.min(source.remaining(), 8192)];
+        while (source.hasRemaining()) {
+            int length = Math.min(chunk.length, source.remaining());
+            source.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+    }
+
+    private static ByteBuffer readRecord(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        ByteBuffer record = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return record;
+    }
+
+    private List<Path> listSnapshots() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private static String fileName(long lsn) {
+        return String.format("%s%020d%s", PREFIX, lsn, SUFFIX);
+    }
+
+    private static long lsnOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
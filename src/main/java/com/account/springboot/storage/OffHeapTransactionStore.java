@@ -0,0 +1,280 @@
+package com.account.springboot.storage;
+
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.models.Transaction;
+import com.account.springboot.models.TransactionTypeEnum;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the transactions off the heap, in fixed-width columns of direct {@link ByteBuffer}s, so hundreds of
+ * millions of transactions don't leave hundreds of millions of objects for the garbage collector to trace.
+ * <p>
+ * Every transaction is a row: rows are stored in segments of {@code segmentRows} rows, and every column of a segment
+ * (account ids, currencies, type, minor-unit amounts, rate version, day) is a direct buffer holding one value per
+ * row, {@value #ROW_BYTES} bytes per transaction overall. The history of an account is an array of row numbers, which
+ * the collector doesn't look into either. {@link Transaction} objects are only created when they are read, one per
+ * row returned, and are garbage as soon as the response is written.
+ * <p>
+ * Appends are serialized by a lock (a row is a few memory writes) and published with a volatile write, so readers
+ * never take the lock and only see the rows published before they started.
+ * <p>
+ * The store has a single writer: the lock is store-wide, since rows are numbered in one sequence and a transfer adds
+ * a row to the histories of two accounts. With the sharded engine every shard appends through it, so the journaling
+ * step is serialized again across shards (the balances are still updated in parallel), and the append rate is
+ * bounded by a single thread. Ledgers that need more than that keep the transactions on the heap, whose journals
+ * are lock-free.
+ */
+public class OffHeapTransactionStore implements TransactionStore {
+
+    static final int ROW_BYTES = 2 * Integer.BYTES + 4 + 4 * Long.BYTES + Integer.BYTES;
+
+    private static final CurrencyEnum[] CURRENCIES = CurrencyEnum.values();
+    private static final TransactionTypeEnum[] TYPES = TransactionTypeEnum.values();
+    // stored instead of null values
+    private static final byte NO_ENUM = -1;
+    private static final long NO_RATE_VERSION = Long.MIN_VALUE;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    // histories start small, most customers only have a few transactions
+    private static final int FIRST_HISTORY_CAPACITY = 4;
+
+    /**
+     * Columns of segmentRows rows, values are read and written at absolute indexes
+     */
+    private static final class Segment {
+        private final ByteBuffer fromAccountIds;
+        private final ByteBuffer toAccountIds;
+        private final ByteBuffer fromCurrencies;
+        private final ByteBuffer toCurrencies;
+        private final ByteBuffer serviceCurrencies;
+        private final ByteBuffer types;
+        private final ByteBuffer fromAmounts;
+        private final ByteBuffer toAmounts;
+        private final ByteBuffer serviceFees;
+        private final ByteBuffer rateVersions;
+        // epoch day of the transaction
+        private final ByteBuffer days;
+
+        private Segment(int rows) {
+            fromAccountIds = column(rows, Integer.BYTES);
+            toAccountIds = column(rows, Integer.BYTES);
+            fromCurrencies = column(rows, Byte.BYTES);
+            toCurrencies = column(rows, Byte.BYTES);
+            serviceCurrencies = column(rows, Byte.BYTES);
+            types = column(rows, Byte.BYTES);
+            fromAmounts = column(rows, Long.BYTES);
+            toAmounts = column(rows, Long.BYTES);
+            serviceFees = column(rows, Long.BYTES);
+            rateVersions = column(rows, Long.BYTES);
+            days = column(rows, Integer.BYTES);
+        }
+
+        private static ByteBuffer column(int rows, int width) {
+            return ByteBuffer.allocateDirect(rows * width).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Row numbers of the transactions of an account, only changed while holding the store lock
+     */
+    private static final class History {
+        private int[] rows = new int[FIRST_HISTORY_CAPACITY];
+        // rows below it are published, written after the row (and the grown array) so readers see both
+        private volatile int size;
+
+        private void add(int row) {
+            int current = size;
+            if (current == rows.length) {
+                rows = Arrays.copyOf(rows, current * 2);
+            }
+            rows[current] = row;
+            size = current + 1;
+        }
+    }
+
+    private final int segmentBits;
+    private final int segmentMask;
+    // store-wide, taken by every append whatever shard it comes from
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Segment[] segments = new Segment[0];
+    // rows below it are written
+    private volatile long size;
+    private final IdTable<History> histories = new IdTable<>();
+
+    /**
+     * @param segmentRows - rows per segment, a power of two
+     */
+    public OffHeapTransactionStore(int segmentRows) {
+        if (segmentRows <= 0 || Integer.bitCount(segmentRows) != 1 || segmentRows > (1 << 24)) {
+            throw new IllegalArgumentException("Segment rows must be a power of two up to 2^24: " + segmentRows);
+        }
+        this.segmentBits = Integer.numberOfTrailingZeros(segmentRows);
+        this.segmentMask = segmentRows - 1;
+    }
+
+    @Override
+    public void add(Transaction transaction) {
+        lock.lock();
+        try {
+            append(transaction);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void addAll(List<Transaction> transactions) {
+        lock.lock();
+        try {
+            transactions.forEach(this::append);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public int indexedAccounts() {
+        return histories.size();
+    }
+
+    /**
+     * @return bytes allocated off the heap
+     */
+    public long offHeapBytes() {
+        return (long) segments.length * (segmentMask + 1) * ROW_BYTES;
+    }
+
+    @Override
+    public List<Transaction> get(int accountId, long fromPosition, int limit) {
+        History history = histories.get(accountId);
+        if (history == null) {
+            return new ArrayList<>();
+        }
+        int size = history.size;
+        int[] rows = history.rows;
+        int from = (int) Math.max(0, Math.min(fromPosition, size));
+        int to = (int) Math.min(size, from + (long) limit);
+        List<Transaction> transactions = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            transactions.add(read(rows[i]));
+        }
+        return transactions;
+    }
+
+    @Override
+    public List<Transaction> getAll(int accountId) {
+        return get(accountId, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Iterator<Transaction> iterator(int accountId) {
+        History history = histories.get(accountId);
+        if (history == null) {
+            return Collections.emptyIterator();
+        }
+        int size = history.size;
+        int[] rows = history.rows;
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Transaction next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return read(rows[next++]);
+            }
+        };
+    }
+
+    // called while holding the lock
+    private void append(Transaction transaction) {
+        long current = size;
+        if (current == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Transaction store is full");
+        }
+        int row = (int) current;
+        Segment segment = segmentFor(row);
+        int offset = row & segmentMask;
+        segment.fromAccountIds.putInt(offset * Integer.BYTES, transaction.getFromAccountId());
+        segment.toAccountIds.putInt(offset * Integer.BYTES, transaction.getToAccountId());
+        segment.fromCurrencies.put(offset, ordinal(transaction.getFromCurrency()));
+        segment.toCurrencies.put(offset, ordinal(transaction.getToCurrency()));
+        segment.serviceCurrencies.put(offset, ordinal(transaction.getServiceCurrency()));
+        segment.types.put(offset, ordinal(transaction.getType()));
+        segment.fromAmounts.putLong(offset * Long.BYTES, transaction.getFromAmountMinor());
+        segment.toAmounts.putLong(offset * Long.BYTES, transaction.getToAmountMinor());
+        segment.serviceFees.putLong(offset * Long.BYTES, transaction.getServiceFeeAmountMinor());
+        segment.rateVersions.putLong(offset * Long.BYTES,
+                transaction.getRateVersion() == null ? NO_RATE_VERSION : transaction.getRateVersion());
+        segment.days.putInt(offset * Integer.BYTES,
+                transaction.getCreatedAt() == null ? NO_DATE : (int) transaction.getCreatedAt().toEpochDay());
+
+        // transfers are listed for both the sender and the receiver, but swaps, deposits
+        // and interest payouts have the same account on both sides and are listed only once
+        histories.computeIfAbsent(transaction.getFromAccountId(), key -> new History()).add(row);
+        if (transaction.getToAccountId() != transaction.getFromAccountId()) {
+            histories.computeIfAbsent(transaction.getToAccountId(), key -> new History()).add(row);
+        }
+        size = current + 1;
+    }
+
+    private Segment segmentFor(int row) {
+        int index = row >>> segmentBits;
+        Segment[] current = segments;
+        if (index < current.length) {
+            return current[index];
+        }
+        Segment[] grown = Arrays.copyOf(current, index + 1);
+        grown[index] = new Segment(segmentMask + 1);
+        segments = grown;
+        return grown[index];
+    }
+
+    private Transaction read(int row) {
+        Segment segment = segments[row >>> segmentBits];
+        int offset = row & segmentMask;
+        long rateVersion = segment.rateVersions.getLong(offset * Long.BYTES);
+        int day = segment.days.getInt(offset * Integer.BYTES);
+        return Transaction.builder()
+                .fromAccountId(segment.fromAccountIds.getInt(offset * Integer.BYTES))
+                .toAccountId(segment.toAccountIds.getInt(offset * Integer.BYTES))
+                .fromCurrency(valueOf(CURRENCIES, segment.fromCurrencies.get(offset)))
+                .toCurrency(valueOf(CURRENCIES, segment.toCurrencies.get(offset)))
+                .serviceCurrency(valueOf(CURRENCIES, segment.serviceCurrencies.get(offset)))
+                .type(valueOf(TYPES, segment.types.get(offset)))
+                .fromAmountMinor(segment.fromAmounts.getLong(offset * Long.BYTES))
+                .toAmountMinor(segment.toAmounts.getLong(offset * Long.BYTES))
+                .serviceFeeAmountMinor(segment.serviceFees.getLong(offset * Long.BYTES))
+                .rateVersion(rateVersion == NO_RATE_VERSION ? null : rateVersion)
+                .createdAt(day == NO_DATE ? null : LocalDate.ofEpochDay(day))
+                .build();
+    }
+
+    private static byte ordinal(Enum<?> value) {
+        return value == null ? NO_ENUM : (byte) value.ordinal();
+    }
+
+    private static <E> E valueOf(E[] values, byte ordinal) {
+        return ordinal == NO_ENUM ? null : values[ordinal];
+    }
+}
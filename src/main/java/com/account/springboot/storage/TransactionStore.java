@@ -0,0 +1,58 @@
+package com.account.springboot.storage;
+
+import com.account.springboot.models.Transaction;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Where the in-memory ledger keeps its transactions, in the order they were added, with the history of every
+ * account (by account id) so it doesn't need to scan through the transactions of every other account.
+ */
+public interface TransactionStore {
+
+    /**
+     * Adds a transaction to the end of the store and to the history of its accounts
+     * @param transaction - transaction to be added
+     */
+    void add(Transaction transaction);
+
+    /**
+     * Adds many transactions at once, in order (e.g. a batch)
+     * @param transactions - transactions to be added
+     */
+    void addAll(List<Transaction> transactions);
+
+    /**
+     * @return number of transactions in the store
+     */
+    long size();
+
+    /**
+     * @return number of accounts with at least one transaction
+     */
+    int indexedAccounts();
+
+    /**
+     * Gets a page of the history of an account
+     * @param accountId - id of the account
+     * @param fromPosition - position (in the account history) of the first transaction to be returned
+     * @param limit - max number of transactions to be returned
+     * @return List<Transaction> in the order they were added
+     */
+    List<Transaction> get(int accountId, long fromPosition, int limit);
+
+    /**
+     * Gets the whole history of an account
+     * @param accountId - id of the account
+     * @return List<Transaction> in the order they were added
+     */
+    List<Transaction> getAll(int accountId);
+
+    /**
+     * Iterates over the history of an account (as it was when the iterator was created) without copying it
+     * @param accountId - id of the account
+     * @return Iterator<Transaction> in the order they were added
+     */
+    Iterator<Transaction> iterator(int accountId);
+}
@@ -0,0 +1,494 @@
+package com.account.springboot.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of records stored in fixed size, memory-mapped segment files.
+ * <p>
+ * Every record is framed as {@code [length][crc32c][payload]} and identified by its LSN (log sequence number),
+ * the global byte offset right after the record. A segment file is named after the LSN of its first byte, so
+ * the segments can be replayed in order and the ones that are no longer needed can be deleted as a whole.
+ * Every segment starts with a {@code [magic][format version]} header, the version is the one of the record
+ * layout chosen by the owner of the log: segments written with another layout (or before segments had a header)
+ * are rejected instead of being misread.
+ * <p>
+ * Appending only copies the record into the mapped segment. Durability is provided by {@link #awaitDurable(long)},
+ * which hands the fsync over to a single flusher thread: every writer waiting while a flush is running is
+ * released by the next flush, so many concurrent requests share one fsync (group commit).
+ * <p>
+ * If a flush fails the log can no longer tell what reached the disk, so it fails for good: the writers waiting
+ * for it and every later append get an exception instead of waiting forever.
+ * <p>
+ * The log ends at its first torn or missing record, even if it isn't in the last segment (the pages of a segment can
+ * reach the disk before the ones of the previous segment): the records after it can't be replayed without the ones
+ * that are missing, so reopening the log truncates it there and quarantines the later segments.
+ */
+@Slf4j
+public class WriteAheadLog implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    // given to the segments found after a torn record, kept for inspection but never replayed
+    private static final String QUARANTINE_SUFFIX = ".corrupt";
+    private static final int SEGMENT_MAGIC = 0x4C57414C; // "LWAL"
+    private static final int SEGMENT_HEADER_SIZE = Integer.BYTES * 2;
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+    // written when a record doesn't fit at the end of a segment, the next record is on the next segment
+    private static final int END_OF_SEGMENT = -1;
+
+    /**
+     * Receives the records while the log is replayed
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(long lsn, ByteBuffer payload);
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int formatVersion;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private MappedByteBuffer segment;
+    private long segmentBaseLsn;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Condition flushRequested = flushLock.newCondition();
+    private final Condition flushCompleted = flushLock.newCondition();
+    // segments that were filled up and still have to be forced to disk
+    private final List<MappedByteBuffer> filledSegments = new ArrayList<>();
+    private volatile long writtenLsn;
+    private volatile long durableLsn;
+    private long requestedLsn;
+    private volatile boolean closed;
+    // why the log stopped working (a flush failed), null while it works
+    private volatile RuntimeException failure;
+    private final Thread flusher;
+
+    /**
+     * @param directory - directory of the segment files
+     * @param segmentSize - size of every segment file in bytes
+     * @param formatVersion - version of the record layout, written in every segment and checked when reading one
+     */
+    public WriteAheadLog(Path directory, int segmentSize, int formatVersion) {
+        if (segmentSize <= SEGMENT_HEADER_SIZE + HEADER_SIZE * 2) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.formatVersion = formatVersion;
+        try {
+            Files.createDirectories(directory);
+            openLastSegment();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        this.durableLsn = writtenLsn;
+        this.flusher = new Thread(this::flushLoop, "wal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Appends a record to the log, it is not durable until {@link #awaitDurable(long)} returns
+     * @param encoder - builds the record payload, it runs while holding the append lock so records
+     *                are written in the same order their payloads were built
+     * @return LSN of the record
+     */
+    public long append(Supplier<byte[]> encoder) {
+        appendLock.lock();
+        try {
+            ensureOpen();
+            byte[] payload = encoder.get();
+            int recordSize = HEADER_SIZE + payload.length;
+            if (recordSize > segmentSize - Integer.BYTES) {
+                throw new IllegalArgumentException("Record is larger than a segment: " + payload.length);
+            }
+            if (segment.remaining() < recordSize) {
+                rollSegment();
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            segment.putInt(payload.length);
+            segment.putInt((int) crc.getValue());
+            segment.put(payload);
+            long lsn = segmentBaseLsn + segment.position();
+            writtenLsn = lsn;
+            return lsn;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until every record up to the given LSN was forced to disk
+     * @param lsn - LSN returned by append
+     */
+    public void awaitDurable(long lsn) {
+        if (durableLsn >= lsn) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            if (lsn > requestedLsn) {
+                requestedLsn = lsn;
+                flushRequested.signal();
+            }
+            while (durableLsn < lsn) {
+                ensureOpen();
+                flushCompleted.awaitUninterruptibly();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Reads every valid record starting at the given LSN, the first torn record ends the replay
+     * @param fromLsn - records ending after this LSN are replayed
+     * @param consumer - receives every record
+     */
+    public void replay(long fromLsn, RecordConsumer consumer) {
+        replay(fromLsn, Long.MAX_VALUE, consumer);
+    }
+
+    /**
+     * Reads every valid record in the (fromLsn, toLsn] range
+     * @param fromLsn - records ending after this LSN are replayed
+     * @param toLsn - records ending after this LSN are not replayed
+     * @param consumer - receives every record
+     */
+    public void replay(long fromLsn, long toLsn, RecordConsumer consumer) {
+        List<Path> segments = listSegments();
+        for (int i = 0; i < segments.size(); i++) {
+            long baseLsn = baseLsnOf(segments.get(i));
+            if (i + 1 < segments.size() && baseLsnOf(segments.get(i + 1)) <= fromLsn) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (!readSegmentHeader(segments.get(i), buffer)) {
+                    // created but never written, the log ends here
+                    return;
+                }
+                while (true) {
+                    ByteBuffer payload = nextRecord(buffer);
+                    if (payload == null) {
+                        if (endsCleanly(buffer)) {
+                            break;
+                        }
+                        // a torn or missing record, nothing after it can be trusted
+                        return;
+                    }
+                    long lsn = baseLsn + buffer.position();
+                    if (lsn > toLsn) {
+                        return;
+                    }
+                    if (lsn > fromLsn) {
+                        consumer.accept(lsn, payload);
+                    }
+                }
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+    }
+
+    /**
+     * Deletes the segments whose records all end before the given LSN
+     * @param lsn - every record up to this LSN is no longer needed
+     */
+    public void truncateBefore(long lsn) {
+        List<Path> segments = listSegments();
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            // the last record of a segment ends before the next segment starts
+            if (baseLsnOf(segments.get(i + 1)) > lsn) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(segments.get(i));
+            } catch (IOException exception) {
+                log.warn("Could not delete WAL segment {}", segments.get(i), exception);
+            }
+        }
+    }
+
+    /**
+     * @return LSN of the last appended record
+     */
+    public long getWrittenLsn() {
+        return writtenLsn;
+    }
+
+    /**
+     * @return LSN of the last record forced to disk
+     */
+    public long getDurableLsn() {
+        return durableLsn;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        // flushing whatever was written before closing (nothing more can be flushed once the log failed)
+        if (failure == null) {
+            awaitDurable(writtenLsn);
+        }
+        flushLock.lock();
+        try {
+            closed = true;
+            flushRequested.signalAll();
+            flushCompleted.signalAll();
+        } finally {
+            flushLock.unlock();
+        }
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long target;
+            flushLock.lock();
+            try {
+                while (!closed && requestedLsn <= durableLsn) {
+                    flushRequested.awaitUninterruptibly();
+                }
+                if (closed) {
+                    return;
+                }
+            } finally {
+                flushLock.unlock();
+            }
+            // everything appended so far goes in this flush, including records of writers that didn't ask yet
+            List<MappedByteBuffer> toForce;
+            MappedByteBuffer current;
+            appendLock.lock();
+            try {
+                target = writtenLsn;
+                toForce = new ArrayList<>(filledSegments);
+                filledSegments.clear();
+                current = segment;
+            } finally {
+                appendLock.unlock();
+            }
+            try {
+                toForce.forEach(this::force);
+                force(current);
+            } catch (RuntimeException exception) {
+                log.error("Could not flush the WAL, rejecting every write from now on", exception);
+                flushLock.lock();
+                try {
+                    failure = exception;
+                    flushCompleted.signalAll();
+                } finally {
+                    flushLock.unlock();
+                }
+                return;
+            }
+            flushLock.lock();
+            try {
+                durableLsn = target;
+                flushCompleted.signalAll();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    // forces a segment to disk
+    void force(MappedByteBuffer buffer) {
+        buffer.force();
+    }
+
+    private void openLastSegment() throws IOException {
+        List<Path> segments = listSegments();
+        if (segments.isEmpty()) {
+            mapSegment(0);
+            return;
+        }
+        // the log ends in the first segment that doesn't end cleanly, the segments after it are set aside
+        int lastIndex = segments.size() - 1;
+        for (int i = 0; i < lastIndex; i++) {
+            if (!endsCleanly(segments.get(i))) {
+                lastIndex = i;
+                break;
+            }
+        }
+        for (int i = lastIndex + 1; i < segments.size(); i++) {
+            quarantine(segments.get(i));
+        }
+        Path last = segments.get(lastIndex);
+        mapSegment(baseLsnOf(last));
+        // moving to the end of the valid records, anything after it is a torn write and gets overwritten
+        while (nextRecord(segment) != null) {
+            writtenLsn = segmentBaseLsn + segment.position();
+        }
+        eraseAfterEnd();
+        if (writtenLsn == 0 && segmentBaseLsn > 0) {
+            writtenLsn = segmentBaseLsn;
+        }
+    }
+
+    // zeroes whatever follows the end of the log in its last segment (e.g. the records after a missing one), so none
+    // of it can be read as a valid record once new records are appended over the torn one
+    private void eraseAfterEnd() {
+        int end = segment.position();
+        int last = segment.limit() - 1;
+        while (last >= end && segment.get(last) == 0) {
+            last--;
+        }
+        if (last < end) {
+            return;
+        }
+        for (int i = end; i <= last; i++) {
+            segment.put(i, (byte) 0);
+        }
+        force(segment);
+    }
+
+    // whether every record of a filled segment is valid, up to the end of the segment
+    private boolean endsCleanly(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (!readSegmentHeader(path, buffer)) {
+                return false;
+            }
+            while (nextRecord(buffer) != null) {
+                // skipping to the end of the valid records
+            }
+            return endsCleanly(buffer);
+        }
+    }
+
+    // whether the buffer, positioned right after the last valid record of a segment, is at the end of the segment
+    // rather than at a torn or missing record
+    private static boolean endsCleanly(ByteBuffer buffer) {
+        return buffer.remaining() < Integer.BYTES || buffer.getInt(buffer.position()) == END_OF_SEGMENT;
+    }
+
+    private void quarantine(Path segment) throws IOException {
+        Path target = segment.resolveSibling(segment.getFileName() + QUARANTINE_SUFFIX);
+        log.error("WAL segment {} comes after a torn record, moving it to {}", segment, target);
+        Files.move(segment, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void rollSegment() {
+        if (segment.remaining() >= Integer.BYTES) {
+            segment.putInt(END_OF_SEGMENT);
+        }
+        filledSegments.add(segment);
+        try {
+            mapSegment(segmentBaseLsn + segmentSize);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private void mapSegment(long baseLsn) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", baseLsn, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        if (!readSegmentHeader(path, segment)) {
+            // a new segment, the records start right after its header
+            segment.putInt(SEGMENT_MAGIC);
+            segment.putInt(formatVersion);
+        }
+        segmentBaseLsn = baseLsn;
+    }
+
+    // checks the header of a segment and leaves the position on its first record,
+    // returns false (and leaves the position untouched) if the segment was never written
+    private boolean readSegmentHeader(Path path, ByteBuffer buffer) {
+        if (buffer.remaining() < SEGMENT_HEADER_SIZE) {
+            return false;
+        }
+        int magic = buffer.getInt(buffer.position());
+        int version = buffer.getInt(buffer.position() + Integer.BYTES);
+        if (magic == 0 && version == 0) {
+            return false;
+        }
+        if (magic != SEGMENT_MAGIC) {
+            throw new IllegalStateException("WAL segment " + path + " has no header, it was written by an older version");
+        }
+        if (version != formatVersion) {
+            throw new IllegalStateException("WAL segment " + path + " has format version " + version
+                    + ", expected " + formatVersion);
+        }
+        buffer.position(buffer.position() + SEGMENT_HEADER_SIZE);
+        return true;
+    }
+
+    // reads the record at the buffer position, leaving the position right after it, or returns null
+    // (and leaves the position untouched) when there are no more valid records
+    private static ByteBuffer nextRecord(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+            buffer.position(start);
+            return null;
+        }
+        ByteBuffer payload = buffer.slice(buffer.position(), length);
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            buffer.position(start);
+            return null;
+        }
+        buffer.position(buffer.position() + length);
+        return payload;
+    }
+
+    private List<Path> listSegments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private static long baseLsnOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private void ensureOpen() {
+        if (failure != null) {
+            throw new IllegalStateException("WAL failed to flush", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("WAL is closed");
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.account.springboot.util;
+
+import com.account.springboot.storage.AppendOnlyJournal;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Dictionary of the account emails of a ledger, giving every email a dense int id (0, 1, 2, ...) the first time
+ * it is seen.
+ * <p>
+ * The api keeps using emails, but inside the ledger accounts are referenced by id: transactions hold two ints
+ * instead of two strings, and accounts and their histories are stored in arrays indexed by id, so only the
+ * email of a request has to be hashed and compared, once. Ids only live in memory (the WAL and the snapshots
+ * keep the emails), and are never reused since accounts are never deleted.
+ * <p>
+ * Every ledger owns its dictionary (it is a bean, so one per application context), so its ids start at 0
+ * and stay dense whatever other ledgers live in the same process.
+ */
+@Component
+public class AccountIds {
+
+    // id of no account (e.g. an account that wasn't added to the ledger yet)
+    public static final int NONE = -1;
+
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    // email of every id, the id being the sequence number of the email
+    private final AppendOnlyJournal<String> emails = new AppendOnlyJournal<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Gets the id of an email, giving it the next id if it doesn't have one yet
+     * @param email - email of the account
+     * @return id of the email
+     */
+    public int intern(String email) {
+        Integer id = ids.get(email);
+        if (id != null) {
+            return id;
+        }
+        // new accounts are rare, and a single writer keeps the ids dense (no id is ever skipped)
+        lock.lock();
+        try {
+            id = ids.get(email);
+            if (id == null) {
+                id = (int) emails.append(email);
+                ids.put(email, id);
+            }
+            return id;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param email - email of the account
+     * @return id of the email, or NONE if it was never interned
+     */
+    public int find(String email) {
+        Integer id = email == null ? null : ids.get(email);
+        return id == null ? NONE : id;
+    }
+
+    /**
+     * @param id - id of an account
+     * @return email of the id (the same instance for every call), or null for NONE
+     */
+    public String email(int id) {
+        return id < 0 || id >= emails.size() ? null : emails.get(id);
+    }
+}
@@ -1,16 +1,42 @@
 package com.account.springboot.util;
 
+import com.account.springboot.controllers.AccountController;
 import com.account.springboot.exceptions.CustomException;
+import org.springframework.beans.TypeMismatchException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.ErrorResponse;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+/**
+ * Maps the errors of every account endpoint (servlet and reactive) to their responses
+ */
+@RestControllerAdvice(basePackageClasses = AccountController.class)
 public class ControllerExceptionsHandler {
 
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity handleException(Exception exception) {
+        return setResponseEntity(exception);
+    }
+
     public static ResponseEntity setResponseEntity(Exception exception) {
+        // errors of the request itself (malformed body, missing parameter, ...) keep the status spring gives them
+        if (exception instanceof ErrorResponse errorResponse) {
+            return ResponseEntity.status(errorResponse.getStatusCode()).build();
+        }
+        if (exception instanceof HttpMessageNotReadableException || exception instanceof TypeMismatchException) {
+            return ResponseEntity.badRequest().build();
+        }
+        LedgerMetrics.recordError(exception);
         if (exception instanceof CustomException) {
             return switch (((CustomException) exception).getCode()) {
-                case INSUFFICIENT_AMOUNT,ACCOUNT_ALREADY_EXISTS, BALANCE_ALREADY_EXISTS -> ResponseEntity.status(HttpStatus.BAD_REQUEST).body(((CustomException) exception).getDetails());
-                case NO_SUCH_ACCOUNT,NO_SUCH_CURRENCY  -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(((CustomException) exception).getDetails());
+                case INSUFFICIENT_AMOUNT,ACCOUNT_ALREADY_EXISTS, BALANCE_ALREADY_EXISTS, INVALID_CURSOR, INVALID_AMOUNT,
+                        INVALID_BATCH_OPERATION, BATCH_TOO_LARGE, BATCH_ABORTED -> ResponseEntity.status(HttpStatus.BAD_REQUEST).body(((CustomException) exception).getDetails());
+                case NO_SUCH_ACCOUNT,NO_SUCH_CURRENCY, RATE_NOT_FOUND  -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(((CustomException) exception).getDetails());
+                case RATES_UNAVAILABLE -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(((CustomException) exception).getDetails());
+                case IDEMPOTENCY_KEY_REUSED -> ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(((CustomException) exception).getDetails());
                 default -> ResponseEntity.internalServerError().build();
             };
         }
@@ -0,0 +1,174 @@
+package com.account.springboot.util;
+
+import com.account.springboot.dto.TransactionDto;
+import com.account.springboot.exceptions.ErrorCode;
+import com.account.springboot.services.LedgerResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the results of the operations sent with an {@code Idempotency-Key}, so a client retrying one
+ * (e.g. after a timeout) gets the original result instead of applying it again.
+ * <p>
+ * Keys are spread over stripes, each a small map in insertion order under its own lock, held only to look up or
+ * add an entry (never while the operation runs). Entries expire after the ttl and every stripe keeps at most its
+ * share of {@code max-keys}, dropping its oldest entries first, so the memory used is bounded.
+ * <p>
+ * The first request with a key runs the operation, duplicates arriving while it runs wait for its result instead
+ * of running it again. Only successful results are kept: a failed operation didn't change anything, so retrying
+ * it runs it again.
+ */
+@Component
+public class IdempotencyCache {
+
+    private static final class Entry {
+        // the request the key was first used with
+        private final Object request;
+        private final CompletableFuture<LedgerResult<TransactionDto>> result = new CompletableFuture<>();
+        private final long expiresAt;
+
+        private Entry(Object request, long expiresAt) {
+            this.request = request;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        // insertion order is also expiration order, all entries have the same ttl
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    }
+
+    private final Stripe[] stripes;
+    private final int maxKeysPerStripe;
+    private final long ttlNanos;
+
+    @Autowired
+    public IdempotencyCache(@Value("${idempotency.ttl-ms:86400000}") long ttlMs,
+                            @Value("${idempotency.max-keys:100000}") int maxKeys,
+                            @Value("${idempotency.stripes:16}") int stripeCount) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.maxKeysPerStripe = Math.max(1, maxKeys / stripeCount);
+    }
+
+    /**
+     * Runs an operation once per key
+     * @param key - idempotency key sent by the client
+     * @param request - request of the operation, a key used again with a different request is rejected
+     * @param operation - operation to run the first time the key is seen
+     * @return result of the first run of the operation with this key
+     */
+    public LedgerResult<TransactionDto> execute(String key, Object request, Supplier<LedgerResult<TransactionDto>> operation) {
+        Stripe stripe = stripes[Math.floorMod(key.hashCode(), stripes.length)];
+        Entry entry;
+        boolean first = false;
+        stripe.lock.lock();
+        try {
+            long now = System.nanoTime();
+            evictExpired(stripe, now);
+            entry = stripe.entries.get(key);
+            if (entry == null) {
+                entry = new Entry(request, now + ttlNanos);
+                stripe.entries.put(key, entry);
+                first = true;
+                evictOldest(stripe);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+        if (!entry.request.equals(request)) {
+            return LedgerResult.failure(ErrorCode.IDEMPOTENCY_KEY_REUSED);
+        }
+        return first ? run(stripe, key, entry, operation) : await(entry);
+    }
+
+    /**
+     * @return number of keys remembered
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.entries.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private LedgerResult<TransactionDto> run(Stripe stripe, String key, Entry entry, Supplier<LedgerResult<TransactionDto>> operation) {
+        LedgerResult<TransactionDto> result;
+        try {
+            result = operation.get();
+        } catch (RuntimeException exception) {
+            forget(stripe, key, entry);
+            entry.result.completeExceptionally(exception);
+            throw exception;
+        }
+        if (!result.isSuccess()) {
+            forget(stripe, key, entry);
+        }
+        // duplicates that arrived meanwhile get this result, even a failed one
+        entry.result.complete(result);
+        return result;
+    }
+
+    private LedgerResult<TransactionDto> await(Entry entry) {
+        try {
+            return entry.result.join();
+        } catch (CompletionException exception) {
+            // the first request failed unexpectedly, its duplicates fail the same way
+            if (exception.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw exception;
+        }
+    }
+
+    private void forget(Stripe stripe, String key, Entry entry) {
+        stripe.lock.lock();
+        try {
+            stripe.entries.remove(key, entry);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private static void evictExpired(Stripe stripe, long now) {
+        Iterator<Entry> oldest = stripe.entries.values().iterator();
+        while (oldest.hasNext()) {
+            Entry entry = oldest.next();
+            if (now - entry.expiresAt < 0) {
+                return;
+            }
+            oldest.remove();
+        }
+    }
+
+    private void evictOldest(Stripe stripe) {
+        Iterator<Map.Entry<String, Entry>> oldest = stripe.entries.entrySet().iterator();
+        while (stripe.entries.size() > maxKeysPerStripe && oldest.hasNext()) {
+            Map.Entry<String, Entry> entry = oldest.next();
+            // keeping the ones still running, their duplicates must keep finding them
+            if (entry.getValue().result.isDone()) {
+                oldest.remove();
+            }
+        }
+    }
+}
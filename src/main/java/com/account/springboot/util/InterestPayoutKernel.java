@@ -0,0 +1,136 @@
+package com.account.springboot.util;
+
+import com.account.springboot.models.Money;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Computes the monthly interest payouts of an interest run, with exactly the same results as
+ * {@link InterestRateCalculator#getMonthlyInterest} followed by a {@link RoundingMode#DOWN} multiplication
+ * of the balance amount.
+ * <p>
+ * Everything that only depends on the run is computed once: the run date, the month lengths and, for every
+ * distinct yearly rate, the full monthly rate and the proportional rate of each day a balance may have been
+ * open for. Payouts are then computed over primitive columns (amounts, days from opening, rate indexes),
+ * so paying a balance is a table lookup and a long multiplication, without any date or BigDecimal arithmetic
+ * (except for balances opened less than a month ago, whose proportional rate isn't a short decimal).
+ * <p>
+ * A kernel is safe to share between the threads of a run.
+ */
+public final class InterestPayoutKernel {
+
+    // balances open for at least this many days get the full monthly rate
+    static final int FULL_MONTH_DAYS = 30;
+    private static final BigDecimal MONTHS_IN_YEAR = new BigDecimal("12");
+
+    /**
+     * Monthly rates of one yearly rate
+     */
+    private static final class MonthlyRates {
+        private final Money.Factor fullRate;
+        // by days from opening, 1 to FULL_MONTH_DAYS - 1
+        private final BigDecimal[] proportionalRates;
+
+        private MonthlyRates(BigDecimal yearlyRate, double[] daysInMonth) {
+            BigDecimal fullMonthlyRate = yearlyRate.divide(MONTHS_IN_YEAR, MathContext.DECIMAL32);
+            this.fullRate = Money.Factor.of(fullMonthlyRate);
+            this.proportionalRates = new BigDecimal[FULL_MONTH_DAYS];
+            for (int days = 1; days < FULL_MONTH_DAYS; days++) {
+                proportionalRates[days] = new BigDecimal(days / daysInMonth[days]).multiply(fullMonthlyRate);
+            }
+        }
+    }
+
+    private final LocalDate runDate;
+    private final long runDay;
+    // length of the month used to prorate a balance open for a given number of days
+    private final double[] daysInMonth = new double[FULL_MONTH_DAYS];
+    private final Map<BigDecimal, Integer> rateIndexes = new ConcurrentHashMap<>();
+    private volatile MonthlyRates[] rates = new MonthlyRates[0];
+
+    public InterestPayoutKernel(LocalDate runDate) {
+        this.runDate = runDate;
+        this.runDay = runDate.toEpochDay();
+        double currentMonthLength = runDate.lengthOfMonth();
+        for (int days = 1; days < FULL_MONTH_DAYS; days++) {
+            // whichever is longer, the month of the run or the month the balance was opened
+            double openingMonthLength = runDate.minusDays(days).lengthOfMonth();
+            daysInMonth[days] = Math.max(currentMonthLength, openingMonthLength);
+        }
+    }
+
+    public LocalDate getRunDate() {
+        return runDate;
+    }
+
+    /**
+     * @param yearlyRate - yearly interest rate of a balance
+     * @return index of the rate, to be used in the rate column
+     */
+    public int rateIndex(BigDecimal yearlyRate) {
+        Integer index = rateIndexes.get(yearlyRate);
+        return index != null ? index : addRate(yearlyRate);
+    }
+
+    /**
+     * @param openingDate - day the balance was opened
+     * @return days between the opening and the run, capped to what the payout depends on
+     */
+    public int daysFromOpening(LocalDate openingDate) {
+        long days = runDay - openingDate.toEpochDay();
+        return (int) Math.max(0, Math.min(FULL_MONTH_DAYS, days));
+    }
+
+    /**
+     * Computes the payouts of a column of balances
+     * @param amounts - amounts the interest is paid on, in minor units
+     * @param daysFromOpening - see {@link #daysFromOpening(LocalDate)}
+     * @param rateIndexes - see {@link #rateIndex(BigDecimal)}
+     * @param payouts - receives the payouts in minor units, rounded down
+     * @param length - number of balances in the columns
+     */
+    public void computePayouts(long[] amounts, int[] daysFromOpening, int[] rateIndexes, long[] payouts, int length) {
+        MonthlyRates[] rates = this.rates;
+        for (int i = 0; i < length; i++) {
+            payouts[i] = payout(rates[rateIndexes[i]], amounts[i], daysFromOpening[i]);
+        }
+    }
+
+    /**
+     * Computes the payout of a single balance
+     * @return payout in minor units, rounded down
+     */
+    public long computePayout(long amount, int daysFromOpening, int rateIndex) {
+        return payout(rates[rateIndex], amount, daysFromOpening);
+    }
+
+    private static long payout(MonthlyRates rates, long amount, int daysFromOpening) {
+        // balances opened on the run day (or in the future) don't get interest
+        if (daysFromOpening <= 0 || amount == 0) {
+            return 0;
+        }
+        if (daysFromOpening >= FULL_MONTH_DAYS) {
+            return Money.multiply(amount, rates.fullRate, RoundingMode.DOWN);
+        }
+        return Money.multiply(amount, rates.proportionalRates[daysFromOpening], RoundingMode.DOWN);
+    }
+
+    private synchronized int addRate(BigDecimal yearlyRate) {
+        Integer index = rateIndexes.get(yearlyRate);
+        if (index != null) {
+            return index;
+        }
+        // publishing the new table before its index, so a thread seeing the index also sees the rates
+        MonthlyRates[] updated = Arrays.copyOf(rates, rates.length + 1);
+        updated[rates.length] = new MonthlyRates(yearlyRate, daysInMonth);
+        rates = updated;
+        rateIndexes.put(yearlyRate, rates.length - 1);
+        return rates.length - 1;
+    }
+}
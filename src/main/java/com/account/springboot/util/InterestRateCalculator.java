@@ -31,4 +31,13 @@ public class InterestRateCalculator {
 
         return new BigDecimal(daysFromOpening / daysInMonth).multiply(fullMonthlyInterestRate);
     }
+
+    /**
+     * Builds the kernel of an interest run, paying the same interest as {@link #getMonthlyInterest} for many balances at once
+     * @param runDate - day of the run
+     * @return InterestPayoutKernel
+     */
+    public InterestPayoutKernel newPayoutKernel(LocalDate runDate) {
+        return new InterestPayoutKernel(runDate);
+    }
 }
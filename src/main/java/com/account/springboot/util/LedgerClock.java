@@ -0,0 +1,41 @@
+package com.account.springboot.util;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * Today's date without allocating a new {@link LocalDate} on every call: the date is cached until the next
+ * midnight (in the system time zone), so the balance update path only reads a volatile and the clock.
+ */
+public class LedgerClock {
+
+    private static volatile Today today = computeToday();
+
+    private static class Today {
+        private final LocalDate date;
+        // epoch millis of the next midnight, when the date has to be computed again
+        private final long validUntil;
+
+        private Today(LocalDate date, long validUntil) {
+            this.date = date;
+            this.validUntil = validUntil;
+        }
+    }
+
+    public static LocalDate today() {
+        Today current = today;
+        if (System.currentTimeMillis() >= current.validUntil) {
+            current = computeToday();
+            today = current;
+        }
+        return current.date;
+    }
+
+    private static Today computeToday() {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate date = LocalDate.now(zone);
+        ZonedDateTime nextMidnight = date.plusDays(1).atStartOfDay(zone);
+        return new Today(date, nextMidnight.toInstant().toEpochMilli());
+    }
+}
@@ -0,0 +1,87 @@
+package com.account.springboot.util;
+
+import com.account.springboot.exceptions.CustomException;
+import com.account.springboot.exceptions.ErrorCode;
+import com.account.springboot.models.TransactionTypeEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ledger meters, registered on Micrometer's global registry (Spring Boot adds its registries to it, e.g. Prometheus),
+ * so models and static helpers can record without being beans.
+ * <p>
+ * Every meter is created up front, so recording on the hot path is an array/field read and an increment,
+ * without looking meters up by name and tags.
+ */
+public class LedgerMetrics {
+
+    private static final MeterRegistry REGISTRY = Metrics.globalRegistry;
+
+    private static final Map<TransactionTypeEnum, Counter> TRANSACTIONS = new EnumMap<>(TransactionTypeEnum.class);
+    private static final Map<ErrorCode, Counter> ERRORS = new EnumMap<>(ErrorCode.class);
+    // errors that aren't a known ErrorCode (answered with a 500)
+    private static final Counter UNEXPECTED_ERRORS = errorCounter("UNEXPECTED");
+
+    // time spent waiting to lock a balance, high values mean hot accounts
+    private static final Timer BALANCE_LOCK_WAIT = Timer.builder("ledger.balance.lock.wait")
+            .description("Time waited to lock a balance before changing it")
+            .register(REGISTRY);
+
+    private static final Timer INTEREST_PAYOUT = Timer.builder("jobs.interest.payout")
+            .description("Duration of the monthly interest payout job")
+            .register(REGISTRY);
+
+    static {
+        for (TransactionTypeEnum type : TransactionTypeEnum.values()) {
+            TRANSACTIONS.put(type, Counter.builder("ledger.transactions")
+                    .description("Transactions added to the ledger")
+                    .tag("type", type.name())
+                    .register(REGISTRY));
+        }
+        for (ErrorCode code : ErrorCode.values()) {
+            ERRORS.put(code, errorCounter(code.name()));
+        }
+    }
+
+    public static void recordTransaction(TransactionTypeEnum type) {
+        TRANSACTIONS.get(type).increment();
+    }
+
+    public static void recordTransactions(TransactionTypeEnum type, long count) {
+        TRANSACTIONS.get(type).increment(count);
+    }
+
+    public static void recordError(Exception exception) {
+        if (exception instanceof CustomException customException) {
+            ERRORS.get(customException.getCode()).increment();
+        } else {
+            UNEXPECTED_ERRORS.increment();
+        }
+    }
+
+    public static void recordError(ErrorCode code) {
+        ERRORS.get(code).increment();
+    }
+
+    public static void recordLockWait(long nanos) {
+        BALANCE_LOCK_WAIT.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public static void recordInterestPayout(Duration elapsed) {
+        INTEREST_PAYOUT.record(elapsed);
+    }
+
+    private static Counter errorCounter(String code) {
+        return Counter.builder("ledger.errors")
+                .description("Errors returned by the ledger")
+                .tag("code", code)
+                .register(REGISTRY);
+    }
+}
@@ -0,0 +1,42 @@
+package com.account.springboot.util;
+
+import com.account.springboot.exceptions.CustomException;
+import com.account.springboot.exceptions.ErrorCode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque cursor used to paginate the transactions of an account.
+ * It wraps the position (in the account history) of the next transaction to be returned,
+ * so clients can't rely on its format and we are free to change it later.
+ */
+public class TransactionCursor {
+
+    private static final String PREFIX = "tx1:";
+
+    public static String encode(long position) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + position).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(PREFIX)) {
+                throw CustomException.of(ErrorCode.INVALID_CURSOR);
+            }
+            long position = Long.parseLong(decoded.substring(PREFIX.length()));
+            if (position < 0) {
+                throw CustomException.of(ErrorCode.INVALID_CURSOR);
+            }
+            return position;
+        } catch (IllegalArgumentException exception) {
+            // covers both invalid base64 and invalid numbers
+            throw CustomException.of(ErrorCode.INVALID_CURSOR);
+        }
+    }
+}
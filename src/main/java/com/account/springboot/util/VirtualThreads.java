@@ -0,0 +1,68 @@
+package com.account.springboot.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual threads (Java 21+) looked up by reflection, so the api still builds and runs on Java 17
+ * and only the opt-in virtual thread mode needs a newer JVM.
+ */
+public class VirtualThreads {
+
+    private static final Method OF_VIRTUAL = lookup(Thread.class, "ofVirtual");
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR = lookup(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+    /**
+     * @return whether the running JVM has virtual threads
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null && NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Factory of virtual threads
+     * @param namePrefix - threads are named with this prefix and a counter
+     * @return ThreadFactory
+     */
+    public static ThreadFactory factory(String namePrefix) {
+        ensureSupported();
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = OF_VIRTUAL.invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalStateException("Could not create a virtual thread factory", exception);
+        }
+    }
+
+    /**
+     * Executor starting a new virtual thread for every task
+     * @param namePrefix - threads are named with this prefix and a counter
+     * @return ExecutorService
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        ThreadFactory factory = factory(namePrefix);
+        try {
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalStateException("Could not create a virtual thread executor", exception);
+        }
+    }
+
+    private static void ensureSupported() {
+        if (!isSupported()) {
+            throw new IllegalStateException("Virtual threads need Java 21 or later, running on Java " + Runtime.version());
+        }
+    }
+
+    private static Method lookup(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            return type.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException exception) {
+            return null;
+        }
+    }
+}
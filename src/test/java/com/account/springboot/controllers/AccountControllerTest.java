@@ -3,19 +3,31 @@ package com.account.springboot.controllers;
 import com.account.springboot.dto.*;
 import com.account.springboot.exceptions.CustomException;
 import com.account.springboot.exceptions.ErrorCode;
-import com.account.springboot.models.Transaction;
+import com.account.springboot.models.CurrencyEnum;
 import com.account.springboot.services.AccountService;
+import com.account.springboot.services.LedgerResult;
+import com.account.springboot.util.ControllerExceptionsHandler;
+import com.account.springboot.util.IdempotencyCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 class AccountControllerTest {
@@ -24,10 +36,22 @@ class AccountControllerTest {
     @Mock
     private AccountService accountService;
 
+    private final ControllerExceptionsHandler exceptionsHandler = new ControllerExceptionsHandler();
+
+    // calls an endpoint like spring does, handing the exceptions it throws to the controller advice
+    private ResponseEntity handle(Supplier<ResponseEntity> endpoint) {
+        try {
+            return endpoint.get();
+        } catch (Exception exception) {
+            return exceptionsHandler.handleException(exception);
+        }
+    }
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        accountController = new AccountController(accountService);
+        accountController = new AccountController(accountService, new ObjectMapper().findAndRegisterModules(),
+                new IdempotencyCache(60_000, 1000, 4));
     }
 
     @Test
@@ -51,7 +75,7 @@ class AccountControllerTest {
         when(accountService.create(any(AccountRequestDto.class))).thenThrow(new CustomException(ErrorCode.ACCOUNT_ALREADY_EXISTS));
 
 
-        ResponseEntity response = accountController.createAccount(accountRequestDto);
+        ResponseEntity response = handle(() -> accountController.createAccount(accountRequestDto));
 
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
@@ -65,7 +89,7 @@ class AccountControllerTest {
         when(accountService.create(any(AccountRequestDto.class))).thenThrow(new RuntimeException());
 
 
-        ResponseEntity response = accountController.createAccount(accountRequestDto);
+        ResponseEntity response = handle(() -> accountController.createAccount(accountRequestDto));
 
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
         verify(accountService, times(1)).create(accountRequestDto);
@@ -75,67 +99,114 @@ class AccountControllerTest {
     void deposit_ReturnsOkStatus() {
 
         DepositDto depositDto = new DepositDto();
-        when(accountService.deposit(any(DepositDto.class))).thenReturn(Transaction.builder().build());
+        when(accountService.tryDeposit(any(DepositDto.class))).thenReturn(LedgerResult.success(TransactionDto.builder().build()));
 
 
-        ResponseEntity response = accountController.deposit(depositDto);
+        ResponseEntity response = accountController.deposit(depositDto, null);
 
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        verify(accountService, times(1)).deposit(depositDto);
+        verify(accountService, times(1)).tryDeposit(depositDto);
     }
 
     @Test
-    void deposit_ReturnsErrorResponse_WhenExceptionIsThrown() {
+    void deposit_ReturnsErrorResponse_WhenOperationFails() {
         DepositDto depositDto = new DepositDto();
-        when(accountService.deposit(any(DepositDto.class))).thenThrow(new CustomException(ErrorCode.NO_SUCH_ACCOUNT));
-        ResponseEntity response = accountController.deposit(depositDto);
+        when(accountService.tryDeposit(any(DepositDto.class))).thenReturn(LedgerResult.failure(ErrorCode.NO_SUCH_ACCOUNT));
+        ResponseEntity response = accountController.deposit(depositDto, null);
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
-        verify(accountService, times(1)).deposit(depositDto);
+        verify(accountService, times(1)).tryDeposit(depositDto);
+    }
+
+    @Test
+    void batch_ReturnsOkStatus() {
+        BatchRequestDto batchRequestDto = new BatchRequestDto(false, List.of(BatchOperationDto.deposit(new DepositDto())));
+        when(accountService.batch(any(BatchRequestDto.class))).thenReturn(BatchResponseDto.builder().build());
+
+        ResponseEntity response = accountController.batch(batchRequestDto);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(accountService, times(1)).batch(batchRequestDto);
+    }
+
+    @Test
+    void batch_ReturnsBadRequest_WhenBatchIsTooLarge() {
+        BatchRequestDto batchRequestDto = new BatchRequestDto(true, new ArrayList<>());
+        when(accountService.batch(any(BatchRequestDto.class))).thenThrow(new CustomException(ErrorCode.BATCH_TOO_LARGE));
+
+        ResponseEntity response = handle(() -> accountController.batch(batchRequestDto));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     }
 
     @Test
     void sendFunds_ReturnsOkStatus() {
         SendDto sendDto = new SendDto();
-        when(accountService.send(any(SendDto.class))).thenReturn(Transaction.builder().build());
-        ResponseEntity response = accountController.sendFunds(sendDto);
+        when(accountService.trySend(any(SendDto.class))).thenReturn(LedgerResult.success(TransactionDto.builder().build()));
+        ResponseEntity response = accountController.sendFunds(sendDto, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        verify(accountService, times(1)).send(sendDto);
+        verify(accountService, times(1)).trySend(sendDto);
     }
 
     @Test
-    void sendFunds_ReturnsErrorResponse_WhenExceptionIsThrown() {
+    void sendFunds_ReturnsErrorResponse_WhenOperationFails() {
         SendDto sendDto = new SendDto();
-        when(accountService.send(any(SendDto.class))).thenThrow(new CustomException(ErrorCode.INSUFFICIENT_AMOUNT));
+        when(accountService.trySend(any(SendDto.class))).thenReturn(LedgerResult.failure(ErrorCode.INSUFFICIENT_AMOUNT));
 
-        ResponseEntity response = accountController.sendFunds(sendDto);
+        ResponseEntity response = accountController.sendFunds(sendDto, null);
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
-        verify(accountService, times(1)).send(sendDto);
+        verify(accountService, times(1)).trySend(sendDto);
+    }
+
+    @Test
+    void sendFunds_SameIdempotencyKey_ReturnsFirstResultWithoutSendingAgain() {
+        SendDto sendDto = new SendDto("from@email.com", "to@email.com", CurrencyEnum.USD, "10.00");
+        TransactionDto transaction = TransactionDto.builder().build();
+        when(accountService.trySend(any(SendDto.class))).thenReturn(LedgerResult.success(transaction));
+
+        // the client retries the same send
+        ResponseEntity first = accountController.sendFunds(sendDto, "key-1");
+        ResponseEntity retry = accountController.sendFunds(new SendDto("from@email.com", "to@email.com", CurrencyEnum.USD, "10.00"), "key-1");
+
+        assertEquals(HttpStatus.OK, retry.getStatusCode());
+        assertSame(first.getBody(), retry.getBody());
+        verify(accountService, times(1)).trySend(any(SendDto.class));
+    }
+
+    @Test
+    void sendFunds_SameIdempotencyKeyWithDifferentRequest_ReturnsUnprocessableEntity() {
+        when(accountService.trySend(any(SendDto.class))).thenReturn(LedgerResult.success(TransactionDto.builder().build()));
+        accountController.sendFunds(new SendDto("from@email.com", "to@email.com", CurrencyEnum.USD, "10.00"), "key-1");
+
+        ResponseEntity response = accountController.sendFunds(new SendDto("from@email.com", "to@email.com", CurrencyEnum.USD, "99.00"), "key-1");
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, response.getStatusCode());
+        verify(accountService, times(1)).trySend(any(SendDto.class));
     }
 
     @Test
     void swapFunds_ReturnsOkStatus() {
         SwapDto swapDto = new SwapDto();
-        when(accountService.swap(any(SwapDto.class))).thenReturn(Transaction.builder().build());
+        when(accountService.trySwap(any(SwapDto.class))).thenReturn(LedgerResult.success(TransactionDto.builder().build()));
 
-        ResponseEntity response = accountController.swapFunds(swapDto);
+        ResponseEntity response = accountController.swapFunds(swapDto, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        verify(accountService, times(1)).swap(swapDto);
+        verify(accountService, times(1)).trySwap(swapDto);
     }
 
     @Test
-    void swapFunds_ReturnsErrorResponse_WhenExceptionIsThrown() {
+    void swapFunds_ReturnsErrorResponse_WhenOperationFails() {
         SwapDto swapDto = new SwapDto();
-        when(accountService.swap(any(SwapDto.class))).thenThrow(new CustomException(ErrorCode.NO_SUCH_CURRENCY));
+        when(accountService.trySwap(any(SwapDto.class))).thenReturn(LedgerResult.failure(ErrorCode.NO_SUCH_CURRENCY));
 
-        ResponseEntity response = accountController.swapFunds(swapDto);
+        ResponseEntity response = accountController.swapFunds(swapDto, null);
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
-        verify(accountService, times(1)).swap(swapDto);
+        verify(accountService, times(1)).trySwap(swapDto);
     }
 
     @Test
@@ -154,7 +225,7 @@ class AccountControllerTest {
         CreateBalanceDto createBalanceDto = new CreateBalanceDto();
         when(accountService.createBalance(any(CreateBalanceDto.class))).thenThrow(new RuntimeException());
 
-        ResponseEntity response = accountController.createBalance(createBalanceDto);
+        ResponseEntity response = handle(() -> accountController.createBalance(createBalanceDto));
 
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
         verify(accountService, times(1)).createBalance(createBalanceDto);
@@ -176,7 +247,7 @@ class AccountControllerTest {
         String email = "test@example.com";
         when(accountService.find(any(String.class))).thenThrow(new RuntimeException());
 
-        ResponseEntity response = accountController.getAccount(email);
+        ResponseEntity response = handle(() -> accountController.getAccount(email));
 
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
         verify(accountService, times(1)).find(email);
@@ -185,7 +256,7 @@ class AccountControllerTest {
     @Test
     void getAccountTransactions_ReturnsOkStatus() {
         String email = "test@example.com";
-        List<Transaction> transactions = new ArrayList<>();
+        List<TransactionDto> transactions = new ArrayList<>();
         when(accountService.getTransactions(anyString())).thenReturn(transactions);
 
         ResponseEntity response = accountController.getAccountTransactions(email);
@@ -195,15 +266,87 @@ class AccountControllerTest {
         verify(accountService, times(1)).getTransactions(email);
     }
 
+    @Test
+    void getAccountStatement_ReturnsOkStatus() {
+        String email = "test@example.com";
+        List<TransactionDto> statement = new ArrayList<>();
+        when(accountService.getStatement(anyString(), any(CurrencyEnum.class))).thenReturn(statement);
+
+        ResponseEntity response = accountController.getAccountStatement(email, CurrencyEnum.USD);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(statement, response.getBody());
+        verify(accountService, times(1)).getStatement(email, CurrencyEnum.USD);
+    }
+
     @Test
     void getAccountTransactions_ReturnsErrorResponse_WhenExceptionIsThrown() {
         String email = "test@example.com";
         when(accountService.getTransactions(anyString())).thenThrow(new RuntimeException());
 
-        ResponseEntity response = accountController.getAccountTransactions(email);
+        ResponseEntity response = handle(() -> accountController.getAccountTransactions(email));
 
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
         verify(accountService, times(1)).getTransactions(email);
     }
 
+    @Test
+    void getAccountTransactionsPage_ReturnsOkStatus() {
+        String email = "test@example.com";
+        TransactionPageDto page = TransactionPageDto.builder().transactions(new ArrayList<>()).build();
+        when(accountService.getTransactions(anyString(), any(), anyInt())).thenReturn(page);
+
+        ResponseEntity response = accountController.getAccountTransactionsPage(email, 10, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(page, response.getBody());
+        verify(accountService, times(1)).getTransactions(email, null, 10);
+    }
+
+    @Test
+    void getAccountTransactionsPage_ReturnsErrorResponse_WhenCursorIsInvalid() {
+        String email = "test@example.com";
+        when(accountService.getTransactions(anyString(), any(), anyInt())).thenThrow(new CustomException(ErrorCode.INVALID_CURSOR));
+
+        ResponseEntity response = handle(() -> accountController.getAccountTransactionsPage(email, 10, "not-a-cursor"));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    void streamAccountTransactions_WritesOneTransactionPerLine() throws Exception {
+        String email = "test@example.com";
+        List<TransactionDto> transactions = List.of(TransactionDto.builder().build(), TransactionDto.builder().build());
+        when(accountService.streamTransactions(anyString())).thenReturn(transactions.iterator());
+
+        ResponseEntity<StreamingResponseBody> response = accountController.streamAccountTransactions(email);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        // every transaction is written as a json document on its own line, nothing before it
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{"));
+        assertTrue(lines[1].startsWith("{"));
+    }
+
+    @Test
+    void streamAccountTransactions_ReturnsErrorResponse_WhenExceptionIsThrown() {
+        String email = "test@example.com";
+        when(accountService.streamTransactions(anyString())).thenThrow(new CustomException(ErrorCode.NO_SUCH_ACCOUNT));
+
+        ResponseEntity response = handle(() -> accountController.streamAccountTransactions(email));
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    @Test
+    void handleException_RequestErrors_KeepTheirStatus() {
+        ResponseEntity response = exceptionsHandler.handleException(
+                new HttpMessageNotReadableException("malformed json", new MockHttpInputMessage(new byte[0])));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
 }
@@ -0,0 +1,52 @@
+package com.account.springboot.controllers;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@TestPropertySource(locations = "classpath:application-test.properties")
+class MetricsEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void prometheus_AfterRequests_ExposesLedgerAndEndpointMetrics() throws Exception {
+        // a deposit and an error
+        mockMvc.perform(post("/accounts/create").contentType(MediaType.APPLICATION_JSON).content("{\"email\":\"metrics@me.com\"}"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/accounts/create-balance").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"metrics@me.com\",\"currency\":\"USD\"}"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/accounts/deposit").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"metrics@me.com\",\"currency\":\"USD\",\"amount\":\"10\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/accounts/nobody@me.com")).andExpect(status().isNotFound());
+
+        // scraping
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(scrape.contains("ledger_transactions_total{type=\"DEPOSIT\""), "transactions by type");
+        assertTrue(scrape.contains("ledger_errors_total{code=\"NO_SUCH_ACCOUNT\""), "errors by code");
+        assertTrue(scrape.contains("ledger_balance_lock_wait_seconds_count"), "balance lock wait");
+        assertTrue(scrape.contains("ledger_journal_transactions"), "journal size");
+        assertTrue(scrape.contains("jobs_interest_payout_seconds_count"), "interest job duration");
+        assertTrue(scrape.contains("http_server_requests_seconds_bucket") && scrape.contains("uri=\"/accounts/deposit\""),
+                "endpoint latency histograms");
+    }
+}
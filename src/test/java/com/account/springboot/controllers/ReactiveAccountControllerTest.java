@@ -0,0 +1,119 @@
+package com.account.springboot.controllers;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// boots the api on WebFlux and calls it over http
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "spring.main.web-application-type=reactive")
+@AutoConfigureWebTestClient
+@TestPropertySource(locations = "classpath:application-test.properties")
+class ReactiveAccountControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ApplicationContext context;
+
+    private void post(String uri, String body) {
+        webTestClient.post().uri(uri).contentType(MediaType.APPLICATION_JSON).bodyValue(body)
+                .exchange()
+                .expectStatus().is2xxSuccessful();
+    }
+
+    private void openFundedAccount(String email) {
+        post("/accounts/create", "{\"email\":\"" + email + "\"}");
+        post("/accounts/create-balance", "{\"email\":\"" + email + "\",\"currency\":\"USD\"}");
+        post("/accounts/create-balance", "{\"email\":\"" + email + "\",\"currency\":\"CAD\"}");
+        post("/accounts/deposit", "{\"email\":\"" + email + "\",\"currency\":\"USD\",\"amount\":\"100\"}");
+    }
+
+    @Test
+    void reactiveApi_ReplacesTheServletController() {
+        assertThrows(Exception.class, () -> context.getBean(AccountController.class));
+        context.getBean(ReactiveAccountController.class);
+    }
+
+    @Test
+    void swap_ReturnsTransactionAndUpdatesBalances() {
+        openFundedAccount("reactive-swap@me.com");
+
+        webTestClient.post().uri("/accounts/swap").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"email\":\"reactive-swap@me.com\",\"sourceCurrency\":\"USD\",\"targetCurrency\":\"CAD\",\"amount\":\"10\"}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.type").isEqualTo("SWAP")
+                .jsonPath("$.fromAmount").isEqualTo(10.0);
+
+        webTestClient.get().uri("/accounts/reactive-swap@me.com")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.balances.USD").isEqualTo(90.0);
+    }
+
+    @Test
+    void errors_GetTheSameStatusesAsTheServletApi() {
+        webTestClient.get().uri("/accounts/nobody@me.com").exchange().expectStatus().isNotFound();
+        webTestClient.get().uri("/accounts/nobody@me.com/transactions").exchange().expectStatus().isNotFound();
+        webTestClient.post().uri("/accounts/send").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"fromEmail\":\"nobody@me.com\",\"toEmail\":\"nobody-else@me.com\",\"currency\":\"USD\",\"amount\":\"1\"}")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void getAccountTransactions_Ndjson_StreamsTheHistoryOnDemand() {
+        openFundedAccount("reactive-history@me.com");
+        for (int i = 0; i < 20; i++) {
+            post("/accounts/deposit", "{\"email\":\"reactive-history@me.com\",\"currency\":\"USD\",\"amount\":\"1\"}");
+        }
+
+        Flux<Map> history = webTestClient.get().uri("/accounts/reactive-history@me.com/transactions")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(Map.class)
+                .getResponseBody();
+
+        // the client takes a few transactions at a time
+        StepVerifier.create(history, 5)
+                .expectNextCount(5)
+                .thenRequest(16)
+                .expectNextCount(16)
+                .verifyComplete();
+    }
+
+    @Test
+    void getAccountTransactionsPage_ReturnsPage() {
+        openFundedAccount("reactive-page@me.com");
+
+        webTestClient.get().uri("/accounts/reactive-page@me.com/transactions?limit=10")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.transactions.length()").isEqualTo(1)
+                .jsonPath("$.nextCursor").doesNotExist();
+
+        assertEquals(1, webTestClient.get().uri("/accounts/reactive-page@me.com/transactions")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Map.class)
+                .returnResult().getResponseBody().size());
+    }
+}
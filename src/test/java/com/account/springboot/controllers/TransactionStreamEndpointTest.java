@@ -0,0 +1,69 @@
+package com.account.springboot.controllers;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(locations = "classpath:application-test.properties")
+class TransactionStreamEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void streamTransactions_NdjsonAccept_StreamsOneTransactionPerLine() throws Exception {
+        // an account with 3 deposits
+        String email = "ndjson-stream@me.com";
+        mockMvc.perform(post("/accounts/create").contentType(MediaType.APPLICATION_JSON).content("{\"email\":\"" + email + "\"}"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/accounts/create-balance").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + email + "\",\"currency\":\"USD\"}"))
+                .andExpect(status().isCreated());
+        for (int i = 1; i <= 3; i++) {
+            mockMvc.perform(post("/accounts/deposit").contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"email\":\"" + email + "\",\"currency\":\"USD\",\"amount\":\"" + i + "\"}"))
+                    .andExpect(status().isOk());
+        }
+
+        // the body is written asynchronously, after the handler returned
+        MvcResult started = mockMvc.perform(get("/accounts/" + email + "/transactions").accept(AccountController.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(AccountController.APPLICATION_NDJSON))
+                .andReturn();
+
+        String[] lines = result.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        for (String line : lines) {
+            assertTrue(line.startsWith("{"), line);
+            assertTrue(line.contains("\"fromEmail\":\"" + email + "\""), line);
+            assertTrue(line.contains("\"type\":\"DEPOSIT\""), line);
+        }
+    }
+
+    @Test
+    void streamTransactions_UnknownAccount_ReturnsNotFound() throws Exception {
+        mockMvc.perform(get("/accounts/ndjson-nobody@me.com/transactions").accept(AccountController.APPLICATION_NDJSON))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -3,22 +3,32 @@ package com.account.springboot.jobs;
 
 import com.account.springboot.dto.AccountRequestDto;
 import com.account.springboot.models.Account;
-import com.account.springboot.models.Balance;
+import com.account.springboot.models.BalanceChange;
 import com.account.springboot.models.CurrencyEnum;
 import com.account.springboot.models.Transaction;
+import com.account.springboot.models.TransactionTypeEnum;
+import com.account.springboot.services.AccountService;
 import com.account.springboot.services.InMemoryService;
+import com.account.springboot.services.LedgerCommit;
+import com.account.springboot.util.InterestPayoutKernel;
 import com.account.springboot.util.InterestRateCalculator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 public class ScheduledTasksTest {
@@ -26,6 +36,9 @@ public class ScheduledTasksTest {
     @Mock
     private InMemoryService inMemoryService;
 
+    @Mock
+    private AccountService accountService;
+
     @Mock
     private InterestRateCalculator interestRateCalculator;
 
@@ -35,12 +48,31 @@ public class ScheduledTasksTest {
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
+        // crediting the balances like the locking engine does, a chunk is committed as one record
+        when(accountService.payInterest(any(Account[].class), any(CurrencyEnum[].class), any(long[].class), anyInt(), any(YearMonth.class), any(LocalDate.class), any(LedgerCommit.class)))
+                .thenAnswer(invocation -> {
+                    Account[] accounts = invocation.getArgument(0);
+                    CurrencyEnum[] currencies = invocation.getArgument(1);
+                    long[] payouts = invocation.getArgument(2);
+                    List<BalanceChange> changes = new ArrayList<>();
+                    List<Transaction> transactions = new ArrayList<>();
+                    for (int i = 0; i < invocation.<Integer>getArgument(3); i++) {
+                        if (accounts[i].payInterest(currencies[i], invocation.getArgument(4), invocation.getArgument(5), payouts[i], changes::addAll)
+                                && payouts[i] > 0) {
+                            transactions.add(Transaction.builder().type(TransactionTypeEnum.INTEREST_PAYOUT).fromAmountMinor(payouts[i]).build());
+                        }
+                    }
+                    if (!changes.isEmpty()) {
+                        invocation.<LedgerCommit>getArgument(6).journal(transactions).record(changes);
+                    }
+                    return transactions.size();
+                });
     }
 
     @Test
     public void testPayoutInterestRates_WithNoAccounts_NoInteractions() {
         // supposing there is no account created...
-        when(inMemoryService.getAllAccounts()).thenReturn(new HashMap<>());
+        when(inMemoryService.getAllAccounts()).thenReturn(new ArrayList<>());
 
         // running task
         scheduledTasks.payoutInterestRates();
@@ -60,17 +92,17 @@ public class ScheduledTasksTest {
         account.updateBalance(CurrencyEnum.USD, new BigDecimal("15"));
         Map<String, Account> accounts = new HashMap<>();
         accounts.put(email, account);
-        Balance balance = accounts.get(email).getBalances().get(CurrencyEnum.USD);
-        when(inMemoryService.getAllAccounts()).thenReturn(accounts);
-        when(interestRateCalculator.getMonthlyInterest(balance.getCreatedAt(), balance.getYearlyInterestRate()))
-                .thenReturn(BigDecimal.valueOf(0.1));
+        when(inMemoryService.getAllAccounts()).thenReturn(accounts.values());
+        // running as if the balance was open for the whole month
+        when(interestRateCalculator.newPayoutKernel(any(LocalDate.class))).thenReturn(new InterestPayoutKernel(LocalDate.now().plusMonths(2)));
 
         // running task
         scheduledTasks.payoutInterestRates();
 
-        // checking if the inMemoryService methods were called just once
-        verify(inMemoryService, times(1)).upsertAccount(eq(email), any(Account.class));
-        verify(inMemoryService, times(1)).addTransaction(any(Transaction.class));
+        // checking if the payout was credited through the account service and persisted just once
+        verify(accountService, times(1)).payInterest(any(Account[].class), any(CurrencyEnum[].class), any(long[].class), eq(1), any(YearMonth.class), any(LocalDate.class), any(LedgerCommit.class));
+        assertEquals(List.of(account.getId()), committedAccountIds());
+        assertEquals(1, journaledPayouts());
     }
 
     @Test
@@ -90,16 +122,38 @@ public class ScheduledTasksTest {
         accounts.put(email1, account1);
         accounts.put(email2, account2);
 
-        when(inMemoryService.getAllAccounts()).thenReturn(accounts);
-        when(interestRateCalculator.getMonthlyInterest(any(LocalDate.class), any(BigDecimal.class)))
-                .thenReturn(BigDecimal.valueOf(0.1));
+        when(inMemoryService.getAllAccounts()).thenReturn(accounts.values());
+        when(interestRateCalculator.newPayoutKernel(any(LocalDate.class))).thenReturn(new InterestPayoutKernel(LocalDate.now().plusMonths(2)));
 
         // running task
         scheduledTasks.payoutInterestRates();
 
         // check calls
-        verify(inMemoryService, times(2)).upsertAccount(anyString(), any(Account.class));
-        verify(inMemoryService, times(2)).addTransaction(any(Transaction.class));
+        assertEquals(2, committedAccountIds().size());
+        assertEquals(2, journaledPayouts());
+        assertEquals(2, scheduledTasks.getLastReport().getPayouts());
+    }
+
+    @Test
+    public void testPayoutInterestRates_BalancesOfAChunk_CommittedAsOneRecord() {
+        // Creating account with USD and CAD balances, paid in the same chunk
+        String email = "roger@me.com";
+        Account account = new Account(new AccountRequestDto(email));
+        account.addBalance(CurrencyEnum.USD, new BigDecimal("0.05"));
+        account.updateBalance(CurrencyEnum.USD, new BigDecimal("15"));
+        account.addBalance(CurrencyEnum.CAD, new BigDecimal("0.05"));
+        account.updateBalance(CurrencyEnum.CAD, new BigDecimal("30"));
+        when(inMemoryService.getAllAccounts()).thenReturn(List.of(account));
+        when(interestRateCalculator.newPayoutKernel(any(LocalDate.class))).thenReturn(new InterestPayoutKernel(LocalDate.now().plusMonths(2)));
+
+        // running task
+        scheduledTasks.payoutInterestRates();
+
+        // both payouts went into a single commit
+        verify(inMemoryService, times(1)).commit(anyList(), anyList());
+        assertEquals(2, journaledPayouts());
+        assertEquals(2, scheduledTasks.getLastReport().getBalances());
+        assertEquals(1, scheduledTasks.getLastReport().getAccounts());
     }
 
     @Test
@@ -118,15 +172,81 @@ public class ScheduledTasksTest {
         accounts.put(email1, account1);
         accounts.put(email2, account2);
 
-        when(inMemoryService.getAllAccounts()).thenReturn(accounts);
-        when(interestRateCalculator.getMonthlyInterest(any(LocalDate.class), any(BigDecimal.class)))
-                .thenReturn(BigDecimal.valueOf(0));
+        when(inMemoryService.getAllAccounts()).thenReturn(accounts.values());
+        when(interestRateCalculator.newPayoutKernel(any(LocalDate.class))).thenReturn(new InterestPayoutKernel(LocalDate.now()));
 
         // running task
         scheduledTasks.payoutInterestRates();
 
-        // check if none was called
+        // no payout was journaled, only the closed periods of both balances
         verify(inMemoryService, times(0)).upsertAccount(anyString(), any(Account.class));
+        verify(inMemoryService, times(0)).addTransactions(anyList());
         verify(inMemoryService, times(0)).addTransaction(any(Transaction.class));
+        assertEquals(0, journaledPayouts());
+        assertEquals(2, committedAccountIds().size());
+    }
+
+    @Test
+    public void testPayoutInterestRates_RunTwiceInTheSameMonth_PaysOnlyOnce() {
+        // Creating account with USD balance
+        String email = "roger@me.com";
+        Account account = new Account(new AccountRequestDto(email));
+        account.addBalance(CurrencyEnum.USD, new BigDecimal("0.05"));
+        account.updateBalance(CurrencyEnum.USD, new BigDecimal("15"));
+        Map<String, Account> accounts = new HashMap<>();
+        accounts.put(email, account);
+        when(inMemoryService.getAllAccounts()).thenReturn(accounts.values());
+        when(interestRateCalculator.newPayoutKernel(any(LocalDate.class))).thenReturn(new InterestPayoutKernel(LocalDate.now().plusMonths(2)));
+
+        // running task twice, e.g. after a restart
+        scheduledTasks.payoutInterestRates();
+        scheduledTasks.payoutInterestRates();
+
+        // the balance was paid just once
+        assertEquals(1, journaledPayouts());
+        assertEquals(0, scheduledTasks.getLastReport().getPayouts());
+        assertEquals(1, scheduledTasks.getLastReport().getBalances());
+        // 15.00 * 0.05 / 12, rounded down
+        assertEquals(0, new BigDecimal("15.06").compareTo(account.getBalances().get(CurrencyEnum.USD).getAmount()));
+    }
+
+    @Test
+    public void testPayoutInterestRates_MonthPaidMeanwhile_JournalsNothing() {
+        // Creating account with USD balance
+        String email = "roger@me.com";
+        Account account = new Account(new AccountRequestDto(email));
+        account.addBalance(CurrencyEnum.USD, new BigDecimal("0.05"));
+        account.updateBalance(CurrencyEnum.USD, new BigDecimal("15"));
+        when(inMemoryService.getAllAccounts()).thenReturn(List.of(account));
+        when(interestRateCalculator.newPayoutKernel(any(LocalDate.class))).thenReturn(new InterestPayoutKernel(LocalDate.now().plusMonths(2)));
+        // another run paid the month between the average being read and the payout being credited
+        when(accountService.payInterest(any(Account[].class), any(CurrencyEnum[].class), any(long[].class), anyInt(), any(YearMonth.class), any(LocalDate.class), any(LedgerCommit.class)))
+                .thenReturn(0);
+
+        // running task
+        scheduledTasks.payoutInterestRates();
+
+        // nothing was credited nor journaled by this run
+        assertTrue(committedAccountIds().isEmpty());
+        assertEquals(0, journaledPayouts());
+        assertEquals(0, new BigDecimal("15.00").compareTo(account.getBalances().get(CurrencyEnum.USD).getAmount()));
+    }
+
+    // the payouts of a chunk are committed with their balances
+    @SuppressWarnings("unchecked")
+    private int journaledPayouts() {
+        ArgumentCaptor<List<Transaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(inMemoryService, atLeast(0)).commit(anyList(), captor.capture());
+        verify(inMemoryService, times(0)).addTransaction(any(Transaction.class));
+        return captor.getAllValues().stream().mapToInt(List::size).sum();
+    }
+
+    // ids of the accounts whose balances were committed
+    @SuppressWarnings("unchecked")
+    private List<Integer> committedAccountIds() {
+        ArgumentCaptor<List<BalanceChange>> captor = ArgumentCaptor.forClass(List.class);
+        verify(inMemoryService, atLeast(0)).commit(captor.capture(), anyList());
+        verify(inMemoryService, times(0)).upsertAccount(anyString(), any(Account.class));
+        return captor.getAllValues().stream().flatMap(List::stream).map(BalanceChange::getAccountId).toList();
     }
 }
\ No newline at end of file
@@ -0,0 +1,199 @@
+package com.account.springboot.load;
+
+import com.account.springboot.dto.AccountRequestDto;
+import com.account.springboot.dto.CreateBalanceDto;
+import com.account.springboot.dto.DepositDto;
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.services.AccountService;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-to-end load test of the {@link com.account.springboot.controllers.AccountController} endpoints, run by the
+ * {@code load-test} profile ({@code ./mvnw -P load-test verify}).
+ * <p>
+ * Drives an open-loop mix of account openings, deposits, sends, swaps and reads at a fixed rate and fails when
+ * the error rate or the latency percentiles regress beyond the baseline stored in {@value #BASELINE_FILE}.
+ * Only 2xx answers count as successes. The throughput is only reported: in an open loop it is the offered rate
+ * minus the errors, so it says nothing the error rate doesn't.
+ * Everything can be changed with system properties: {@code load.rate} (requests/s), {@code load.warmup-seconds},
+ * {@code load.duration-seconds}, {@code load.mix} (e.g. {@code open=5,deposit=30,send=30,swap=15,read=20}),
+ * {@code load.tolerance} (allowed regression, 0.3 = 30%) and {@code load.update-baseline=true} to store the
+ * results of the run as the new baseline.
+ */
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(locations = "classpath:application-test.properties", properties = "logging.level.root=WARN")
+class AccountApiLoadIT {
+
+    static final String BASELINE_FILE = "src/test/resources/load/baseline.properties";
+    private static final Path REPORT_DIRECTORY = Path.of("target", "load-test");
+    private static final int SEEDED_ACCOUNTS = 1_000;
+    private static final int MAX_IN_FLIGHT = 512;
+
+    enum Operation {
+        OPEN, DEPOSIT, SEND, SWAP, READ
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private AccountService accountService;
+
+    private final AtomicLong openedAccounts = new AtomicLong();
+
+    @Test
+    public void testLoad_OpenLoopMix_DoesNotRegressFromBaseline() throws Exception {
+        int rate = Integer.getInteger("load.rate", 200);
+        Duration warmup = Duration.ofSeconds(Integer.getInteger("load.warmup-seconds", 10));
+        Duration duration = Duration.ofSeconds(Integer.getInteger("load.duration-seconds", 20));
+        Operation[] mix = parseMix(System.getProperty("load.mix", "open=5,deposit=30,send=30,swap=15,read=20"));
+        double tolerance = Double.parseDouble(System.getProperty("load.tolerance", "0.3"));
+
+        // seeding funded accounts straight through the service, the load only goes through http
+        for (int i = 0; i < SEEDED_ACCOUNTS; i++) {
+            accountService.create(new AccountRequestDto(seededEmail(i)));
+            for (CurrencyEnum currency : new CurrencyEnum[]{CurrencyEnum.USD, CurrencyEnum.CAD}) {
+                accountService.createBalance(new CreateBalanceDto(seededEmail(i), currency));
+                accountService.deposit(new DepositDto(seededEmail(i), currency, "1000000"));
+            }
+        }
+
+        // running load
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(5)).build();
+        SplittableRandom random = new SplittableRandom(42);
+        OpenLoopLoadGenerator.Result<Operation> result = new OpenLoopLoadGenerator<Operation>(client, rate, warmup, duration, MAX_IN_FLIGHT)
+                .run(Operation.class, i -> mix[(int) (i % mix.length)], operation -> request(operation, random));
+
+        Map<String, Double> measured = report(result);
+        if (Boolean.getBoolean("load.update-baseline")) {
+            storeBaseline(measured, rate);
+            return;
+        }
+
+        // checking against the baseline
+        Properties baseline = new Properties();
+        try (Reader reader = Files.newBufferedReader(Path.of(BASELINE_FILE))) {
+            baseline.load(reader);
+        }
+        double maxErrorPercent = Double.parseDouble(baseline.getProperty("errors.percent")) * (1 + tolerance);
+        assertTrue(measured.get("errors.percent") <= maxErrorPercent,
+                "errors " + measured.get("errors.percent") + "% are above " + maxErrorPercent + "%");
+        for (String percentile : new String[]{"p50.ms", "p99.ms", "p999.ms"}) {
+            double maxLatency = Double.parseDouble(baseline.getProperty(percentile)) * (1 + tolerance);
+            assertTrue(measured.get(percentile) <= maxLatency,
+                    percentile + " " + measured.get(percentile) + " ms is above " + maxLatency);
+        }
+    }
+
+    private HttpRequest request(Operation operation, SplittableRandom random) {
+        // the mix is consumed by the generator thread only, so the random doesn't need to be shared safely
+        String email = seededEmail(random.nextInt(SEEDED_ACCOUNTS));
+        return switch (operation) {
+            case OPEN -> post("/accounts/create", "{\"email\":\"load-" + openedAccounts.incrementAndGet() + "@example.com\"}");
+            case DEPOSIT -> post("/accounts/deposit", "{\"email\":\"" + email + "\",\"currency\":\"USD\",\"amount\":\"10.50\"}");
+            case SEND -> post("/accounts/send", "{\"fromEmail\":\"" + email + "\",\"toEmail\":\"" + seededEmail(random.nextInt(SEEDED_ACCOUNTS))
+                    + "\",\"currency\":\"USD\",\"amount\":\"1.25\"}");
+            case SWAP -> post("/accounts/swap", "{\"email\":\"" + email + "\",\"sourceCurrency\":\"USD\",\"targetCurrency\":\"CAD\",\"amount\":\"2\"}");
+            case READ -> HttpRequest.newBuilder(uri("/accounts/" + email)).timeout(Duration.ofSeconds(30)).GET().build();
+        };
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(uri(path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static String seededEmail(int index) {
+        return "seeded-" + index + "@example.com";
+    }
+
+    // expands "open=5,deposit=30,..." into a shuffled sequence of 100 operations with those weights
+    private static Operation[] parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        Operation[] sequence = weights.entrySet().stream()
+                .flatMap(entry -> Stream.generate(entry::getKey).limit(entry.getValue()))
+                .toArray(Operation[]::new);
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = sequence.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Operation swap = sequence[i];
+            sequence[i] = sequence[j];
+            sequence[j] = swap;
+        }
+        return sequence;
+    }
+
+    // logs the results and writes the latency distributions under target/load-test
+    private Map<String, Double> report(OpenLoopLoadGenerator.Result<Operation> result) throws IOException {
+        Files.createDirectories(REPORT_DIRECTORY);
+        try (PrintStream out = new PrintStream(Files.newOutputStream(REPORT_DIRECTORY.resolve("latency.hgrm")))) {
+            result.latencies.outputPercentileDistribution(out, 1000.0);
+        }
+        StringBuilder summary = new StringBuilder(String.format("%n%-8s %10s %10s %10s %10s%n", "", "count", "p50 ms", "p99 ms", "p999 ms"));
+        summary.append(line("ALL", result.latencies));
+        result.latenciesByOperation.forEach((operation, histogram) -> summary.append(line(operation.name(), histogram)));
+        log.warn("Load test: {} req/s over {} s, {} failed ({}%){}", String.format(Locale.ROOT, "%.1f", result.throughput()),
+                result.measured.toSeconds(), result.failed, String.format(Locale.ROOT, "%.2f", result.errorPercent()), summary);
+        return Map.of(
+                "errors.percent", result.errorPercent(),
+                "p50.ms", millis(result.latencies, 50),
+                "p99.ms", millis(result.latencies, 99),
+                "p999.ms", millis(result.latencies, 99.9));
+    }
+
+    private static String line(String name, Histogram histogram) {
+        return String.format("%-8s %10d %10.2f %10.2f %10.2f%n", name, histogram.getTotalCount(),
+                millis(histogram, 50), millis(histogram, 99), millis(histogram, 99.9));
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static void storeBaseline(Map<String, Double> measured, int rate) throws IOException {
+        Properties baseline = new Properties();
+        measured.forEach((key, value) -> baseline.setProperty(key, String.format(Locale.ROOT, "%.2f", value)));
+        try (Writer writer = Files.newBufferedWriter(Path.of(BASELINE_FILE))) {
+            baseline.store(writer, "AccountApiLoadIT baseline at " + rate + " req/s");
+        }
+        log.warn("Stored the load test baseline in {}", BASELINE_FILE);
+    }
+}
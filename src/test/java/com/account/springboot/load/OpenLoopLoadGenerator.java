@@ -0,0 +1,147 @@
+package com.account.springboot.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Open-loop http load generator: requests are sent on a fixed schedule (the target rate) whether or not the
+ * previous ones were answered, and every latency is measured from the time the request was <i>meant</i> to be
+ * sent. A slow response therefore delays nothing and shows up in the latencies of every request queued behind
+ * it, instead of silently lowering the load (coordinated omission).
+ * @param <O> - type of the operations of the mix
+ */
+class OpenLoopLoadGenerator<O extends Enum<O>> {
+
+    // latencies above this are recorded as this, so a stuck request can't break the histogram
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    /**
+     * Latencies and counts of the measured part of a run
+     */
+    static class Result<O extends Enum<O>> {
+        final Histogram latencies;
+        final Map<O, Histogram> latenciesByOperation;
+        final long succeeded;
+        final long failed;
+        final Duration measured;
+
+        Result(Histogram latencies, Map<O, Histogram> latenciesByOperation, long succeeded, long failed, Duration measured) {
+            this.latencies = latencies;
+            this.latenciesByOperation = latenciesByOperation;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.measured = measured;
+        }
+
+        double throughput() {
+            return succeeded * 1e9 / measured.toNanos();
+        }
+
+        // in percent of the requests that were due during the measured part, answered or not
+        double errorPercent() {
+            long total = succeeded + failed;
+            return total == 0 ? 0 : failed * 100.0 / total;
+        }
+    }
+
+    private final HttpClient client;
+    private final int ratePerSecond;
+    private final Duration warmup;
+    private final Duration duration;
+    private final int maxInFlight;
+
+    OpenLoopLoadGenerator(HttpClient client, int ratePerSecond, Duration warmup, Duration duration, int maxInFlight) {
+        this.client = client;
+        this.ratePerSecond = ratePerSecond;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Runs the load
+     * @param operations - picks the operation of the n-th request
+     * @param requests - builds the request of an operation
+     * @return Result of the measured part of the run (after the warmup)
+     */
+    Result<O> run(Class<O> operationType, Function<Long, O> operations, Function<O, HttpRequest> requests) throws InterruptedException {
+        Histogram latencies = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+        Map<O, Histogram> latenciesByOperation = new EnumMap<>(operationType);
+        for (O operation : operationType.getEnumConstants()) {
+            latenciesByOperation.put(operation, new ConcurrentHistogram(MAX_LATENCY_MICROS, 3));
+        }
+        AtomicLong succeeded = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        AtomicInteger inFlight = new AtomicInteger();
+        ConcurrentLinkedQueue<CompletableFuture<?>> pending = new ConcurrentLinkedQueue<>();
+
+        long interval = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        for (long i = 0; ; i++) {
+            long intended = start + i * interval;
+            if (intended - end >= 0) {
+                break;
+            }
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            boolean measured = intended - measureFrom >= 0;
+            O operation = operations.apply(i);
+            if (inFlight.get() >= maxInFlight) {
+                // the api is so far behind that the generator would run out of connections, it is a failure
+                if (measured) {
+                    failed.incrementAndGet();
+                }
+                continue;
+            }
+            inFlight.incrementAndGet();
+            CompletableFuture<HttpResponse<Void>> response = client.sendAsync(requests.apply(operation), HttpResponse.BodyHandlers.discarding());
+            pending.add(response.whenComplete((result, exception) -> {
+                inFlight.decrementAndGet();
+                if (!measured) {
+                    return;
+                }
+                long latency = Math.min(MAX_LATENCY_MICROS, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended));
+                latencies.recordValue(latency);
+                latenciesByOperation.get(operation).recordValue(latency);
+                // a 4xx is an error too, the mix only sends requests the api is expected to accept
+                if (exception == null && result.statusCode() >= 200 && result.statusCode() < 300) {
+                    succeeded.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                }
+            }));
+            // dropping the completed ones now and then, so the queue doesn't hold the whole run
+            if ((i & 1023) == 0) {
+                pending.removeIf(CompletableFuture::isDone);
+            }
+        }
+        try {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).get(1, TimeUnit.MINUTES);
+        } catch (TimeoutException exception) {
+            throw new IllegalStateException("Requests were still running a minute after the load ended", exception);
+        } catch (ExecutionException exception) {
+            // failed requests were already counted
+        }
+        return new Result<>(latencies.copy(), latenciesByOperation, succeeded.get(), failed.get(), duration);
+    }
+}
@@ -0,0 +1,123 @@
+package com.account.springboot.models;
+
+import com.account.springboot.dto.AccountRequestDto;
+import com.account.springboot.exceptions.CustomException;
+import com.account.springboot.exceptions.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Contention benchmark for Account.transfer: many threads sending funds in both directions between a
+// small set of accounts. It fails if a transfer deadlocks (timeout) or if money is created or lost.
+@Slf4j
+class AccountTransferContentionTest {
+
+    private static final int ACCOUNTS = 4;
+    private static final int THREADS = 16;
+    private static final int TRANSFERS_PER_THREAD = 20_000;
+    private static final BigDecimal INITIAL_AMOUNT = new BigDecimal("1000");
+
+    @Test
+    public void testTransfer_WithManyThreadsInBothDirections_IsAtomicAndDeadlockFree() throws Exception {
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Account account = new Account(new AccountRequestDto("contention-" + i + "@me.com"));
+            // the id the ledger would give it, which orders its locks
+            account.setId(i);
+            account.addBalance(CurrencyEnum.USD, BigDecimal.ZERO);
+            account.updateBalance(CurrencyEnum.USD, INITIAL_AMOUNT);
+            accounts.add(account);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicLong insufficientFunds = new AtomicLong();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    Account from = accounts.get(random.nextInt(ACCOUNTS));
+                    Account to = accounts.get(random.nextInt(ACCOUNTS));
+                    long amount = random.nextInt(1, 20_000);
+                    try {
+                        Account.transfer(from, CurrencyEnum.USD, amount, to, CurrencyEnum.USD, amount);
+                    } catch (CustomException exception) {
+                        assertEquals(ErrorCode.INSUFFICIENT_AMOUNT, exception.getCode());
+                        insufficientFunds.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            // a deadlock would never finish
+            future.get(60, TimeUnit.SECONDS);
+        }
+        long elapsed = System.nanoTime() - startedAt;
+        executor.shutdown();
+
+        long transfers = (long) THREADS * TRANSFERS_PER_THREAD;
+        log.info("{} transfers ({} rejected) between {} accounts on {} threads: {} transfers/s",
+                transfers, insufficientFunds.get(), ACCOUNTS, THREADS, transfers * TimeUnit.SECONDS.toNanos(1) / elapsed);
+
+        // no money was created or lost, and no balance went negative
+        BigDecimal total = BigDecimal.ZERO;
+        for (Account account : accounts) {
+            BigDecimal amount = account.getBalances().get(CurrencyEnum.USD).getAmount();
+            assertTrue(amount.compareTo(BigDecimal.ZERO) >= 0);
+            total = total.add(amount);
+        }
+        assertEquals(0, INITIAL_AMOUNT.multiply(BigDecimal.valueOf(ACCOUNTS)).compareTo(total));
+    }
+
+    @Test
+    public void testTransfer_WithMissingBalance_DoesNotDebitTheSender() {
+        Account from = new Account(new AccountRequestDto("transfer-from@me.com"));
+        from.addBalance(CurrencyEnum.USD, BigDecimal.ZERO);
+        from.updateBalance(CurrencyEnum.USD, new BigDecimal("10"));
+        Account to = new Account(new AccountRequestDto("transfer-to@me.com"));
+        to.addBalance(CurrencyEnum.CAD, BigDecimal.ZERO);
+
+        // the receiver has no USD balance, so nothing can change
+        assertThrows(CustomException.class,
+                () -> Account.transfer(from, CurrencyEnum.USD, 100, to, CurrencyEnum.USD, 100));
+        assertEquals(new BigDecimal("10.00"), from.getBalances().get(CurrencyEnum.USD).getAmount());
+    }
+
+    @Test
+    public void testTransfer_JournalFails_ChangesNoBalance() {
+        Account from = new Account(new AccountRequestDto("journal-from@me.com"));
+        from.addBalance(CurrencyEnum.USD, BigDecimal.ZERO);
+        from.updateBalance(CurrencyEnum.USD, new BigDecimal("10"));
+        Account to = new Account(new AccountRequestDto("journal-to@me.com"));
+        to.addBalance(CurrencyEnum.USD, BigDecimal.ZERO);
+        List<BalanceChange> journaled = new ArrayList<>();
+
+        // the journal gets the new state of both balances before they change, and nothing changes if it fails
+        assertThrows(IllegalStateException.class, () -> Account.transfer(from, CurrencyEnum.USD, 400, to, CurrencyEnum.USD, 400, changes -> {
+            journaled.addAll(changes);
+            throw new IllegalStateException("WAL failed");
+        }));
+        assertEquals(2, journaled.size());
+        assertEquals(600, journaled.get(0).getBalance().getAmountMinor());
+        assertEquals(400, journaled.get(1).getBalance().getAmountMinor());
+        assertEquals(new BigDecimal("10.00"), from.getBalances().get(CurrencyEnum.USD).getAmount());
+        assertEquals(new BigDecimal("0.00"), to.getBalances().get(CurrencyEnum.USD).getAmount());
+    }
+}
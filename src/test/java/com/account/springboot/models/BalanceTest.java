@@ -0,0 +1,95 @@
+package com.account.springboot.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BalanceTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 4, 1);
+
+    @Test
+    public void testCloseAccrualPeriod_WithChangesDuringTheMonth_ReturnsTimeWeightedAverage() {
+        Balance balance = newBalance();
+        // 10.00 for the first 10 days, then 30.00 for the other 20 days
+        balance.changeAmount(1000, START);
+        balance.changeAmount(3000, START.plusDays(10));
+
+        long average = balance.closeAccrualPeriod(START.plusDays(30));
+
+        // (1000 * 10 + 3000 * 20) / 30, rounded down
+        assertEquals(2333, average);
+        // the next period starts from the current amount
+        assertEquals(3000, balance.closeAccrualPeriod(START.plusDays(60)));
+    }
+
+    @Test
+    public void testCloseAccrualPeriod_WithChangesOnTheLastDay_CountsOnlyEndOfDayAmounts() {
+        Balance balance = newBalance();
+        balance.changeAmount(1000, START);
+        // a big deposit on the last day of the month, taken out on the same day, doesn't earn interest
+        balance.changeAmount(1_000_000, START.plusDays(29));
+        balance.changeAmount(1000, START.plusDays(29));
+        // a big deposit kept for the last day only counts for that day
+        balance.changeAmount(31_000, START.plusDays(29));
+
+        long average = balance.closeAccrualPeriod(START.plusDays(30));
+
+        // (1000 * 29 + 31000 * 1) / 30
+        assertEquals(2000, average);
+    }
+
+    @Test
+    public void testCloseAccrualPeriod_WithNoFullDay_ReturnsCurrentAmount() {
+        Balance balance = newBalance();
+        balance.changeAmount(1500, START);
+
+        assertEquals(1500, balance.closeAccrualPeriod(START));
+    }
+
+    @Test
+    public void testAverageAmount_DoesNotCloseThePeriod() {
+        Balance balance = newBalance();
+        balance.changeAmount(1000, START);
+        balance.changeAmount(3000, START.plusDays(10));
+
+        // reading the average twice gives the same result, and closing the period afterwards too
+        assertEquals(2333, balance.averageAmount(START.plusDays(30)));
+        assertEquals(2333, balance.averageAmount(START.plusDays(30)));
+        assertEquals(2333, balance.closeAccrualPeriod(START.plusDays(30)));
+    }
+
+    @Test
+    public void testCloseAccrualPeriod_WithSumBeyondTheLongRange_ReturnsExactAverage() {
+        Balance balance = newBalance();
+        long large = Long.MAX_VALUE / 4;
+        long larger = Long.MAX_VALUE / 2;
+        // 30 days of such amounts add up to far more than a long can hold
+        balance.changeAmount(large, START);
+        balance.changeAmount(larger, START.plusDays(10));
+
+        // a copy (e.g. the one journaled by a change) carries the whole sum
+        Balance copy = balance.copy();
+        long average = copy.closeAccrualPeriod(START.plusDays(30));
+
+        long expected = BigInteger.valueOf(large).multiply(BigInteger.valueOf(10))
+                .add(BigInteger.valueOf(larger).multiply(BigInteger.valueOf(20)))
+                .divide(BigInteger.valueOf(30))
+                .longValueExact();
+        assertEquals(expected, average);
+        assertEquals(expected, balance.averageAmount(START.plusDays(30)));
+        // the next period starts again from an empty sum
+        assertEquals(larger, copy.closeAccrualPeriod(START.plusDays(31)));
+    }
+
+    private static Balance newBalance() {
+        return Balance.builder()
+                .currency(CurrencyEnum.USD)
+                .accrualStartDay(START.toEpochDay())
+                .accruedToDay(START.toEpochDay())
+                .build();
+    }
+}
@@ -0,0 +1,81 @@
+package com.account.springboot.models;
+
+import com.account.springboot.exceptions.CustomException;
+import com.account.springboot.exceptions.ErrorCode;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @Test
+    public void testParse_ValidAmounts_ReturnsMinorUnits() {
+        assertEquals(50000, Money.parse("500", CurrencyEnum.USD));
+        assertEquals(1050, Money.parse("10.5", CurrencyEnum.USD));
+        assertEquals(1, Money.parse("0.01", CurrencyEnum.USD));
+        assertEquals(1000, Money.parse("10.000", CurrencyEnum.USD));
+        assertEquals(-250, Money.parse("-2.50", CurrencyEnum.USD));
+        assertEquals(5, Money.parse(".05", CurrencyEnum.USD));
+    }
+
+    @Test
+    public void testParse_InvalidAmounts_ThrowsInvalidAmount() {
+        for (String amount : new String[]{"", "abc", "1.2.3", "0.001", ".", "-", "1e3", "92233720368547758.08"}) {
+            CustomException exception = assertThrows(CustomException.class, () -> Money.parse(amount, CurrencyEnum.USD), amount);
+            assertEquals(ErrorCode.INVALID_AMOUNT, exception.getCode());
+        }
+    }
+
+    @Test
+    public void testTryParse_InvalidAmountsAndOverflows_ReturnsInvalid() {
+        for (String amount : new String[]{"", "abc", "1.2.3", "0.001", "92233720368547758.08", "9223372036854775808"}) {
+            assertEquals(Money.INVALID, Money.tryParse(amount, CurrencyEnum.USD), amount);
+        }
+        assertEquals(Money.INVALID, Money.tryParse(null, CurrencyEnum.USD));
+        // the largest amount there is still parses
+        assertEquals(Long.MAX_VALUE, Money.tryParse("92233720368547758.07", CurrencyEnum.USD));
+        assertEquals(Money.INVALID, Money.tryAdd(Long.MAX_VALUE, 1));
+        assertEquals(Money.INVALID, Money.trySubtract(-2, Long.MAX_VALUE));
+        assertEquals(-1, Money.trySubtract(Long.MAX_VALUE - 1, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testMultiply_RoundsLikeBigDecimal() {
+        Money.Factor fee = Money.Factor.parse("0.015");
+        long[] amounts = {0, 1, 33, 100, 150, 333, 5000, 12345, -33, -150};
+        RoundingMode[] modes = {RoundingMode.DOWN, RoundingMode.UP, RoundingMode.FLOOR, RoundingMode.CEILING,
+                RoundingMode.HALF_UP, RoundingMode.HALF_DOWN, RoundingMode.HALF_EVEN};
+        for (long amount : amounts) {
+            for (RoundingMode mode : modes) {
+                long expected = BigDecimal.valueOf(amount).multiply(new BigDecimal("0.015")).setScale(0, mode).longValueExact();
+                assertEquals(expected, Money.multiply(amount, fee, mode), amount + " " + mode);
+            }
+        }
+    }
+
+    @Test
+    public void testMultiply_LargeProduct_FallsBackToExactArithmetic() {
+        // the intermediate product overflows a long, but the result doesn't
+        long amount = Long.MAX_VALUE / 10;
+        assertEquals(amount / 2, Money.multiply(amount, Money.Factor.parse("0.5"), RoundingMode.DOWN));
+        // a result that doesn't fit is rejected
+        CustomException exception = assertThrows(CustomException.class,
+                () -> Money.multiply(Long.MAX_VALUE, Money.Factor.parse("2"), RoundingMode.DOWN));
+        assertEquals(ErrorCode.INVALID_AMOUNT, exception.getCode());
+    }
+
+    @Test
+    public void testConvert_ToAnotherCurrency_RoundsDown() {
+        // 49.50 USD at 1.3613 is 67.38435 CAD
+        assertEquals(6738, Money.convert(4950, CurrencyEnum.USD, CurrencyEnum.CAD, Money.Factor.parse("1.3613"), RoundingMode.DOWN));
+    }
+
+    @Test
+    public void testAdd_Overflow_ThrowsInvalidAmount() {
+        CustomException exception = assertThrows(CustomException.class, () -> Money.add(Long.MAX_VALUE, 1));
+        assertEquals(ErrorCode.INVALID_AMOUNT, exception.getCode());
+    }
+}
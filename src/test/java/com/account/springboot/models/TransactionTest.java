@@ -0,0 +1,79 @@
+package com.account.springboot.models;
+
+import com.account.springboot.dto.AccountRequestDto;
+import com.account.springboot.dto.TransactionDto;
+import com.account.springboot.util.AccountIds;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final AccountIds accountIds = new AccountIds();
+
+    private Account newAccount(String email) {
+        Account account = new Account(new AccountRequestDto(email));
+        account.setId(accountIds.intern(email));
+        for (CurrencyEnum currency : CurrencyEnum.values()) {
+            account.addBalance(currency, new BigDecimal("0.025"));
+            account.updateBalance(currency, new BigDecimal("1000.00"));
+        }
+        return account;
+    }
+
+    private static Transaction newSend(Account from, Account to) {
+        return Transaction.builder()
+                .fromAccountId(from.getId())
+                .toAccountId(to.getId())
+                .fromCurrency(CurrencyEnum.USD)
+                .toCurrency(CurrencyEnum.USD)
+                .serviceCurrency(CurrencyEnum.USD)
+                .fromAmountMinor(1250)
+                .toAmountMinor(1250)
+                .serviceFeeAmountMinor(0)
+                .type(TransactionTypeEnum.TRANSFER)
+                .createdAt(LocalDate.of(2024, 4, 1))
+                .build();
+    }
+
+    @Test
+    public void testJson_ReferencesAccountsByEmail() throws Exception {
+        Account from = newAccount("from@me.com");
+        Account to = newAccount("to@me.com");
+
+        JsonNode json = objectMapper.readTree(objectMapper.writeValueAsString(newSend(from, to).toDTO(accountIds)));
+
+        assertEquals("from@me.com", json.get("fromEmail").asText());
+        assertEquals("to@me.com", json.get("toEmail").asText());
+        assertEquals(12.5, json.get("fromAmount").asDouble());
+        assertFalse(json.has("fromAccountId"));
+        assertFalse(json.has("fromAccount"));
+        assertFalse(json.toString().contains("balances"));
+    }
+
+    @Test
+    public void testJson_IsAFractionOfTheAccountGraphSize() throws Exception {
+        Account from = newAccount("from@me.com");
+        Account to = newAccount("to@me.com");
+        TransactionDto send = newSend(from, to).toDTO(accountIds);
+
+        // what a transaction used to serialize to: both accounts, with all their balances
+        ObjectNode withAccounts = objectMapper.valueToTree(send);
+        withAccounts.remove("fromEmail");
+        withAccounts.remove("toEmail");
+        withAccounts.set("fromAccount", objectMapper.valueToTree(from));
+        withAccounts.set("toAccount", objectMapper.valueToTree(to));
+
+        int compactBytes = objectMapper.writeValueAsBytes(send).length;
+        int accountGraphBytes = objectMapper.writeValueAsBytes(withAccounts).length;
+
+        assertTrue(compactBytes * 3 < accountGraphBytes, compactBytes + " bytes vs " + accountGraphBytes + " bytes");
+    }
+}
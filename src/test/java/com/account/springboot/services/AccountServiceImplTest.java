@@ -2,21 +2,38 @@ package com.account.springboot.services;
 
 import com.account.springboot.dto.*;
 import com.account.springboot.exceptions.CustomException;
+import com.account.springboot.exceptions.ErrorCode;
+import com.account.springboot.models.Account;
 import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.models.Money;
 import com.account.springboot.models.Transaction;
 import com.account.springboot.models.TransactionTypeEnum;
+import com.account.springboot.util.AccountIds;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.test.context.TestPropertySource;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 // This Test class will NOT mock the services to entertain testing both InMemoryService and AccountService due to a time constraint, but we would ideally also create tests for the InMemoryService and separate the logic here
 @SpringBootTest
@@ -26,9 +43,15 @@ class AccountServiceImplTest {
     @Autowired
     private AccountServiceImpl accountService;
 
-    @Autowired
+    @SpyBean
     private RatesService ratesService;
 
+    @Autowired
+    private InMemoryService inMemoryService;
+
+    @Autowired
+    private AccountIds accountIds;
+
     @Value("${service.fee}")
     private String SERVICE_FEE;
 
@@ -69,7 +92,7 @@ class AccountServiceImplTest {
         // make sure balance is created as expected
         assertNotNull(result);
         assertEquals(email, result.getEmail());
-        assertEquals(Collections.singletonMap(CurrencyEnum.USD, BigDecimal.ZERO), result.getBalances());
+        assertEquals(Collections.singletonMap(CurrencyEnum.USD, new BigDecimal("0.00")), result.getBalances());
     }
 
     @Test
@@ -86,7 +109,7 @@ class AccountServiceImplTest {
         // make sure balance is created as expected
         assertNotNull(result);
         assertEquals(email, result.getEmail());
-        assertEquals(Collections.singletonMap(CurrencyEnum.USD, BigDecimal.ZERO), result.getBalances());
+        assertEquals(Collections.singletonMap(CurrencyEnum.USD, new BigDecimal("0.00")), result.getBalances());
 
         // error should be thrown if creating an existing balance
         assertThrows(CustomException.class, () -> accountService.createBalance(createBalanceDTO));
@@ -129,7 +152,7 @@ class AccountServiceImplTest {
         accountService.createBalance(createBalanceDTO);
         accountService.swap(new SwapDto(email, CurrencyEnum.USD, CurrencyEnum.CAD, "0.5"));
         // Calling the getTransactions method
-        List<Transaction> transactions = accountService.getTransactions(email);
+        List<TransactionDto> transactions = accountService.getTransactions(email);
 
         // Verifying the returned transactions
         assertEquals(transactions.size(), 2);
@@ -137,6 +160,79 @@ class AccountServiceImplTest {
         assertEquals(transactions.get(1).getType(), TransactionTypeEnum.SWAP);
     }
 
+    @Test
+    public void testGetTransactions_TransferIsListedForBothAccounts() {
+        // Creating sender and receiver with USD balances
+        String fromEmail = "txs-sender@me.com";
+        String toEmail = "txs-receiver@me.com";
+        accountService.create(new AccountRequestDto(fromEmail));
+        accountService.createBalance(new CreateBalanceDto(fromEmail, CurrencyEnum.USD));
+        accountService.deposit(new DepositDto(fromEmail, CurrencyEnum.USD, "10"));
+        accountService.create(new AccountRequestDto(toEmail));
+        accountService.createBalance(new CreateBalanceDto(toEmail, CurrencyEnum.USD));
+        accountService.send(new SendDto(fromEmail, toEmail, CurrencyEnum.USD, "5"));
+
+        List<TransactionDto> senderTransactions = accountService.getTransactions(fromEmail);
+        List<TransactionDto> receiverTransactions = accountService.getTransactions(toEmail);
+
+        // the sender sees its deposit and the transfer, the receiver only sees the transfer
+        assertEquals(2, senderTransactions.size());
+        assertEquals(TransactionTypeEnum.DEPOSIT, senderTransactions.get(0).getType());
+        assertEquals(TransactionTypeEnum.TRANSFER, senderTransactions.get(1).getType());
+        assertEquals(1, receiverTransactions.size());
+        assertEquals(TransactionTypeEnum.TRANSFER, receiverTransactions.get(0).getType());
+    }
+
+    @Test
+    public void testGetTransactionsPage_WalksThroughTheWholeHistory() {
+        // Creating an account with 5 deposits
+        String email = "txs-pages@me.com";
+        accountService.create(new AccountRequestDto(email));
+        accountService.createBalance(new CreateBalanceDto(email, CurrencyEnum.USD));
+        for (int i = 1; i <= 5; i++) {
+            accountService.deposit(new DepositDto(email, CurrencyEnum.USD, String.valueOf(i)));
+        }
+
+        // reading pages of 2 transactions
+        TransactionPageDto firstPage = accountService.getTransactions(email, null, 2);
+        TransactionPageDto secondPage = accountService.getTransactions(email, firstPage.getNextCursor(), 2);
+        TransactionPageDto lastPage = accountService.getTransactions(email, secondPage.getNextCursor(), 2);
+
+        // the pages follow the history order and the last one has no cursor
+        assertEquals(2, firstPage.getTransactions().size());
+        assertEquals(new BigDecimal("1.00"), firstPage.getTransactions().get(0).getFromAmount());
+        assertEquals(new BigDecimal("3.00"), secondPage.getTransactions().get(0).getFromAmount());
+        assertEquals(1, lastPage.getTransactions().size());
+        assertEquals(new BigDecimal("5.00"), lastPage.getTransactions().get(0).getFromAmount());
+        assertNull(lastPage.getNextCursor());
+        // invalid cursors are rejected
+        assertThrows(CustomException.class, () -> accountService.getTransactions(email, "not-a-cursor", 2));
+    }
+
+    @Test
+    public void testGetStatement_RepricesTransactionsAtTheRateOfTheirDay() {
+        String email = "statement@me.com";
+        accountService.create(new AccountRequestDto(email));
+        accountService.createBalance(new CreateBalanceDto(email, CurrencyEnum.USD));
+        accountService.createBalance(new CreateBalanceDto(email, CurrencyEnum.CAD));
+        accountService.deposit(new DepositDto(email, CurrencyEnum.USD, "10"));
+        accountService.deposit(new DepositDto(email, CurrencyEnum.CAD, "20"));
+        // the historical CAD to USD rate of the day of the deposits
+        doReturn(Money.Factor.parse("0.7351")).when(ratesService).getFactorAsOf(eq(CurrencyEnum.CAD), eq(CurrencyEnum.USD), any(LocalDate.class));
+
+        List<TransactionDto> statement = accountService.getStatement(email, CurrencyEnum.USD);
+
+        assertEquals(2, statement.size());
+        assertEquals(CurrencyEnum.USD, statement.get(0).getStatementCurrency());
+        assertEquals(new BigDecimal("10.00"), statement.get(0).getStatementToAmount());
+        // 20 CAD * 0.7351, rounded to the cent
+        assertEquals(new BigDecimal("20.00"), statement.get(1).getToAmount());
+        assertEquals(new BigDecimal("14.70"), statement.get(1).getStatementToAmount());
+        // there are no EUR rates that far back
+        CustomException exception = assertThrows(CustomException.class, () -> accountService.getStatement(email, CurrencyEnum.EUR));
+        assertEquals(ErrorCode.RATE_NOT_FOUND, exception.getCode());
+    }
+
     @Test
     public void testGetTransactions_InvalidAccount() {
         // nonexistent account should throw a CustomException
@@ -148,12 +244,13 @@ class AccountServiceImplTest {
         // Creating from account with USD Balance a deposit 50usd
         String email = "deposit-customer@example.com";
         String amountStr = "500";
-        BigDecimal amount = new BigDecimal(amountStr);
+        // amounts are returned with the currency scale
+        BigDecimal amount = new BigDecimal("500.00");
         AccountResponseDto accountResponseDto = accountService.create(new AccountRequestDto(email));
         CurrencyEnum currency = CurrencyEnum.USD;
 
         accountService.createBalance(new CreateBalanceDto(email, currency));
-        Transaction transaction = accountService.deposit(new DepositDto(email, currency, amountStr));
+        TransactionDto transaction = accountService.deposit(new DepositDto(email, currency, amountStr));
         AccountResponseDto account = accountService.find(email);
 
         // check created account
@@ -163,7 +260,7 @@ class AccountServiceImplTest {
         assertNotNull(transaction);
         assertEquals(TransactionTypeEnum.DEPOSIT, transaction.getType());
         assertEquals(LocalDate.now(), transaction.getCreatedAt());
-        assertEquals(accountResponseDto.getEmail(), transaction.getFromAccount().getEmail());
+        assertEquals(accountResponseDto.getEmail(), transaction.getFromEmail());
         assertEquals(currency, transaction.getFromCurrency());
         assertEquals(currency, transaction.getToCurrency());
         assertEquals(currency, transaction.getServiceCurrency());
@@ -189,7 +286,7 @@ class AccountServiceImplTest {
 
         // Call send method
         SendDto sendDTO = new SendDto(fromEmail, toEmail, currency, amount.toString());
-        Transaction transaction = accountService.send(sendDTO);
+        TransactionDto transaction = accountService.send(sendDTO);
 
         AccountResponseDto sendingAccount = accountService.find(fromEmail);
         AccountResponseDto receivingAccount = accountService.find(toEmail);
@@ -197,13 +294,17 @@ class AccountServiceImplTest {
         assertNotNull(transaction);
         assertEquals(TransactionTypeEnum.TRANSFER, transaction.getType());
         assertEquals(LocalDate.now(), transaction.getCreatedAt());
-        assertEquals(sendingAccount.getEmail(), transaction.getFromAccount().getEmail());
-        assertEquals(receivingAccount.getEmail(), transaction.getToAccount().getEmail());
+        assertEquals(sendingAccount.getEmail(), transaction.getFromEmail());
+        assertEquals(receivingAccount.getEmail(), transaction.getToEmail());
+        // the stored transaction holds the ids of the accounts, the dto resolves them back to their emails
+        List<Transaction> stored = inMemoryService.getTransactions(toEmail);
+        assertEquals(accountIds.find(fromEmail), stored.get(stored.size() - 1).getFromAccountId());
+        assertEquals(accountIds.find(toEmail), stored.get(stored.size() - 1).getToAccountId());
         assertEquals(currency, transaction.getFromCurrency());
         assertEquals(currency, transaction.getToCurrency());
         assertEquals(amount, transaction.getFromAmount());
         assertEquals(amount, transaction.getToAmount());
-        assertEquals(BigDecimal.ZERO, transaction.getServiceFeeAmount());
+        assertEquals(new BigDecimal("0.00"), transaction.getServiceFeeAmount());
         // Check if balances were correctly updated
         assertEquals(new BigDecimal("400.00"), sendingAccount.getBalances().get(currency));
         assertEquals(new BigDecimal("600.00"), receivingAccount.getBalances().get(currency));
@@ -230,6 +331,54 @@ class AccountServiceImplTest {
         assertThrows(CustomException.class, () -> accountService.send(sendDTO));
     }
 
+    @Test
+    void testTrySend_ReturnsPreallocatedErrorInsteadOfThrowing() {
+        String fromEmail = "try-sender@example.com";
+        String toEmail = "try-receiver@example.com";
+        CurrencyEnum currency = CurrencyEnum.USD;
+        accountService.create(new AccountRequestDto(fromEmail));
+        accountService.createBalance(new CreateBalanceDto(fromEmail, currency));
+        accountService.deposit(new DepositDto(fromEmail, currency, "10"));
+        accountService.create(new AccountRequestDto(toEmail));
+        accountService.createBalance(new CreateBalanceDto(toEmail, currency));
+
+        // Call trySend method, once with enough funds and once without
+        LedgerResult<TransactionDto> sent = accountService.trySend(new SendDto(fromEmail, toEmail, currency, "4"));
+        LedgerResult<TransactionDto> failed = accountService.trySend(new SendDto(fromEmail, toEmail, currency, "100"));
+
+        assertTrue(sent.isSuccess());
+        assertEquals(new BigDecimal("4.00"), sent.getValue().getFromAmount());
+        assertFalse(failed.isSuccess());
+        assertNull(failed.getValue());
+        assertSame(CustomException.of(ErrorCode.INSUFFICIENT_AMOUNT), failed.getError());
+        // domain errors don't capture any stack trace
+        assertEquals(0, failed.getError().getStackTrace().length);
+    }
+
+    @Test
+    void testTryOperations_ValidationErrors_AreReturned() {
+        String email = "try-validation@example.com";
+        accountService.create(new AccountRequestDto(email));
+        accountService.createBalance(new CreateBalanceDto(email, CurrencyEnum.USD));
+
+        // every expected failure comes back as a result, before or while applying the operation
+        assertSame(CustomException.of(ErrorCode.NO_SUCH_ACCOUNT),
+                accountService.tryDeposit(new DepositDto("try-nobody@example.com", CurrencyEnum.USD, "1")).getError());
+        assertSame(CustomException.of(ErrorCode.INVALID_AMOUNT),
+                accountService.tryDeposit(new DepositDto(email, CurrencyEnum.USD, "1.001")).getError());
+        assertSame(CustomException.of(ErrorCode.NO_SUCH_CURRENCY),
+                accountService.tryDeposit(new DepositDto(email, CurrencyEnum.CAD, "1")).getError());
+        assertSame(CustomException.of(ErrorCode.NO_SUCH_ACCOUNT),
+                accountService.trySend(new SendDto(email, "try-nobody@example.com", CurrencyEnum.USD, "1")).getError());
+        assertSame(CustomException.of(ErrorCode.NO_SUCH_CURRENCY),
+                accountService.trySwap(new SwapDto(email, CurrencyEnum.USD, CurrencyEnum.CAD, "1")).getError());
+        // the throwing methods report the same errors
+        CustomException exception = assertThrows(CustomException.class,
+                () -> accountService.deposit(new DepositDto(email, CurrencyEnum.USD, "abc")));
+        assertEquals(ErrorCode.INVALID_AMOUNT, exception.getCode());
+        assertEquals(new BigDecimal("0.00"), accountService.find(email).getBalances().get(CurrencyEnum.USD));
+    }
+
     @Test
     void testSend_ShouldThrowErrorIfThereIsNoBalanceForCurrency() {
         // Creating from account with USD Balance a deposit 50usd
@@ -281,7 +430,7 @@ class AccountServiceImplTest {
         BigDecimal amount = new BigDecimal("50.00");
 
         // Call swap method
-        Transaction transaction = accountService.swap(new SwapDto(email, fromCurrency, toCurrency, amount.toString()));
+        TransactionDto transaction = accountService.swap(new SwapDto(email, fromCurrency, toCurrency, amount.toString()));
         // get rates
         ExchangeRateResponseDto exchangeRateResponseDto = ratesService.getConversionRate(new ExchangeRateRequestDto(fromCurrency, toCurrency));
         // checks
@@ -289,19 +438,22 @@ class AccountServiceImplTest {
         assertNotNull(transaction);
         assertEquals(TransactionTypeEnum.SWAP, transaction.getType());
         assertEquals(LocalDate.now(), transaction.getCreatedAt());
-        assertEquals(accountResponseDto.getEmail(), transaction.getFromAccount().getEmail());
+        assertEquals(accountResponseDto.getEmail(), transaction.getFromEmail());
         assertEquals(fromCurrency, transaction.getFromCurrency());
         assertEquals(toCurrency, transaction.getToCurrency());
         assertEquals(fromCurrency, transaction.getServiceCurrency());
         assertEquals(amount, transaction.getFromAmount());
-        // fee amount will be a % of the total amount (defined by SERVICE_FEE)
-        BigDecimal feeAmount = new BigDecimal(SERVICE_FEE).multiply(amount);
+        // fee amount will be a % of the total amount (defined by SERVICE_FEE), rounded half-up to the cent
+        BigDecimal feeAmount = new BigDecimal(SERVICE_FEE).multiply(amount).setScale(2, RoundingMode.HALF_UP);
         assertEquals(feeAmount, transaction.getServiceFeeAmount());
         // remaining amount (on FROM currency)
         BigDecimal remainingAmountToBeExchanged = amount.subtract(feeAmount);
-        // receivingAmount is the actual amount the receiver will get
-        BigDecimal receivingAmount = remainingAmountToBeExchanged.multiply(new BigDecimal(exchangeRateResponseDto.getRate()));
+        // receivingAmount is the actual amount the receiver will get, rounded down to the cent
+        BigDecimal receivingAmount = remainingAmountToBeExchanged.multiply(new BigDecimal(exchangeRateResponseDto.getRate()))
+                .setScale(2, RoundingMode.DOWN);
         assertEquals(receivingAmount, transaction.getToAmount());
+        // the swap records which version of the rates it used
+        assertEquals(exchangeRateResponseDto.getRateVersion(), transaction.getRateVersion());
     }
 
     @Test
@@ -332,4 +484,154 @@ class AccountServiceImplTest {
         assertThrows(CustomException.class, () -> accountService.swap(new SwapDto(email, fromCurrency, toCurrency, amount.toString())));
     }
 
-}
\ No newline at end of file
+    @Test
+    void testBatch_NotAtomic_AppliesValidOperationsAndReportsFailures() {
+        String fromEmail = "batch-from@example.com";
+        String toEmail = "batch-to@example.com";
+        accountService.create(new AccountRequestDto(fromEmail));
+        accountService.createBalance(new CreateBalanceDto(fromEmail, CurrencyEnum.USD));
+        accountService.createBalance(new CreateBalanceDto(fromEmail, CurrencyEnum.CAD));
+        accountService.create(new AccountRequestDto(toEmail));
+        accountService.createBalance(new CreateBalanceDto(toEmail, CurrencyEnum.USD));
+
+        BatchResponseDto response = accountService.batch(new BatchRequestDto(false, List.of(
+                BatchOperationDto.deposit(new DepositDto(fromEmail, CurrencyEnum.USD, "100")),
+                BatchOperationDto.send(new SendDto(fromEmail, toEmail, CurrencyEnum.USD, "30")),
+                // more than what is left
+                BatchOperationDto.send(new SendDto(fromEmail, toEmail, CurrencyEnum.USD, "80")),
+                BatchOperationDto.deposit(new DepositDto("batch-nobody@example.com", CurrencyEnum.USD, "1")),
+                BatchOperationDto.swap(new SwapDto(fromEmail, CurrencyEnum.USD, CurrencyEnum.CAD, "10")))));
+
+        assertEquals(3, response.getSucceeded());
+        assertEquals(2, response.getFailed());
+        assertTrue(response.getResults().get(0).isSuccess());
+        assertTrue(response.getResults().get(1).isSuccess());
+        assertEquals(ErrorCode.INSUFFICIENT_AMOUNT.getCode(), response.getResults().get(2).getErrorCode());
+        assertEquals(ErrorCode.NO_SUCH_ACCOUNT.getCode(), response.getResults().get(3).getErrorCode());
+        assertEquals(TransactionTypeEnum.SWAP, response.getResults().get(4).getTransaction().getType());
+        assertEquals(new BigDecimal("60.00"), accountService.find(fromEmail).getBalances().get(CurrencyEnum.USD));
+        assertEquals(new BigDecimal("30.00"), accountService.find(toEmail).getBalances().get(CurrencyEnum.USD));
+        // the applied operations were journaled in order
+        assertEquals(3, accountService.getTransactions(fromEmail).size());
+        assertEquals(1, accountService.getTransactions(toEmail).size());
+    }
+
+    @Test
+    void testBatch_Atomic_AppliesNothingWhenAnOperationFails() {
+        String fromEmail = "atomic-batch-from@example.com";
+        String toEmail = "atomic-batch-to@example.com";
+        accountService.create(new AccountRequestDto(fromEmail));
+        accountService.createBalance(new CreateBalanceDto(fromEmail, CurrencyEnum.USD));
+        accountService.deposit(new DepositDto(fromEmail, CurrencyEnum.USD, "50"));
+        accountService.create(new AccountRequestDto(toEmail));
+        accountService.createBalance(new CreateBalanceDto(toEmail, CurrencyEnum.USD));
+
+        BatchResponseDto response = accountService.batch(new BatchRequestDto(true, List.of(
+                BatchOperationDto.deposit(new DepositDto(toEmail, CurrencyEnum.USD, "5")),
+                BatchOperationDto.send(new SendDto(fromEmail, toEmail, CurrencyEnum.USD, "40")),
+                // fails once the first send was applied
+                BatchOperationDto.send(new SendDto(fromEmail, toEmail, CurrencyEnum.USD, "20")))));
+
+        assertEquals(0, response.getSucceeded());
+        assertEquals(ErrorCode.BATCH_ABORTED.getCode(), response.getResults().get(0).getErrorCode());
+        assertEquals(ErrorCode.BATCH_ABORTED.getCode(), response.getResults().get(1).getErrorCode());
+        assertEquals(ErrorCode.INSUFFICIENT_AMOUNT.getCode(), response.getResults().get(2).getErrorCode());
+        // the balances are untouched and nothing was journaled
+        assertEquals(new BigDecimal("50.00"), accountService.find(fromEmail).getBalances().get(CurrencyEnum.USD));
+        assertEquals(new BigDecimal("0.00"), accountService.find(toEmail).getBalances().get(CurrencyEnum.USD));
+        assertEquals(1, accountService.getTransactions(fromEmail).size());
+        assertTrue(accountService.getTransactions(toEmail).isEmpty());
+
+        // without the failing operation the batch goes through
+        response = accountService.batch(new BatchRequestDto(true, List.of(
+                BatchOperationDto.deposit(new DepositDto(toEmail, CurrencyEnum.USD, "5")),
+                BatchOperationDto.send(new SendDto(fromEmail, toEmail, CurrencyEnum.USD, "40")))));
+        assertEquals(2, response.getSucceeded());
+        assertEquals(new BigDecimal("10.00"), accountService.find(fromEmail).getBalances().get(CurrencyEnum.USD));
+        assertEquals(new BigDecimal("45.00"), accountService.find(toEmail).getBalances().get(CurrencyEnum.USD));
+    }
+
+    @Test
+    void testBatch_EmptyAtomicBatch_SucceedsWithNoResults() {
+        BatchResponseDto response = accountService.batch(new BatchRequestDto(true, List.of()));
+
+        assertTrue(response.isAtomic());
+        assertEquals(0, response.getSucceeded());
+        assertEquals(0, response.getFailed());
+        assertTrue(response.getResults().isEmpty());
+    }
+
+    @Test
+    void testBatch_OperationWithoutPayload_IsInvalid() {
+        BatchResponseDto response = accountService.batch(new BatchRequestDto(false, List.of(new BatchOperationDto())));
+
+        assertEquals(ErrorCode.INVALID_BATCH_OPERATION.getCode(), response.getResults().get(0).getErrorCode());
+    }
+
+    @Test
+    void testBatch_NullOperation_IsInvalidAndAbortsAnAtomicBatch() {
+        String email = "null-batch@example.com";
+        accountService.create(new AccountRequestDto(email));
+        accountService.createBalance(new CreateBalanceDto(email, CurrencyEnum.USD));
+        // e.g. "operations": [{"deposit": ...}, null]
+        List<BatchOperationDto> operations = Arrays.asList(BatchOperationDto.deposit(new DepositDto(email, CurrencyEnum.USD, "5")), null);
+
+        BatchResponseDto response = accountService.batch(new BatchRequestDto(true, operations));
+
+        assertEquals(0, response.getSucceeded());
+        assertEquals(ErrorCode.BATCH_ABORTED.getCode(), response.getResults().get(0).getErrorCode());
+        assertEquals(ErrorCode.INVALID_BATCH_OPERATION.getCode(), response.getResults().get(1).getErrorCode());
+        assertEquals(new BigDecimal("0.00"), accountService.find(email).getBalances().get(CurrencyEnum.USD));
+
+        // without atomicity only the null operation fails
+        response = accountService.batch(new BatchRequestDto(false, operations));
+
+        assertEquals(1, response.getSucceeded());
+        assertEquals(ErrorCode.INVALID_BATCH_OPERATION.getCode(), response.getResults().get(1).getErrorCode());
+        assertEquals(new BigDecimal("5.00"), accountService.find(email).getBalances().get(CurrencyEnum.USD));
+    }
+
+    @Test
+    void testPayInterest_CommitsTheWholeChunkAsOneRecord() {
+        Account first = payableAccount("chunk-first@me.com", "10");
+        Account second = payableAccount("chunk-second@me.com", "20");
+        InMemoryService journal = mock(InMemoryService.class);
+
+        // paying both balances, the second one without a payout (its period is still closed)
+        int paid = accountService.payInterest(new Account[]{first, second}, new CurrencyEnum[]{CurrencyEnum.USD, CurrencyEnum.USD},
+                new long[]{42, 0}, 2, YearMonth.now(), LocalDate.now(), new LedgerCommit(journal));
+
+        assertEquals(1, paid);
+        // both balances and the single payout transaction are in the same record
+        verify(journal, times(1)).commit(argThat(changes -> changes.size() == 2), argThat(transactions -> transactions.size() == 1));
+        assertEquals(new BigDecimal("10.42"), first.getBalances().get(CurrencyEnum.USD).getAmount());
+        assertEquals(YearMonth.now(), second.getBalances().get(CurrencyEnum.USD).getLastInterestPayout());
+    }
+
+    @Test
+    void testPayInterest_CommitFails_PaysNothing() {
+        Account first = payableAccount("chunk-failed-first@me.com", "10");
+        Account second = payableAccount("chunk-failed-second@me.com", "20");
+        InMemoryService journal = mock(InMemoryService.class);
+        when(journal.commit(anyList(), anyList())).thenThrow(new IllegalStateException("disk is gone"));
+
+        assertThrows(IllegalStateException.class, () -> accountService.payInterest(new Account[]{first, second},
+                new CurrencyEnum[]{CurrencyEnum.USD, CurrencyEnum.USD}, new long[]{42, 42}, 2, YearMonth.now(), LocalDate.now(),
+                new LedgerCommit(journal)));
+
+        // nothing was committed, so every balance is as before and can still be paid
+        assertEquals(new BigDecimal("10.00"), first.getBalances().get(CurrencyEnum.USD).getAmount());
+        assertEquals(new BigDecimal("20.00"), second.getBalances().get(CurrencyEnum.USD).getAmount());
+        assertNull(first.getBalances().get(CurrencyEnum.USD).getLastInterestPayout());
+        assertNull(second.getBalances().get(CurrencyEnum.USD).getLastInterestPayout());
+    }
+
+    // account with a USD balance holding an amount
+    private Account payableAccount(String email, String amount) {
+        accountService.create(new AccountRequestDto(email));
+        accountService.createBalance(new CreateBalanceDto(email, CurrencyEnum.USD));
+        accountService.deposit(new DepositDto(email, CurrencyEnum.USD, amount));
+        return inMemoryService.getAccount(email);
+    }
+
+}
@@ -0,0 +1,260 @@
+package com.account.springboot.services;
+
+import com.account.springboot.dto.AccountRequestDto;
+import com.account.springboot.exceptions.CustomException;
+import com.account.springboot.models.Account;
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.models.Money;
+import com.account.springboot.models.Transaction;
+import com.account.springboot.models.TransactionTypeEnum;
+import com.account.springboot.storage.LedgerRecordCodec;
+import com.account.springboot.storage.LedgerSnapshots;
+import com.account.springboot.storage.WriteAheadLog;
+import com.account.springboot.util.AccountIds;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DurableInMemoryServiceImplTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRestart_RestoresAccountsAndTransactions() {
+        DurableInMemoryServiceImpl service = newService(4096);
+        // Creating an account and depositing 10.50 USD
+        String email = "durable@me.com";
+        Account account = createAccount(service, email);
+        deposit(service, account, "10.50");
+        service.close();
+
+        // "restarting" the service on the same directories
+        DurableInMemoryServiceImpl restarted = newService(4096);
+        Account restored = restarted.getAccount(email);
+        List<Transaction> transactions = restarted.getTransactions(email);
+
+        // the balance and the history are back
+        assertEquals(new BigDecimal("10.50"), restored.getBalances().get(CurrencyEnum.USD).getAmount());
+        assertEquals(1, transactions.size());
+        assertEquals(TransactionTypeEnum.DEPOSIT, transactions.get(0).getType());
+        // referencing the restored account by the id it was given in the new ledger
+        assertEquals(restored.getId(), transactions.get(0).getFromAccountId());
+        assertNotNull(restarted.getRecoveryTime());
+        restarted.close();
+    }
+
+    @Test
+    public void testRestart_FromSnapshotAndWalTail() throws Exception {
+        // small segments, so the snapshots let old segments go
+        DurableInMemoryServiceImpl service = newService(512);
+        String firstEmail = "snapshot-first@me.com";
+        Account first = createAccount(service, firstEmail);
+        for (int i = 0; i < 10; i++) {
+            deposit(service, first, "1");
+        }
+        service.takeSnapshot();
+        // changes after the first snapshot
+        String secondEmail = "snapshot-second@me.com";
+        Account second = createAccount(service, secondEmail);
+        deposit(service, second, "5");
+        deposit(service, first, "2");
+        service.takeSnapshot();
+        // changes only in the WAL tail
+        deposit(service, second, "7");
+        service.close();
+
+        DurableInMemoryServiceImpl restarted = newService(512);
+
+        // the state is the same as before the restart
+        assertEquals(new BigDecimal("12.00"), restarted.getAccount(firstEmail).getBalances().get(CurrencyEnum.USD).getAmount());
+        assertEquals(new BigDecimal("12.00"), restarted.getAccount(secondEmail).getBalances().get(CurrencyEnum.USD).getAmount());
+        assertEquals(11, restarted.getTransactions(firstEmail).size());
+        assertEquals(2, restarted.getTransactions(secondEmail).size());
+        // the first segments were deleted after the snapshots
+        try (Stream<Path> segments = Files.list(directory.resolve("wal"))) {
+            assertTrue(segments.noneMatch(path -> path.getFileName().toString().equals(String.format("%020d.log", 0))));
+        }
+        restarted.close();
+    }
+
+    @Test
+    public void testSnapshot_AfterARestart_KeepsTheTransactionsOfTheLoadedSnapshot() {
+        DurableInMemoryServiceImpl service = newService(4096);
+        String email = "snapshot-restart@me.com";
+        Account account = createAccount(service, email);
+        deposit(service, account, "3");
+        service.takeSnapshot();
+        service.close();
+
+        // the next snapshot is built from the one loaded on startup, copying its transactions
+        DurableInMemoryServiceImpl restarted = newService(4096);
+        deposit(restarted, restarted.getAccount(email), "4");
+        restarted.takeSnapshot();
+        restarted.close();
+
+        DurableInMemoryServiceImpl again = newService(4096);
+        assertEquals(new BigDecimal("7.00"), again.getAccount(email).getBalances().get(CurrencyEnum.USD).getAmount());
+        assertEquals(2, again.getTransactions(email).size());
+        again.close();
+    }
+
+    @Test
+    public void testRestart_CrashWhileWritingASend_RecoversNeitherSide() throws Exception {
+        DurableInMemoryServiceImpl service = newService(4096);
+        Account sender = createAccount(service, "crash-sender@me.com");
+        deposit(service, sender, "10");
+        Account receiver = createAccount(service, "crash-receiver@me.com");
+        // sending 4 USD: the debit, the credit and the transaction are committed together
+        LedgerCommit commit = new LedgerCommit(service);
+        Account.transfer(sender, CurrencyEnum.USD, 400, receiver, CurrencyEnum.USD, 400, commit.journal(List.of(Transaction.builder()
+                .fromAccountId(sender.getId())
+                .toAccountId(receiver.getId())
+                .fromCurrency(CurrencyEnum.USD)
+                .toCurrency(CurrencyEnum.USD)
+                .serviceCurrency(CurrencyEnum.USD)
+                .fromAmountMinor(400)
+                .toAmountMinor(400)
+                .serviceFeeAmountMinor(0)
+                .type(TransactionTypeEnum.TRANSFER)
+                .createdAt(LocalDate.now())
+                .build())));
+        commit.awaitDurable();
+        service.close();
+
+        // the crash: the end of the send never reached the disk
+        tearLastRecord();
+        DurableInMemoryServiceImpl restarted = newService(4096);
+
+        // the ledger is back to before the send, not debited without being credited
+        assertEquals(new BigDecimal("10.00"), restarted.getAccount("crash-sender@me.com").getBalances().get(CurrencyEnum.USD).getAmount());
+        assertEquals(new BigDecimal("0.00"), restarted.getAccount("crash-receiver@me.com").getBalances().get(CurrencyEnum.USD).getAmount());
+        assertEquals(1, restarted.getTransactions("crash-sender@me.com").size());
+        assertTrue(restarted.getTransactions("crash-receiver@me.com").isEmpty());
+        restarted.close();
+    }
+
+    @Test
+    public void testRestart_AfterDepositsRacingTheCreationOfTheirAccounts_RecoversEveryAccount() throws Exception {
+        int accounts = 50;
+        // appending the record of a new account takes a while, so a deposit waiting for the account would
+        // journal its balance first if the account was published before its record was appended
+        AtomicReference<Thread> slowThread = new AtomicReference<>();
+        WriteAheadLog wal = new WriteAheadLog(directory.resolve("wal"), 1 << 20, LedgerRecordCodec.FORMAT_VERSION) {
+            @Override
+            public long append(Supplier<byte[]> encoder) {
+                if (Thread.currentThread() == slowThread.get()) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(2));
+                }
+                return super.append(encoder);
+            }
+        };
+        DurableInMemoryServiceImpl service = new DurableInMemoryServiceImpl(new AccountIds(), wal,
+                new LedgerSnapshots(directory.resolve("snapshots")));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> creations = executor.submit(() -> {
+            slowThread.set(Thread.currentThread());
+            for (int i = 0; i < accounts; i++) {
+                service.addAccount("race-" + i + "@me.com", new Account(new AccountRequestDto("race-" + i + "@me.com")));
+            }
+        });
+        // opening a balance and depositing as soon as every account shows up
+        Future<?> deposits = executor.submit(() -> {
+            for (int i = 0; i < accounts; i++) {
+                Account account = null;
+                while (account == null) {
+                    try {
+                        account = service.getAccount("race-" + i + "@me.com");
+                    } catch (CustomException exception) {
+                        Thread.onSpinWait();
+                    }
+                }
+                LedgerCommit commit = new LedgerCommit(service);
+                account.addBalance(CurrencyEnum.USD, new BigDecimal("0.025"), commit.journal(List.of()));
+                commit.awaitDurable();
+                deposit(service, account, "1");
+            }
+        });
+        creations.get(30, TimeUnit.SECONDS);
+        deposits.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+        // a snapshot folds the same records as a restart
+        service.takeSnapshot();
+        deposit(service, service.getAccount("race-0@me.com"), "1");
+        service.close();
+
+        // every account record is in the WAL before any change of its balances
+        DurableInMemoryServiceImpl restarted = newService(1 << 20);
+        for (int i = 0; i < accounts; i++) {
+            BigDecimal expected = new BigDecimal(i == 0 ? "2.00" : "1.00");
+            assertEquals(expected, restarted.getAccount("race-" + i + "@me.com").getBalances().get(CurrencyEnum.USD).getAmount());
+        }
+        restarted.close();
+    }
+
+    // flips the last byte of the last WAL record, as if the write was torn
+    private void tearLastRecord() throws IOException {
+        Path walDirectory = directory.resolve("wal");
+        long[] lastLsn = new long[1];
+        WriteAheadLog wal = new WriteAheadLog(walDirectory, 4096, LedgerRecordCodec.FORMAT_VERSION);
+        wal.replay(0, (lsn, payload) -> lastLsn[0] = lsn);
+        wal.close();
+        Path segment;
+        try (Stream<Path> segments = Files.list(walDirectory)) {
+            segment = segments.sorted().reduce((first, second) -> second).orElseThrow();
+        }
+        String name = segment.getFileName().toString();
+        int offset = (int) (lastLsn[0] - Long.parseLong(name.substring(0, name.length() - ".log".length()))) - 1;
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[offset] ^= 0xFF;
+        Files.write(segment, bytes);
+    }
+
+    private DurableInMemoryServiceImpl newService(int segmentSize) {
+        // every "restart" starts with new account ids, as a new process would
+        return new DurableInMemoryServiceImpl(new AccountIds(), directory.resolve("wal").toString(), segmentSize,
+                directory.resolve("snapshots").toString());
+    }
+
+    private static Account createAccount(DurableInMemoryServiceImpl service, String email) {
+        Account account = new Account(new AccountRequestDto(email));
+        service.addAccount(email, account);
+        account.addBalance(CurrencyEnum.USD, new BigDecimal("0.025"));
+        service.upsertAccount(email, account);
+        return account;
+    }
+
+    // deposits the way the account service does, the balance and the transaction are committed together
+    private static void deposit(DurableInMemoryServiceImpl service, Account account, String amount) {
+        LedgerCommit commit = new LedgerCommit(service);
+        account.updateBalance(CurrencyEnum.USD, Money.parse(amount, CurrencyEnum.USD), commit.journal(List.of(Transaction.builder()
+                .fromAccountId(account.getId())
+                .toAccountId(account.getId())
+                .fromCurrency(CurrencyEnum.USD)
+                .toCurrency(CurrencyEnum.USD)
+                .serviceCurrency(CurrencyEnum.USD)
+                .fromAmountMinor(Money.parse(amount, CurrencyEnum.USD))
+                .toAmountMinor(Money.parse(amount, CurrencyEnum.USD))
+                .serviceFeeAmountMinor(0)
+                .type(TransactionTypeEnum.DEPOSIT)
+                .createdAt(LocalDate.now())
+                .build())));
+        commit.awaitDurable();
+    }
+}
@@ -0,0 +1,67 @@
+package com.account.springboot.services;
+
+import com.account.springboot.dto.AccountRequestDto;
+import com.account.springboot.exceptions.CustomException;
+import com.account.springboot.models.Account;
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.models.Transaction;
+import com.account.springboot.models.TransactionTypeEnum;
+import com.account.springboot.util.AccountIds;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapInMemoryServiceImplTest {
+
+    @Test
+    public void testGetTransactions_ReturnsHistoryOfEachAccount() {
+        OffHeapInMemoryServiceImpl service = new OffHeapInMemoryServiceImpl(new AccountIds(), 8);
+        Account sender = createAccount(service, "offheap-sender@me.com");
+        Account receiver = createAccount(service, "offheap-receiver@me.com");
+
+        // 20 sends, spread over 3 segments
+        for (int i = 1; i <= 20; i++) {
+            service.addTransaction(Transaction.builder()
+                    .fromAccountId(sender.getId())
+                    .toAccountId(receiver.getId())
+                    .fromCurrency(CurrencyEnum.USD)
+                    .toCurrency(CurrencyEnum.USD)
+                    .serviceCurrency(CurrencyEnum.USD)
+                    .fromAmountMinor(i * 100L)
+                    .toAmountMinor(i * 100L)
+                    .type(TransactionTypeEnum.TRANSFER)
+                    .createdAt(LocalDate.now())
+                    .build());
+        }
+
+        // both accounts see every send, rebuilt with the ids and decimal amounts of the api
+        List<Transaction> history = service.getTransactions(receiver.getEmail());
+        assertEquals(20, history.size());
+        assertEquals(sender.getId(), history.get(0).getFromAccountId());
+        assertEquals(receiver.getId(), history.get(0).getToAccountId());
+        assertEquals(new BigDecimal("1.00"), history.get(0).getFromAmount());
+        List<Transaction> page = service.getTransactions(sender.getEmail(), 15, 10);
+        assertEquals(5, page.size());
+        assertEquals(new BigDecimal("16.00"), page.get(0).getToAmount());
+        Iterator<Transaction> iterator = service.iterateTransactions(sender.getEmail());
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        assertEquals(20, count);
+        assertThrows(CustomException.class, () -> service.getTransactions("offheap-nobody@me.com"));
+    }
+
+    private static Account createAccount(InMemoryService service, String email) {
+        Account account = new Account(new AccountRequestDto(email));
+        account.addBalance(CurrencyEnum.USD, new BigDecimal("0.025"));
+        service.addAccount(email, account);
+        return account;
+    }
+}
@@ -0,0 +1,74 @@
+package com.account.springboot.services;
+
+import com.account.springboot.dto.ExchangeRateRequestDto;
+import com.account.springboot.dto.ExchangeRateResponseDto;
+import com.account.springboot.exceptions.CustomException;
+import com.account.springboot.exceptions.ErrorCode;
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.models.Money;
+import com.account.springboot.models.RateSnapshot;
+import com.account.springboot.storage.HistoricalRatesStore;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RatesServiceImplTest {
+
+    private final RatesServiceImpl ratesService = new RatesServiceImpl();
+
+    @Test
+    public void getConversionRate_ReturnsRateFromCurrentSnapshot() {
+        ExchangeRateResponseDto response = ratesService.getConversionRate(new ExchangeRateRequestDto(CurrencyEnum.USD, CurrencyEnum.CAD));
+
+        assertEquals("1.36", response.getRate());
+        assertEquals(CurrencyEnum.CAD, response.getTargetCurrency());
+        assertEquals(ratesService.currentRates().getVersion(), response.getRateVersion());
+        assertEquals(Money.Factor.parse("1.36"), ratesService.currentRates().getRate(CurrencyEnum.USD, CurrencyEnum.CAD));
+        // there is no rate from a currency to itself
+        assertNull(ratesService.currentRates().getRate(CurrencyEnum.USD, CurrencyEnum.USD));
+    }
+
+    @Test
+    public void refreshRates_SwapsInNewSnapshotWithNextVersion() {
+        RateSnapshot before = ratesService.currentRates();
+
+        RateSnapshot after = ratesService.refreshRates(Map.of("USDCAD", "1.40"));
+
+        assertEquals(before.getVersion() + 1, after.getVersion());
+        assertSame(after, ratesService.currentRates());
+        assertEquals("1.40", ratesService.getConversionRate(new ExchangeRateRequestDto(CurrencyEnum.USD, CurrencyEnum.CAD)).getRate());
+        // the old snapshot is untouched, so a swap that already read it keeps consistent rates
+        assertEquals("1.36", before.getQuote(CurrencyEnum.USD, CurrencyEnum.CAD));
+        assertNull(after.getRate(CurrencyEnum.CAD, CurrencyEnum.USD));
+    }
+
+    @Test
+    public void getConversionRate_WithPastDate_UsesHistoricalRate() throws Exception {
+        HistoricalRatesStore history = HistoricalRatesStore.load(new StringReader("2023-05-05,USD,CAD,1.3500\n"));
+        RatesServiceImpl historicalRatesService = new RatesServiceImpl(history);
+
+        ExchangeRateResponseDto response = historicalRatesService.getConversionRate(
+                new ExchangeRateRequestDto(CurrencyEnum.USD, CurrencyEnum.CAD, LocalDate.of(2023, 5, 7)));
+
+        assertEquals("1.3500", response.getRate());
+        assertEquals(LocalDate.of(2023, 5, 5), response.getDate());
+        // no rate that far back
+        CustomException exception = assertThrows(CustomException.class, () -> historicalRatesService.getConversionRate(
+                new ExchangeRateRequestDto(CurrencyEnum.USD, CurrencyEnum.CAD, LocalDate.of(2020, 1, 1))));
+        assertEquals(ErrorCode.RATE_NOT_FOUND, exception.getCode());
+    }
+
+    @Test
+    public void getFactorAsOf_UsesLatestHistoricalRateOnOrBeforeTheDate() throws Exception {
+        HistoricalRatesStore history = HistoricalRatesStore.load(new StringReader("2023-05-04,CAD,USD,0.7340\n2023-05-05,CAD,USD,0.7351\n"));
+        RatesServiceImpl historicalRatesService = new RatesServiceImpl(history);
+
+        assertEquals(Money.Factor.parse("0.7351"), historicalRatesService.getFactorAsOf(CurrencyEnum.CAD, CurrencyEnum.USD, LocalDate.of(2023, 5, 7)));
+        assertEquals(Money.Factor.parse("0.734"), historicalRatesService.getFactorAsOf(CurrencyEnum.CAD, CurrencyEnum.USD, LocalDate.of(2023, 5, 4)));
+        assertNull(historicalRatesService.getFactorAsOf(CurrencyEnum.CAD, CurrencyEnum.USD, LocalDate.of(2023, 5, 3)));
+    }
+}
@@ -0,0 +1,178 @@
+package com.account.springboot.services;
+
+import com.account.springboot.exceptions.CustomException;
+import com.account.springboot.exceptions.ErrorCode;
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.models.Money;
+import com.account.springboot.models.RateSnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// runs the remote rates service against a stub provider on a local port
+class RemoteRatesServiceImplTest {
+
+    private HttpServer server;
+    private volatile String usdCad = "1.36";
+    private volatile long delayMs;
+    private volatile int status = 200;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/rates", exchange -> {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = ("{\"date\": \"2023-05-05\", \"rates\": {\"USDCAD\": \"" + usdCad + "\"}}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private RemoteRatesServiceImpl newService(long ttlMs, long maxStalenessMs, long timeoutMs, int maxWaitingRequests) {
+        return new RemoteRatesServiceImpl("http://127.0.0.1:" + server.getAddress().getPort() + "/rates",
+                ttlMs, 0.8, maxStalenessMs, timeoutMs, maxWaitingRequests, "", new ObjectMapper());
+    }
+
+    @Test
+    public void currentRates_ManyCallersOnColdCache_ShareOneRequest() throws Exception {
+        delayMs = 300;
+        RemoteRatesServiceImpl ratesService = newService(60_000, 600_000, 5_000, 64);
+
+        // running task
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<RateSnapshot>> futures = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            futures.add(executor.submit(ratesService::currentRates));
+        }
+        for (Future<RateSnapshot> future : futures) {
+            assertEquals(Money.Factor.parse("1.36"), future.get(10, TimeUnit.SECONDS).getRate(CurrencyEnum.USD, CurrencyEnum.CAD));
+        }
+        executor.shutdown();
+
+        assertEquals(1, ratesService.getFetchCount());
+    }
+
+    @Test
+    public void currentRates_StaleRates_AreServedWhileRefreshing() throws Exception {
+        RemoteRatesServiceImpl ratesService = newService(100, 60_000, 5_000, 64);
+        RateSnapshot first = ratesService.currentRates();
+        usdCad = "1.40";
+        delayMs = 500;
+        Thread.sleep(150);
+
+        // the rates are past their ttl: the old ones come back right away and a refresh starts
+        long start = System.nanoTime();
+        assertSame(first, ratesService.currentRates());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < delayMs);
+
+        // eventually the refreshed rates are served, with a new version
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        RateSnapshot refreshed = first;
+        while (refreshed == first && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            refreshed = ratesService.currentRates();
+        }
+        assertEquals(first.getVersion() + 1, refreshed.getVersion());
+        assertEquals(Money.Factor.parse("1.40"), refreshed.getRate(CurrencyEnum.USD, CurrencyEnum.CAD));
+    }
+
+    @Test
+    public void currentRates_ProviderDownWithoutUsableRates_FailsWithRatesUnavailable() throws Exception {
+        status = 500;
+        RemoteRatesServiceImpl ratesService = newService(100, 200, 500, 64);
+
+        CustomException exception = assertThrows(CustomException.class, ratesService::currentRates);
+        assertEquals(ErrorCode.RATES_UNAVAILABLE, exception.getCode());
+    }
+
+    @Test
+    public void currentRates_SlowProvider_TimesOutAndBulkheadRejectsTheRest() throws Exception {
+        delayMs = 2_000;
+        RemoteRatesServiceImpl ratesService = newService(60_000, 600_000, 300, 1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(executor.submit(ratesService::currentRates));
+        }
+        // every caller fails: one waited up to the timeout, the others were rejected by the bulkhead
+        for (Future<?> future : futures) {
+            Exception exception = assertThrows(Exception.class, () -> future.get(10, TimeUnit.SECONDS));
+            assertEquals(ErrorCode.RATES_UNAVAILABLE, ((CustomException) exception.getCause()).getCode());
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void currentRatesAsync_ColdCache_CompletesLaterWithoutBlockingTheCaller() throws Exception {
+        delayMs = 300;
+        RemoteRatesServiceImpl ratesService = newService(60_000, 600_000, 5_000, 64);
+
+        // running task
+        long start = System.nanoTime();
+        List<CompletableFuture<RateSnapshot>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(ratesService.currentRatesAsync());
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < delayMs);
+
+        for (CompletableFuture<RateSnapshot> future : futures) {
+            assertEquals(Money.Factor.parse("1.36"), future.get(10, TimeUnit.SECONDS).getRate(CurrencyEnum.USD, CurrencyEnum.CAD));
+        }
+        assertEquals(1, ratesService.getFetchCount());
+    }
+
+    @Test
+    public void currentRatesAsync_SlowProvider_FailsWithRatesUnavailable() {
+        delayMs = 2_000;
+        RemoteRatesServiceImpl ratesService = newService(60_000, 600_000, 300, 1);
+
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> ratesService.currentRatesAsync().get(10, TimeUnit.SECONDS));
+        assertEquals(ErrorCode.RATES_UNAVAILABLE, ((CustomException) exception.getCause()).getCode());
+    }
+
+    @Test
+    public void currentRates_RequestRejectedBeforeSending_RetriesLater() throws Exception {
+        // the client refuses to even send a request with this scheme, the warm-up refresh fails right away
+        RemoteRatesServiceImpl ratesService = new RemoteRatesServiceImpl("ftp://127.0.0.1/rates",
+                60_000, 0.8, 600_000, 100, 64, "", new ObjectMapper());
+
+        // waiting until the provider can be called again, the failed refresh didn't stay in flight
+        Thread.sleep(200);
+        CustomException exception = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(CustomException.class, ratesService::currentRates));
+        assertEquals(ErrorCode.RATES_UNAVAILABLE, exception.getCode());
+        assertEquals(2, ratesService.getFetchCount());
+    }
+}
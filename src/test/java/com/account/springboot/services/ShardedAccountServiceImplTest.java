@@ -0,0 +1,210 @@
+package com.account.springboot.services;
+
+import com.account.springboot.dto.*;
+import com.account.springboot.exceptions.CustomException;
+import com.account.springboot.exceptions.ErrorCode;
+import com.account.springboot.models.Account;
+import com.account.springboot.models.CurrencyEnum;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {"ledger.engine=sharded", "ledger.engine.shards=4"})
+class ShardedAccountServiceImplTest {
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private InMemoryService inMemoryService;
+
+    @Test
+    public void testEngine_ShardedPropertySet_UsesShardedService() {
+        assertInstanceOf(ShardedAccountServiceImpl.class, accountService);
+    }
+
+    @Test
+    public void testSend_ConcurrentSendsAcrossShards_KeepTheTotal() throws Exception {
+        int accounts = 8;
+        List<String> emails = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            String email = "sharded-" + i + "@example.com";
+            accountService.create(new AccountRequestDto(email));
+            accountService.createBalance(new CreateBalanceDto(email, CurrencyEnum.USD));
+            accountService.deposit(new DepositDto(email, CurrencyEnum.USD, "100"));
+            emails.add(email);
+        }
+
+        // running task
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 2_000; i++) {
+                    String from = emails.get(random.nextInt(accounts));
+                    String to = emails.get(random.nextInt(accounts));
+                    try {
+                        accountService.send(new SendDto(from, to, CurrencyEnum.USD, String.valueOf(random.nextInt(1, 30))));
+                    } catch (CustomException exception) {
+                        assertEquals(ErrorCode.INSUFFICIENT_AMOUNT, exception.getCode());
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // no money was created or lost
+        BigDecimal total = BigDecimal.ZERO;
+        for (String email : emails) {
+            BigDecimal amount = accountService.find(email).getBalances().get(CurrencyEnum.USD);
+            assertTrue(amount.signum() >= 0);
+            total = total.add(amount);
+        }
+        assertEquals(0, new BigDecimal("800").compareTo(total));
+    }
+
+    @Test
+    public void testSend_ReceiverWithoutBalance_DoesNotDebitTheSender() {
+        String fromEmail = "sharded-refund-from@example.com";
+        accountService.create(new AccountRequestDto(fromEmail));
+        accountService.createBalance(new CreateBalanceDto(fromEmail, CurrencyEnum.USD));
+        accountService.deposit(new DepositDto(fromEmail, CurrencyEnum.USD, "50"));
+        // trying receivers until one is on another shard, so the send goes through the two-phase handoff
+        for (int i = 0; i < 16; i++) {
+            String toEmail = "sharded-refund-to-" + i + "@example.com";
+            accountService.create(new AccountRequestDto(toEmail));
+            accountService.createBalance(new CreateBalanceDto(toEmail, CurrencyEnum.CAD));
+
+            CustomException exception = assertThrows(CustomException.class,
+                    () -> accountService.send(new SendDto(fromEmail, toEmail, CurrencyEnum.USD, "10")));
+            assertEquals(ErrorCode.NO_SUCH_CURRENCY, exception.getCode());
+        }
+        assertEquals(new BigDecimal("50.00"), accountService.find(fromEmail).getBalances().get(CurrencyEnum.USD));
+    }
+
+    @Test
+    public void testSwap_RunsOnTheAccountShard() {
+        String email = "sharded-swap@example.com";
+        accountService.create(new AccountRequestDto(email));
+        accountService.createBalance(new CreateBalanceDto(email, CurrencyEnum.USD));
+        accountService.createBalance(new CreateBalanceDto(email, CurrencyEnum.CAD));
+        accountService.deposit(new DepositDto(email, CurrencyEnum.USD, "100"));
+
+        accountService.swap(new SwapDto(email, CurrencyEnum.USD, CurrencyEnum.CAD, "50"));
+
+        AccountResponseDto account = accountService.find(email);
+        assertEquals(new BigDecimal("50.00"), account.getBalances().get(CurrencyEnum.USD));
+        assertTrue(account.getBalances().get(CurrencyEnum.CAD).signum() > 0);
+    }
+
+    @Test
+    public void testBatch_AtomicBatchesAcrossShards_KeepTheTotal() throws Exception {
+        int accounts = 8;
+        List<String> emails = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            String email = "sharded-batch-" + i + "@example.com";
+            accountService.create(new AccountRequestDto(email));
+            accountService.createBalance(new CreateBalanceDto(email, CurrencyEnum.USD));
+            accountService.deposit(new DepositDto(email, CurrencyEnum.USD, "100"));
+            emails.add(email);
+        }
+
+        // running atomic batches and plain sends together over accounts of every shard
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            boolean batches = t % 2 == 0;
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 500; i++) {
+                    String first = emails.get(random.nextInt(accounts));
+                    String second = emails.get(random.nextInt(accounts));
+                    String third = emails.get(random.nextInt(accounts));
+                    String amount = String.valueOf(random.nextInt(1, 60));
+                    if (batches) {
+                        accountService.batch(new BatchRequestDto(true, List.of(
+                                BatchOperationDto.send(new SendDto(first, second, CurrencyEnum.USD, amount)),
+                                BatchOperationDto.send(new SendDto(second, third, CurrencyEnum.USD, amount)))));
+                        continue;
+                    }
+                    try {
+                        accountService.send(new SendDto(first, second, CurrencyEnum.USD, amount));
+                    } catch (CustomException exception) {
+                        assertEquals(ErrorCode.INSUFFICIENT_AMOUNT, exception.getCode());
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // no money was created or lost, failed batches were fully undone
+        BigDecimal total = BigDecimal.ZERO;
+        for (String email : emails) {
+            BigDecimal amount = accountService.find(email).getBalances().get(CurrencyEnum.USD);
+            assertTrue(amount.signum() >= 0);
+            total = total.add(amount);
+        }
+        assertEquals(0, new BigDecimal("800").compareTo(total));
+    }
+
+    @Test
+    public void testBatch_EmptyAtomicBatch_SucceedsWithNoResults() {
+        // no account, so no shard to run it on
+        BatchResponseDto response = accountService.batch(new BatchRequestDto(true, List.of()));
+
+        assertTrue(response.isAtomic());
+        assertEquals(0, response.getSucceeded());
+        assertTrue(response.getResults().isEmpty());
+    }
+
+    @Test
+    public void testPayInterest_ChunkAcrossShards_PaysEveryBalanceOnce() {
+        // accounts (most likely) owned by different shards, paid in one chunk
+        int accounts = 8;
+        Account[] chunk = new Account[accounts];
+        CurrencyEnum[] currencies = new CurrencyEnum[accounts];
+        long[] payouts = new long[accounts];
+        for (int i = 0; i < accounts; i++) {
+            String email = "sharded-interest-" + i + "@example.com";
+            accountService.create(new AccountRequestDto(email));
+            accountService.createBalance(new CreateBalanceDto(email, CurrencyEnum.USD));
+            accountService.deposit(new DepositDto(email, CurrencyEnum.USD, "100"));
+            chunk[i] = inMemoryService.getAccount(email);
+            currencies[i] = CurrencyEnum.USD;
+            payouts[i] = 42;
+        }
+
+        YearMonth month = YearMonth.now();
+        assertEquals(accounts, accountService.payInterest(chunk, currencies, payouts, accounts, month, LocalDate.now(), new LedgerCommit(inMemoryService)));
+        // the month is paid only once
+        assertEquals(0, accountService.payInterest(chunk, currencies, payouts, accounts, month, LocalDate.now(), new LedgerCommit(inMemoryService)));
+
+        for (int i = 0; i < accounts; i++) {
+            assertEquals(new BigDecimal("100.42"), accountService.find("sharded-interest-" + i + "@example.com").getBalances().get(CurrencyEnum.USD));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.account.springboot.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AppendOnlyJournalTest {
+
+    @Test
+    public void testAppend_AssignsSequenceNumbersInOrder() {
+        AppendOnlyJournal<String> journal = new AppendOnlyJournal<>(1);
+
+        // appending more entries than the first segments can hold
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, journal.append("entry-" + i));
+        }
+
+        // every entry is readable by its sequence number and in order
+        assertEquals(100, journal.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("entry-" + i, journal.get(i));
+        }
+        assertEquals(List.of("entry-10", "entry-11", "entry-12"), journal.snapshot(10, 13));
+        assertThrows(IndexOutOfBoundsException.class, () -> journal.get(100));
+    }
+
+    @Test
+    public void testIterator_OnlySeesEntriesPublishedWhenCreated() {
+        AppendOnlyJournal<String> journal = new AppendOnlyJournal<>(2);
+        journal.append("first");
+        journal.append("second");
+
+        Iterator<String> iterator = journal.iterator();
+        journal.append("third");
+
+        // the iterator works on the snapshot taken when it was created
+        List<String> seen = new ArrayList<>();
+        iterator.forEachRemaining(seen::add);
+        assertEquals(List.of("first", "second"), seen);
+        assertEquals(3, journal.snapshot().size());
+    }
+
+    @Test
+    public void testAppend_WithConcurrentWriters_KeepsEveryEntry() throws Exception {
+        AppendOnlyJournal<Integer> journal = new AppendOnlyJournal<>(4);
+        int writers = 8;
+        int entriesPerWriter = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < entriesPerWriter; i++) {
+                    journal.append(writer * entriesPerWriter + i);
+                }
+                return null;
+            }));
+        }
+        // a reader running next to the writers must never see a hole in the journal
+        Future<?> reader = executor.submit(() -> {
+            start.await();
+            while (journal.size() < (long) writers * entriesPerWriter) {
+                for (Integer entry : journal) {
+                    assertNotNull(entry);
+                }
+            }
+            return null;
+        });
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        reader.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // no entry was lost or written twice
+        assertEquals((long) writers * entriesPerWriter, journal.size());
+        Set<Integer> entries = new HashSet<>(journal.snapshot());
+        assertEquals(writers * entriesPerWriter, entries.size());
+    }
+}
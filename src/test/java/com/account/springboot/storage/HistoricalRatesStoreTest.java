@@ -0,0 +1,83 @@
+package com.account.springboot.storage;
+
+import com.account.springboot.models.ConversionRate;
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.models.Money;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoricalRatesStoreTest {
+
+    private static final String RATES = """
+            date,source,target,rate
+            # friday, then monday
+            2023-05-05,USD,CAD,1.3500
+            2023-05-08,USD,CAD,1.3600
+            2023-05-01,USD,CAD,1.3400
+            2023-05-05,USD,GBP,0.7900
+            2023-05-08,USD,CAD,1.3650
+            """;
+
+    @Test
+    public void testGetRate_DateWithoutRate_ReturnsPreviousRate() throws Exception {
+        HistoricalRatesStore store = HistoricalRatesStore.load(new StringReader(RATES));
+
+        // the weekend uses friday's rate
+        ConversionRate rate = store.getRate(CurrencyEnum.USD, CurrencyEnum.CAD, LocalDate.of(2023, 5, 7));
+        assertEquals("1.3500", rate.getRate());
+        assertEquals(LocalDate.of(2023, 5, 5), rate.getDate());
+        assertEquals("CAD", rate.getCurrency().getCurrencyCode());
+        // exact dates, lines out of order and a date listed twice (the last one wins)
+        assertEquals("1.3400", store.getRate(CurrencyEnum.USD, CurrencyEnum.CAD, LocalDate.of(2023, 5, 1)).getRate());
+        assertEquals("1.3650", store.getRate(CurrencyEnum.USD, CurrencyEnum.CAD, LocalDate.of(2023, 5, 8)).getRate());
+        assertEquals(Money.Factor.parse("1.365"), store.getFactor(CurrencyEnum.USD, CurrencyEnum.CAD, LocalDate.of(2030, 1, 1)));
+        // unsupported currencies are skipped
+        assertEquals(3, store.size());
+    }
+
+    @Test
+    public void testGetRate_BeforeHistoryOrUnknownPair_ReturnsNull() throws Exception {
+        HistoricalRatesStore store = HistoricalRatesStore.load(new StringReader(RATES));
+
+        assertNull(store.getRate(CurrencyEnum.USD, CurrencyEnum.CAD, LocalDate.of(2023, 4, 30)));
+        assertNull(store.getRate(CurrencyEnum.EUR, CurrencyEnum.CAD, LocalDate.of(2023, 5, 8)));
+        assertNull(HistoricalRatesStore.empty().getFactor(CurrencyEnum.USD, CurrencyEnum.CAD, LocalDate.of(2023, 5, 8)));
+    }
+
+    @Test
+    public void testLoad_ManyYearsOfDailyRatesFromFile(@TempDir Path directory) throws Exception {
+        // 30 years of daily rates for every pair
+        LocalDate first = LocalDate.of(1994, 1, 1);
+        int days = 30 * 365;
+        List<String> lines = new ArrayList<>();
+        for (int day = 0; day < days; day++) {
+            for (CurrencyEnum source : CurrencyEnum.values()) {
+                for (CurrencyEnum target : CurrencyEnum.values()) {
+                    if (source != target) {
+                        lines.add(first.plusDays(day) + "," + source + "," + target + "," + (1 + day / 100000.0));
+                    }
+                }
+            }
+        }
+        Path file = directory.resolve("rates.csv");
+        Files.write(file, lines);
+
+        HistoricalRatesStore store = HistoricalRatesStore.load(file);
+
+        assertEquals(lines.size(), store.size());
+        for (int day = 0; day < days; day += 97) {
+            ConversionRate rate = store.getRate(CurrencyEnum.EUR, CurrencyEnum.USD, first.plusDays(day));
+            assertEquals(first.plusDays(day), rate.getDate());
+            assertEquals(String.valueOf(1 + day / 100000.0), rate.getRate());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.account.springboot.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdTableTest {
+
+    @Test
+    public void testSet_EntriesReadableById() {
+        IdTable<String> table = new IdTable<>(1);
+
+        // setting more ids than the first segments can hold, leaving every other id empty
+        for (int id = 0; id < 100; id += 2) {
+            table.set(id, "entry-" + id);
+        }
+        table.set(10, "replaced");
+
+        assertEquals(50, table.size());
+        assertEquals("entry-98", table.get(98));
+        assertEquals("replaced", table.get(10));
+        assertNull(table.get(99));
+        assertNull(table.get(1_000_000));
+        assertNull(table.get(-1));
+        // values are listed in id order, skipping the empty ids
+        List<String> values = table.values();
+        assertEquals(50, values.size());
+        assertEquals("entry-0", values.get(0));
+        assertEquals("entry-98", values.get(49));
+    }
+
+    @Test
+    public void testPutIfAbsent_KeepsTheFirstEntry() {
+        IdTable<String> table = new IdTable<>();
+
+        assertNull(table.putIfAbsent(7, "first"));
+        assertEquals("first", table.putIfAbsent(7, "second"));
+
+        assertEquals("first", table.get(7));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void testComputeIfAbsent_WithConcurrentCallers_EveryCallerGetsTheSameEntry() throws Exception {
+        IdTable<Object> table = new IdTable<>(0);
+        int callers = 8;
+        int ids = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<List<Object>>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    List<Object> entries = new ArrayList<>(ids);
+                    for (int id = 0; id < ids; id++) {
+                        entries.add(table.computeIfAbsent(id, key -> new Object()));
+                    }
+                    return entries;
+                }));
+            }
+            start.countDown();
+
+            // only one entry was kept per id, and it's the one every caller got
+            List<Object> expected = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<List<Object>> result : results) {
+                List<Object> entries = result.get(10, TimeUnit.SECONDS);
+                for (int id = 0; id < ids; id++) {
+                    assertSame(expected.get(id), entries.get(id));
+                }
+            }
+            assertEquals(ids, table.size());
+            Set<Object> distinct = new HashSet<>(table.values());
+            assertEquals(ids, distinct.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.account.springboot.storage;
+
+import com.account.springboot.models.CurrencyEnum;
+import com.account.springboot.models.Transaction;
+import com.account.springboot.models.TransactionTypeEnum;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapTransactionStoreTest {
+
+    private static Transaction newTransaction(int fromAccountId, int toAccountId, long amount) {
+        return Transaction.builder()
+                .fromAccountId(fromAccountId)
+                .toAccountId(toAccountId)
+                .fromCurrency(CurrencyEnum.USD)
+                .toCurrency(CurrencyEnum.CAD)
+                .serviceCurrency(CurrencyEnum.USD)
+                .fromAmountMinor(amount)
+                .toAmountMinor(amount * 13 / 10)
+                .serviceFeeAmountMinor(amount / 100)
+                .type(TransactionTypeEnum.SWAP)
+                .rateVersion(42L)
+                .createdAt(LocalDate.of(2023, 5, 5))
+                .build();
+    }
+
+    @Test
+    public void testAdd_TransactionsAreReadBackEqual() {
+        OffHeapTransactionStore store = new OffHeapTransactionStore(4);
+        Transaction swap = newTransaction(1, 1, 123_456);
+        // a transaction without rate version (nor date)
+        Transaction deposit = Transaction.builder()
+                .fromAccountId(1)
+                .toAccountId(1)
+                .fromCurrency(CurrencyEnum.EUR)
+                .toCurrency(CurrencyEnum.EUR)
+                .serviceCurrency(CurrencyEnum.EUR)
+                .fromAmountMinor(-5)
+                .toAmountMinor(Long.MAX_VALUE)
+                .type(TransactionTypeEnum.DEPOSIT)
+                .build();
+
+        store.add(swap);
+        store.add(deposit);
+
+        // every field survives the columns
+        assertEquals(List.of(swap, deposit), store.getAll(1));
+        assertEquals(2, store.size());
+        assertEquals(1, store.indexedAccounts());
+    }
+
+    @Test
+    public void testAddAll_AcrossSegments_KeepsTheHistoryOfEveryAccount() {
+        // 4 rows per segment, so the transactions span many segments
+        OffHeapTransactionStore store = new OffHeapTransactionStore(4);
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            // account 0 sends to accounts 1 and 2 alternately
+            transactions.add(newTransaction(0, 1 + i % 2, i));
+        }
+
+        store.addAll(transactions);
+
+        assertEquals(50, store.size());
+        assertEquals(transactions, store.getAll(0));
+        assertEquals(25, store.getAll(1).size());
+        assertEquals(49, store.getAll(2).get(24).getFromAmountMinor());
+        // pages of the history, the last one being shorter
+        assertEquals(transactions.subList(10, 20), store.get(0, 10, 10));
+        assertEquals(transactions.subList(45, 50), store.get(0, 45, 10));
+        assertTrue(store.get(0, 60, 10).isEmpty());
+        assertTrue(store.getAll(3).isEmpty());
+        assertEquals(13L * OffHeapTransactionStore.ROW_BYTES * 4, store.offHeapBytes());
+    }
+
+    @Test
+    public void testIterator_OnlySeesTransactionsAddedBeforeIt() {
+        OffHeapTransactionStore store = new OffHeapTransactionStore(2);
+        store.add(newTransaction(0, 1, 1));
+        store.add(newTransaction(0, 1, 2));
+
+        Iterator<Transaction> iterator = store.iterator(0);
+        // growing the history (and the segments) after the iterator was created
+        for (int i = 3; i <= 10; i++) {
+            store.add(newTransaction(0, 1, i));
+        }
+
+        List<Long> seen = new ArrayList<>();
+        iterator.forEachRemaining(transaction -> seen.add(transaction.getFromAmountMinor()));
+        assertEquals(List.of(1L, 2L), seen);
+        assertEquals(10, store.getAll(1).size());
+        assertFalse(store.iterator(5).hasNext());
+    }
+}
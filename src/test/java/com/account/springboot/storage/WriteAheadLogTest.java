@@ -0,0 +1,230 @@
+package com.account.springboot.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    private static final int VERSION = 1;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testReplay_AfterReopening_ReturnsRecordsInOrder() {
+        // writing records small enough to fill a few segments
+        WriteAheadLog wal = new WriteAheadLog(directory, 256, VERSION);
+        for (int i = 0; i < 50; i++) {
+            String record = "record-" + i;
+            wal.awaitDurable(wal.append(() -> record.getBytes(StandardCharsets.UTF_8)));
+        }
+        wal.close();
+
+        // reopening the log and appending after the existing records
+        WriteAheadLog reopened = new WriteAheadLog(directory, 256, VERSION);
+        reopened.awaitDurable(reopened.append(() -> "record-50".getBytes(StandardCharsets.UTF_8)));
+        List<String> records = readAll(reopened, 0);
+        reopened.close();
+
+        // every record is replayed in the order it was written
+        assertEquals(51, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals("record-" + i, records.get(i));
+        }
+    }
+
+    @Test
+    public void testAwaitDurable_FlushFails_WritersFailInsteadOfHanging() throws Exception {
+        AtomicBoolean diskFailing = new AtomicBoolean();
+        WriteAheadLog wal = new WriteAheadLog(directory, 1024, VERSION) {
+            @Override
+            void force(MappedByteBuffer buffer) {
+                if (diskFailing.get()) {
+                    throw new UncheckedIOException(new IOException("disk is gone"));
+                }
+                super.force(buffer);
+            }
+        };
+        wal.awaitDurable(wal.append(() -> "before".getBytes(StandardCharsets.UTF_8)));
+
+        // the disk starts failing
+        diskFailing.set(true);
+        long lsn = wal.append(() -> "after".getBytes(StandardCharsets.UTF_8));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> waiting = executor.submit(() -> wal.awaitDurable(lsn));
+
+            // the waiting writer gets the error, and so does every later append
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, exception.getCause());
+            assertThrows(IllegalStateException.class, () -> wal.append(() -> "later".getBytes(StandardCharsets.UTF_8)));
+            assertTrue(wal.getDurableLsn() < lsn);
+        } finally {
+            executor.shutdownNow();
+            wal.close();
+        }
+    }
+
+    @Test
+    public void testReplay_FromLsn_SkipsOlderRecords() {
+        WriteAheadLog wal = new WriteAheadLog(directory, 1024, VERSION);
+        wal.append(() -> "first".getBytes(StandardCharsets.UTF_8));
+        long lsn = wal.append(() -> "second".getBytes(StandardCharsets.UTF_8));
+        wal.append(() -> "third".getBytes(StandardCharsets.UTF_8));
+
+        // only the records written after the lsn are replayed
+        assertEquals(List.of("third"), readAll(wal, lsn));
+        wal.close();
+    }
+
+    @Test
+    public void testTruncateBefore_DeletesOnlyOldSegments() throws Exception {
+        WriteAheadLog wal = new WriteAheadLog(directory, 128, VERSION);
+        long lsn = 0;
+        for (int i = 0; i < 20; i++) {
+            String record = "record-" + i;
+            lsn = wal.append(() -> record.getBytes(StandardCharsets.UTF_8));
+            if (i == 10) {
+                wal.truncateBefore(lsn);
+            }
+        }
+        wal.awaitDurable(lsn);
+
+        // the records after the truncation point are still there
+        List<String> records = readAll(wal, 0);
+        assertTrue(records.contains("record-19"));
+        assertFalse(records.contains("record-0"));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.count() > 1);
+        }
+        wal.close();
+    }
+
+    @Test
+    public void testAwaitDurable_WithConcurrentWriters_SharesFlushes() throws Exception {
+        WriteAheadLog wal = new WriteAheadLog(directory, 1 << 20, VERSION);
+        int writers = 16;
+        int recordsPerWriter = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < recordsPerWriter; i++) {
+                    long lsn = wal.append(() -> "payload".getBytes(StandardCharsets.UTF_8));
+                    wal.awaitDurable(lsn);
+                    assertTrue(wal.getDurableLsn() >= lsn);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // every acknowledged record was written
+        assertEquals(writers * recordsPerWriter, readAll(wal, 0).size());
+        wal.close();
+    }
+
+    @Test
+    public void testOpen_SegmentOfAnotherFormatVersion_IsRejected() {
+        WriteAheadLog wal = new WriteAheadLog(directory, 256, VERSION);
+        wal.awaitDurable(wal.append(() -> "record".getBytes(StandardCharsets.UTF_8)));
+        wal.close();
+
+        // the records can't be read with another layout
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> new WriteAheadLog(directory, 256, VERSION + 1));
+        assertTrue(exception.getMessage().contains("format version " + VERSION));
+    }
+
+    @Test
+    public void testOpen_SegmentWithoutHeader_IsRejected() throws IOException {
+        // a segment written before segments had a header starts right away with a record
+        byte[] payload = "record".getBytes(StandardCharsets.UTF_8);
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        ByteBuffer segment = ByteBuffer.allocate(256)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload);
+        Files.write(directory.resolve(String.format("%020d.log", 0)), segment.array());
+
+        assertThrows(IllegalStateException.class, () -> new WriteAheadLog(directory, 256, VERSION));
+    }
+
+    @Test
+    public void testReopen_HoleInAMiddleSegment_EndsTheLogThere() throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(directory, 128, VERSION);
+        for (int i = 0; i < 40; i++) {
+            String record = "record-" + i;
+            wal.awaitDurable(wal.append(() -> record.getBytes(StandardCharsets.UTF_8)));
+        }
+        wal.close();
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.sorted().toList();
+        }
+        assertTrue(segments.size() > 3);
+        // the second record of the second segment never reached the disk, the segments after it did
+        Path holed = segments.get(1);
+        byte[] bytes = Files.readAllBytes(holed);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int secondRecord = Integer.BYTES * 2 + Integer.BYTES * 2 + buffer.getInt(Integer.BYTES * 2);
+        Arrays.fill(bytes, secondRecord, secondRecord + Integer.BYTES * 2 + buffer.getInt(secondRecord), (byte) 0);
+        Files.write(holed, bytes);
+
+        // nothing after the hole is replayed, even the records of the later segments
+        WriteAheadLog reopened = new WriteAheadLog(directory, 128, VERSION);
+        List<String> records = readAll(reopened, 0);
+        reopened.awaitDurable(reopened.append(() -> "after-the-hole".getBytes(StandardCharsets.UTF_8)));
+        reopened.close();
+
+        int kept = records.size();
+        assertTrue(kept > 1 && kept < 40);
+        for (int i = 0; i < kept; i++) {
+            assertEquals("record-" + i, records.get(i));
+        }
+        // the later segments were set aside, and the log goes on right after the hole
+        assertFalse(Files.exists(segments.get(segments.size() - 1)));
+        assertTrue(Files.exists(segments.get(segments.size() - 1).resolveSibling(segments.get(segments.size() - 1).getFileName() + ".corrupt")));
+        WriteAheadLog again = new WriteAheadLog(directory, 128, VERSION);
+        List<String> expected = new ArrayList<>(records);
+        expected.add("after-the-hole");
+        assertEquals(expected, readAll(again, 0));
+        again.close();
+    }
+
+    private static List<String> readAll(WriteAheadLog wal, long fromLsn) {
+        List<String> records = new ArrayList<>();
+        wal.replay(fromLsn, (lsn, payload) -> records.add(toString(payload)));
+        return records;
+    }
+
+    private static String toString(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,33 @@
+package com.account.springboot.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountIdsTest {
+
+    @Test
+    public void testIntern_GivesDenseIdsAndTheSameIdForTheSameEmail() {
+        AccountIds accountIds = new AccountIds();
+
+        assertEquals(0, accountIds.intern("ids-first@me.com"));
+        assertEquals(1, accountIds.intern("ids-second@me.com"));
+        // interning again doesn't give a new id
+        assertEquals(0, accountIds.intern("ids-first@me.com"));
+        assertEquals("ids-second@me.com", accountIds.email(1));
+        assertEquals(AccountIds.NONE, accountIds.find("ids-nobody@me.com"));
+        assertNull(accountIds.email(AccountIds.NONE));
+    }
+
+    @Test
+    public void testIntern_EveryLedgerStartsAtZero() {
+        AccountIds first = new AccountIds();
+        AccountIds second = new AccountIds();
+        first.intern("ids-ledger-a@me.com");
+        first.intern("ids-ledger-b@me.com");
+
+        // the ids of one ledger don't leave gaps in another one
+        assertEquals(0, second.intern("ids-ledger-c@me.com"));
+        assertEquals(AccountIds.NONE, second.find("ids-ledger-a@me.com"));
+    }
+}
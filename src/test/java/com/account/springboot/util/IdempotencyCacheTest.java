@@ -0,0 +1,133 @@
+package com.account.springboot.util;
+
+import com.account.springboot.dto.TransactionDto;
+import com.account.springboot.exceptions.ErrorCode;
+import com.account.springboot.services.LedgerResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyCacheTest {
+
+    @Test
+    public void testExecute_SameKey_RunsOperationOnce() {
+        IdempotencyCache cache = new IdempotencyCache(60_000, 100, 4);
+        AtomicInteger runs = new AtomicInteger();
+
+        LedgerResult<TransactionDto> first = cache.execute("key", "request", () -> success(runs));
+        LedgerResult<TransactionDto> retry = cache.execute("key", "request", () -> success(runs));
+
+        assertEquals(1, runs.get());
+        assertSame(first.getValue(), retry.getValue());
+    }
+
+    @Test
+    public void testExecute_SameKeyDifferentRequest_ReturnsKeyReusedError() {
+        IdempotencyCache cache = new IdempotencyCache(60_000, 100, 4);
+        AtomicInteger runs = new AtomicInteger();
+        cache.execute("key", "request", () -> success(runs));
+
+        LedgerResult<TransactionDto> result = cache.execute("key", "other request", () -> success(runs));
+
+        assertFalse(result.isSuccess());
+        assertEquals(ErrorCode.IDEMPOTENCY_KEY_REUSED, result.getError().getCode());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void testExecute_FailedOperation_RunsAgainOnRetry() {
+        IdempotencyCache cache = new IdempotencyCache(60_000, 100, 4);
+        AtomicInteger runs = new AtomicInteger();
+
+        // nothing was applied, so the retry must run again
+        LedgerResult<TransactionDto> failed = cache.execute("key", "request", () -> {
+            runs.incrementAndGet();
+            return LedgerResult.failure(ErrorCode.INSUFFICIENT_AMOUNT);
+        });
+        LedgerResult<TransactionDto> retry = cache.execute("key", "request", () -> success(runs));
+
+        assertFalse(failed.isSuccess());
+        assertTrue(retry.isSuccess());
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    public void testExecute_ConcurrentDuplicates_WaitForTheFirstRun() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(60_000, 100, 4);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // the first request is blocked while running
+            Future<LedgerResult<TransactionDto>> first = executor.submit(() -> cache.execute("key", "request", () -> {
+                running.countDown();
+                await(release);
+                return success(runs);
+            }));
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            Future<LedgerResult<TransactionDto>> duplicate1 = executor.submit(() -> cache.execute("key", "request", () -> success(runs)));
+            Future<LedgerResult<TransactionDto>> duplicate2 = executor.submit(() -> cache.execute("key", "request", () -> success(runs)));
+
+            // the duplicates can't finish before the first one
+            Thread.sleep(50);
+            assertFalse(duplicate1.isDone());
+            assertFalse(duplicate2.isDone());
+            release.countDown();
+
+            TransactionDto transaction = first.get(5, TimeUnit.SECONDS).getValue();
+            assertSame(transaction, duplicate1.get(5, TimeUnit.SECONDS).getValue());
+            assertSame(transaction, duplicate2.get(5, TimeUnit.SECONDS).getValue());
+            assertEquals(1, runs.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testExecute_MoreKeysThanMax_EvictsOldestKeys() {
+        IdempotencyCache cache = new IdempotencyCache(60_000, 8, 2);
+        AtomicInteger runs = new AtomicInteger();
+
+        for (int i = 0; i < 100; i++) {
+            cache.execute("key-" + i, "request", () -> success(runs));
+        }
+
+        assertTrue(cache.size() <= 8);
+        // the most recent key is still known
+        cache.execute("key-99", "request", () -> success(runs));
+        assertEquals(100, runs.get());
+    }
+
+    @Test
+    public void testExecute_ExpiredKey_RunsAgain() throws InterruptedException {
+        IdempotencyCache cache = new IdempotencyCache(1, 100, 1);
+        AtomicInteger runs = new AtomicInteger();
+        cache.execute("key", "request", () -> success(runs));
+
+        Thread.sleep(10);
+        cache.execute("key", "request", () -> success(runs));
+
+        assertEquals(2, runs.get());
+    }
+
+    private static LedgerResult<TransactionDto> success(AtomicInteger runs) {
+        runs.incrementAndGet();
+        return LedgerResult.success(TransactionDto.builder().build());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.account.springboot.util;
+
+import com.account.springboot.models.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InterestPayoutKernelTest {
+
+    private static final long[] AMOUNTS = {0, 1, 99, 1_500, 123_456, 10_000_000_07L, 92_233_720_368_547L};
+    private static final BigDecimal[] YEARLY_RATES = {
+            new BigDecimal("0.05"), new BigDecimal("0.025"), new BigDecimal("0.0333"), BigDecimal.ZERO};
+
+    private InterestRateCalculator calculator;
+
+    @BeforeEach
+    public void setup() {
+        calculator = new InterestRateCalculator();
+    }
+
+    @Test
+    public void testComputePayout_CalculatorTestCases_MatchCalculator() {
+        // same opening dates as InterestRateCalculatorTest: older account, 15 days, today and in the future
+        InterestPayoutKernel kernel = calculator.newPayoutKernel(LocalDate.now());
+        LocalDate[] openingDates = {
+                LocalDate.now().minusMonths(2), LocalDate.now().minusDays(15), LocalDate.now(), LocalDate.now().plusDays(7)};
+
+        for (LocalDate openingDate : openingDates) {
+            assertMatchesCalculator(kernel, openingDate, new BigDecimal("0.05"));
+        }
+    }
+
+    @Test
+    public void testComputePayouts_EveryOpeningDayOfTheYear_MatchCalculator() {
+        // the calculator always runs on today, so the kernel runs on today too, over openings around the whole month boundary
+        InterestPayoutKernel kernel = calculator.newPayoutKernel(LocalDate.now());
+        int size = 400 * AMOUNTS.length * YEARLY_RATES.length;
+        long[] amounts = new long[size];
+        int[] days = new int[size];
+        int[] rates = new int[size];
+        long[] payouts = new long[size];
+        long[] expected = new long[size];
+        int index = 0;
+        for (int offset = -10; offset < 390; offset++) {
+            LocalDate openingDate = LocalDate.now().minusDays(offset);
+            for (BigDecimal yearlyRate : YEARLY_RATES) {
+                BigDecimal monthlyRate = calculator.getMonthlyInterest(openingDate, yearlyRate);
+                for (long amount : AMOUNTS) {
+                    amounts[index] = amount;
+                    days[index] = kernel.daysFromOpening(openingDate);
+                    rates[index] = kernel.rateIndex(yearlyRate);
+                    expected[index] = Money.multiply(amount, monthlyRate, RoundingMode.DOWN);
+                    index++;
+                }
+            }
+        }
+
+        kernel.computePayouts(amounts, days, rates, payouts, size);
+
+        assertArrayEquals(expected, payouts);
+    }
+
+    @Test
+    public void testRateIndex_SameYearlyRate_ReturnsSameIndex() {
+        InterestPayoutKernel kernel = new InterestPayoutKernel(LocalDate.of(2024, 3, 1));
+
+        int first = kernel.rateIndex(new BigDecimal("0.05"));
+        int second = kernel.rateIndex(new BigDecimal("0.025"));
+
+        assertNotEquals(first, second);
+        assertEquals(first, kernel.rateIndex(new BigDecimal("0.05")));
+    }
+
+    private void assertMatchesCalculator(InterestPayoutKernel kernel, LocalDate openingDate, BigDecimal yearlyRate) {
+        BigDecimal monthlyRate = calculator.getMonthlyInterest(openingDate, yearlyRate);
+        for (long amount : AMOUNTS) {
+            long payout = kernel.computePayout(amount, kernel.daysFromOpening(openingDate), kernel.rateIndex(yearlyRate));
+            assertEquals(Money.multiply(amount, monthlyRate, RoundingMode.DOWN), payout, openingDate + " " + amount);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.account.springboot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadsTest {
+
+    @Test
+    public void testIsSupported_MatchesTheJavaVersion() {
+        assertEquals(Runtime.version().feature() >= 21, VirtualThreads.isSupported());
+    }
+
+    @Test
+    public void testNewThreadPerTaskExecutor_RunsTasksOrFailsWhenUnsupported() throws Exception {
+        if (!VirtualThreads.isSupported()) {
+            // the mode can't be turned on by mistake on an older JVM
+            assertThrows(IllegalStateException.class, () -> VirtualThreads.newThreadPerTaskExecutor("test-"));
+            return;
+        }
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("test-");
+        String name = executor.submit(() -> Thread.currentThread().getName()).get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertTrue(name.startsWith("test-"));
+    }
+}